@@ -5,7 +5,11 @@ use prod;
 create table parking(
 PARKING_NUMBER int PRIMARY KEY,
 AVAILABLE bool NOT NULL,
-TYPE varchar(10) NOT NULL
+TYPE varchar(10) NOT NULL,
+LEVEL int NOT NULL DEFAULT 0,
+ATTRIBUTES varchar(100),
+OCCUPANT varchar(10),
+CLAIM_TIME DATETIME
 );
 
 create table ticket(
@@ -15,8 +19,30 @@ create table ticket(
  PRICE double,
  IN_TIME DATETIME NOT NULL,
  OUT_TIME DATETIME,
+ DISCOUNT bool NOT NULL DEFAULT false,
+ RATE_MULTIPLIER double NOT NULL DEFAULT 1,
  FOREIGN KEY (PARKING_NUMBER)
- REFERENCES parking(PARKING_NUMBER));
+ REFERENCES parking(PARKING_NUMBER),
+ INDEX TICKET_VEHICLE_IN_TIME (VEHICLE_REG_NUMBER, IN_TIME),
+ INDEX TICKET_IN_TIME (IN_TIME),
+ INDEX TICKET_OUT_TIME (OUT_TIME),
+ INDEX TICKET_PARKING_OUT_TIME (PARKING_NUMBER, OUT_TIME));
+
+/* visits of tickets moved to the monthly ticket_history_YYYYMM tables */
+create table ticket_archive_count(
+ VEHICLE_REG_NUMBER varchar(10) PRIMARY KEY,
+ NB_TICKETS int NOT NULL);
+
+/* season passes and permits, a pass is revoked by moving its VALID_TO to the past */
+create table pass(
+ ID int PRIMARY KEY AUTO_INCREMENT,
+ VEHICLE_REG_NUMBER varchar(10) NOT NULL,
+ VALID_FROM DATETIME NOT NULL,
+ VALID_TO DATETIME NOT NULL,
+ DISCOUNT_PERCENT int NOT NULL DEFAULT 100,
+ UPDATED_TIME TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+ INDEX PASS_UPDATED_TIME (UPDATED_TIME),
+ INDEX PASS_VALID_TO (VALID_TO));
 
 insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(1,true,'CAR');
 insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(2,true,'CAR');
@@ -32,7 +58,11 @@ use test;
 create table parking(
 PARKING_NUMBER int PRIMARY KEY,
 AVAILABLE bool NOT NULL,
-TYPE varchar(10) NOT NULL
+TYPE varchar(10) NOT NULL,
+LEVEL int NOT NULL DEFAULT 0,
+ATTRIBUTES varchar(100),
+OCCUPANT varchar(10),
+CLAIM_TIME DATETIME
 );
 
 create table ticket(
@@ -42,8 +72,30 @@ create table ticket(
  PRICE double,
  IN_TIME DATETIME NOT NULL,
  OUT_TIME DATETIME,
+ DISCOUNT bool NOT NULL DEFAULT false,
+ RATE_MULTIPLIER double NOT NULL DEFAULT 1,
  FOREIGN KEY (PARKING_NUMBER)
- REFERENCES parking(PARKING_NUMBER));
+ REFERENCES parking(PARKING_NUMBER),
+ INDEX TICKET_VEHICLE_IN_TIME (VEHICLE_REG_NUMBER, IN_TIME),
+ INDEX TICKET_IN_TIME (IN_TIME),
+ INDEX TICKET_OUT_TIME (OUT_TIME),
+ INDEX TICKET_PARKING_OUT_TIME (PARKING_NUMBER, OUT_TIME));
+
+/* visits of tickets moved to the monthly ticket_history_YYYYMM tables */
+create table ticket_archive_count(
+ VEHICLE_REG_NUMBER varchar(10) PRIMARY KEY,
+ NB_TICKETS int NOT NULL);
+
+/* season passes and permits, a pass is revoked by moving its VALID_TO to the past */
+create table pass(
+ ID int PRIMARY KEY AUTO_INCREMENT,
+ VEHICLE_REG_NUMBER varchar(10) NOT NULL,
+ VALID_FROM DATETIME NOT NULL,
+ VALID_TO DATETIME NOT NULL,
+ DISCOUNT_PERCENT int NOT NULL DEFAULT 100,
+ UPDATED_TIME TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+ INDEX PASS_UPDATED_TIME (UPDATED_TIME),
+ INDEX PASS_VALID_TO (VALID_TO));
 
 insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(1,true,'CAR');
 insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(2,true,'CAR');
@@ -1,13 +1,101 @@
 package com.parkit.parkingsystem;
 
+import com.parkit.parkingsystem.analytics.TicketColumnStore;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.ReportDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.ParkingReport;
+import com.parkit.parkingsystem.model.SpotImportResult;
 import com.parkit.parkingsystem.service.InteractiveShell;
+import com.parkit.parkingsystem.service.ReportingService;
+import com.parkit.parkingsystem.service.SpotImportService;
+import com.parkit.parkingsystem.service.TicketColumnSyncService;
+import com.parkit.parkingsystem.service.WarmUpService;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
 public class App {
     private static final Logger logger = LogManager.getLogger("App");
+    private static final int ANALYTICS_MAX_VISITS = 10;
     public static void main(String args[]){
         logger.info("Initializing Parking System");
+        if(args.length > 0 && "--warmup-only".equals(args[0])){
+            //used to record the AppCDS class list / archive of a warmed up gate node
+            new WarmUpService(new ParkingSpotDAO(), new TicketDAO()).warmUp();
+            return;
+        }
+        if(args.length > 1 && "--report".equals(args[0])){
+            LocalDate from = LocalDate.parse(args[1]);
+            LocalDate to = (args.length > 2) ? LocalDate.parse(args[2]) : from;
+            printReport(new ReportingService(new ReportDAO()).getReport(from, to), from, to);
+            return;
+        }
+        if(args.length > 2 && "--analytics".equals(args[0])){
+            LocalDate from = LocalDate.parse(args[2]);
+            LocalDate to = (args.length > 3) ? LocalDate.parse(args[3]) : from;
+            printAnalytics(Paths.get(args[1]), from, to);
+            return;
+        }
+        if(args.length > 1 && "--import-spots".equals(args[0])){
+            importSpots(Paths.get(args[1]));
+            return;
+        }
         InteractiveShell.loadInterface();
     }
+
+    private static void importSpots(Path file){
+        try{
+            SpotImportResult result = new SpotImportService(new ParkingSpotDAO(), new TicketDAO()).importSpots(file);
+            for(String invalidLine : result.getInvalidLines()){
+                System.out.println("Invalid " + invalidLine);
+            }
+            System.out.println(String.format("%d spots added, %d already existing, %d invalid lines",
+                    result.getSpotsAdded(), result.getSpotsSkipped(), result.getInvalidLines().size()));
+            if(!result.isCompleted()){
+                System.out.println("Import interrupted after line " + result.getLinesRead() + ", run the same command to resume it");
+            }
+        }catch(Exception e){
+            logger.error("Unable to import spots from " + file, e);
+        }
+    }
+
+    private static void printAnalytics(Path directory, LocalDate from, LocalDate to){
+        try(TicketColumnStore ticketColumnStore = TicketColumnStore.open(directory)){
+            new TicketColumnSyncService(new TicketDAO(), ticketColumnStore).sync();
+            ZoneId zone = ZoneId.systemDefault();
+            long fromMillis = from.atStartOfDay(zone).toInstant().toEpochMilli();
+            long toMillis = to.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+            System.out.println("Parking analytics from " + from + " to " + to + " over " + ticketColumnStore.getRowCount() + " tickets");
+            int[] stays = ticketColumnStore.staysPerHourOfDay(fromMillis, toMillis, zone);
+            for(int hour = 0; hour < stays.length; hour++){
+                System.out.println(String.format("%02dh: %d stays", hour, stays[hour]));
+            }
+            long[] revenueCents = ticketColumnStore.revenueCentsByType(fromMillis, toMillis);
+            for(ParkingType parkingType : ParkingType.values()){
+                System.out.println(String.format("%s: revenue=%.2f", parkingType, revenueCents[parkingType.ordinal()] / 100.0));
+            }
+            int[] vehicles = ticketColumnStore.visitDistribution(ANALYTICS_MAX_VISITS);
+            for(int visits = 1; visits < vehicles.length; visits++){
+                System.out.println(String.format("%d%s visits: %d vehicles", visits, (visits == ANALYTICS_MAX_VISITS) ? "+" : "", vehicles[visits]));
+            }
+        }catch(Exception e){
+            logger.error("Unable to read the analytics ticket store " + directory, e);
+        }
+    }
+
+    private static void printReport(ParkingReport report, LocalDate from, LocalDate to){
+        System.out.println("Parking report from " + from + " to " + to);
+        for(ParkingType parkingType : ParkingType.values()){
+            System.out.println(String.format("%s: revenue=%.2f tickets=%d average stay=%.1f min discount share=%.1f%% peak occupancy=%d",
+                    parkingType, report.getRevenue(parkingType), report.getClosedTickets(parkingType),
+                    report.getAverageStayMinutes(parkingType), report.getDiscountShare(parkingType) * 100,
+                    report.getPeakOccupancy(parkingType)));
+        }
+    }
 }
@@ -0,0 +1,458 @@
+package com.parkit.parkingsystem.analytics;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.util.LongIntHashMap;
+import com.parkit.parkingsystem.util.PlateKey;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Local copy of the tickets for analytics, one memory-mapped file per column: ticket ID,
+ * in-time, out-time (0 while open), price in cents, parking type ordinal and plate, the plates
+ * being encoded by a dictionary. Rows are appended in ticket ID order, a ticket closed later
+ * is updated in place. Queries are plain loops over the columns, outside of the heap.
+ * The row count is only published by {@link #commit(long)}, once the columns are on disk.
+ * A store is opened by one process at a time, the others fail to open it.
+ */
+public class TicketColumnStore implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger("TicketColumnStore");
+
+    private static final int MAGIC = 0x504B4353;
+    private static final int FORMAT_VERSION = 1;
+    private static final String META_FILE = "store.meta";
+    private static final String DICTIONARY_FILE = "plates.dict";
+    private static final String LOCK_FILE = "store.lock";
+    private static final int INITIAL_CAPACITY = 1 << 16;
+    private static final long HOUR_MILLIS = 60 * 60 * 1000;
+
+    private final Path directory;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Column ids;
+    private final Column inTimes;
+    private final Column outTimes;
+    private final Column priceCents;
+    private final Column types;
+    private final Column plates;
+    private final Column[] columns;
+    //plate IDs by packed plate, the rare plates that cannot be packed by plate
+    private final LongIntHashMap plateIds = new LongIntHashMap();
+    private final Map<String, Integer> unpackedPlateIds = new HashMap<>();
+    private int plateCount;
+    private final FileChannel dictionary;
+    private final FileChannel lockChannel;
+    private final FileLock fileLock;
+
+    //visible to queries
+    private int rowCount;
+    //appended, not committed yet
+    private int pendingRowCount;
+    private int maxTicketId;
+    private long closedSyncMillis;
+
+    private TicketColumnStore(Path directory, FileChannel lockChannel, FileLock fileLock) throws IOException {
+        this.directory = directory;
+        this.lockChannel = lockChannel;
+        this.fileLock = fileLock;
+        ids = new Column(directory.resolve("ticket_id.col"), 4);
+        inTimes = new Column(directory.resolve("in_time.col"), 8);
+        outTimes = new Column(directory.resolve("out_time.col"), 8);
+        priceCents = new Column(directory.resolve("price_cents.col"), 4);
+        types = new Column(directory.resolve("type.col"), 1);
+        plates = new Column(directory.resolve("plate.col"), 4);
+        columns = new Column[]{ids, inTimes, outTimes, priceCents, types, plates};
+        dictionary = FileChannel.open(directory.resolve(DICTIONARY_FILE), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Opens the store of the directory, creating an empty one if there is none.
+     * @throws IOException if the store is open in another process
+     */
+    public static TicketColumnStore open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        FileChannel lockChannel = FileChannel.open(directory.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock fileLock;
+        try {
+            fileLock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            fileLock = null;
+        }
+        if (fileLock == null) {
+            lockChannel.close();
+            throw new IOException("Ticket store " + directory + " is already open");
+        }
+        TicketColumnStore store;
+        try {
+            store = new TicketColumnStore(directory, lockChannel, fileLock);
+        } catch (IOException e) {
+            lockChannel.close();
+            throw e;
+        }
+        try {
+            store.load();
+        } catch (IOException e) {
+            store.close();
+            throw e;
+        }
+        return store;
+    }
+
+    private void load() throws IOException {
+        long dictionaryBytes = 0;
+        Path meta = directory.resolve(META_FILE);
+        if (Files.exists(meta)) {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(meta));
+            int end = buffer.limit() - 8;
+            CRC32 crc = new CRC32();
+            crc.update(buffer.array(), 0, Math.max(0, end));
+            if (end < 32 || crc.getValue() != buffer.getLong(end)) {
+                throw new IOException("Ticket store metadata checksum mismatch in " + directory);
+            }
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                throw new IOException("Unknown ticket store format in " + directory);
+            }
+            rowCount = buffer.getInt();
+            maxTicketId = buffer.getInt();
+            closedSyncMillis = buffer.getLong();
+            dictionaryBytes = buffer.getLong();
+        }
+        pendingRowCount = rowCount;
+        for (Column column : columns) {
+            column.map(Math.max(INITIAL_CAPACITY, rowCount));
+        }
+        //plates written after the last commit are dropped, their rows were not published
+        dictionary.truncate(dictionaryBytes);
+        dictionary.position(0);
+        BufferedReader reader = new BufferedReader(Channels.newReader(dictionary, StandardCharsets.UTF_8.newDecoder(), -1));
+        String plate;
+        while ((plate = reader.readLine()) != null) {
+            putPlateId(plate, plateCount++);
+        }
+        dictionary.position(dictionaryBytes);
+        logger.info("Opened ticket store {} with {} tickets and {} plates", directory, rowCount, plateCount);
+    }
+
+    /**
+     * Appends the tickets created after the last appended one, in ticket ID order.
+     * Returns the number of tickets appended.
+     */
+    public int append(List<Ticket> tickets) throws IOException {
+        lock.writeLock().lock();
+        try {
+            int appended = 0;
+            for (Ticket ticket : tickets) {
+                if (ticket.getId() <= maxTicketId || ticket.getParkingSpot().getParkingType() == null) {
+                    continue;
+                }
+                int row = pendingRowCount;
+                for (Column column : columns) {
+                    column.ensureCapacity(row + 1);
+                }
+                ids.buffer.putInt(row * 4, ticket.getId());
+                inTimes.buffer.putLong(row * 8, ticket.getInTime().getTime());
+                types.buffer.put(row, (byte) ticket.getParkingSpot().getParkingType().ordinal());
+                plates.buffer.putInt(row * 4, plateId(ticket.getVehicleRegNumber()));
+                writeClosing(row, ticket);
+                pendingRowCount++;
+                maxTicketId = ticket.getId();
+                appended++;
+            }
+            return appended;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Records the out-time and price of tickets closed since they were appended.
+     * Returns the number of tickets found in the store.
+     */
+    public int update(List<Ticket> closedTickets) {
+        lock.writeLock().lock();
+        try {
+            int updated = 0;
+            for (Ticket ticket : closedTickets) {
+                int row = findRow(ticket.getId());
+                if (row >= 0) {
+                    writeClosing(row, ticket);
+                    updated++;
+                }
+            }
+            return updated;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Flushes the columns and the dictionary, then publishes the appended rows along with the
+     * time up to which the closed tickets were read.
+     */
+    public void commit(long closedSyncMillis) throws IOException {
+        lock.writeLock().lock();
+        try {
+            for (Column column : columns) {
+                column.buffer.force();
+            }
+            dictionary.force(false);
+            ByteBuffer buffer = ByteBuffer.allocate(4 + 4 + 4 + 4 + 8 + 8 + 8);
+            buffer.putInt(MAGIC);
+            buffer.putInt(FORMAT_VERSION);
+            buffer.putInt(pendingRowCount);
+            buffer.putInt(maxTicketId);
+            buffer.putLong(closedSyncMillis);
+            buffer.putLong(dictionary.position());
+            CRC32 crc = new CRC32();
+            crc.update(buffer.array(), 0, buffer.position());
+            buffer.putLong(crc.getValue());
+            buffer.flip();
+            Path meta = directory.resolve(META_FILE);
+            Path tmp = directory.resolve(META_FILE + ".tmp");
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(tmp, meta, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            rowCount = pendingRowCount;
+            this.closedSyncMillis = closedSyncMillis;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int getRowCount() {
+        lock.readLock().lock();
+        try {
+            return rowCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getMaxTicketId() {
+        lock.readLock().lock();
+        try {
+            return maxTicketId;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getClosedSyncMillis() {
+        lock.readLock().lock();
+        try {
+            return closedSyncMillis;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Counts the stays by hour of the day of their entry, for the tickets entered in the range.
+     */
+    public int[] staysPerHourOfDay(long fromMillis, long toMillis, ZoneId zone) {
+        int[] stays = new int[24];
+        ZoneRules rules = zone.getRules();
+        //the offset only changes on the zone transitions, it is looked up again past them
+        long offsetFrom = Long.MAX_VALUE;
+        long offsetTo = Long.MIN_VALUE;
+        long offsetMillis = 0;
+        lock.readLock().lock();
+        try {
+            MappedByteBuffer in = inTimes.buffer;
+            for (int row = 0; row < rowCount; row++) {
+                long inMillis = in.getLong(row * 8);
+                if (inMillis < fromMillis || inMillis >= toMillis) {
+                    continue;
+                }
+                if (inMillis < offsetFrom || inMillis >= offsetTo) {
+                    Instant instant = Instant.ofEpochMilli(inMillis);
+                    offsetMillis = rules.getOffset(instant).getTotalSeconds() * 1000L;
+                    ZoneOffsetTransition previous = rules.previousTransition(instant);
+                    ZoneOffsetTransition next = rules.nextTransition(instant);
+                    offsetFrom = (previous == null) ? Long.MIN_VALUE : previous.toEpochSecond() * 1000;
+                    offsetTo = (next == null) ? Long.MAX_VALUE : next.toEpochSecond() * 1000;
+                }
+                stays[(int) Math.floorMod(Math.floorDiv(inMillis + offsetMillis, HOUR_MILLIS), 24L)]++;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return stays;
+    }
+
+    /**
+     * Returns the number of vehicles by number of visits: index 1 counts the vehicles seen
+     * once, and so on, the last index counting the vehicles seen that many times or more.
+     */
+    public int[] visitDistribution(int maxVisits) {
+        int[] vehicles = new int[maxVisits + 1];
+        lock.readLock().lock();
+        try {
+            int[] visits = new int[plateCount];
+            MappedByteBuffer plate = plates.buffer;
+            for (int row = 0; row < rowCount; row++) {
+                visits[plate.getInt(row * 4)]++;
+            }
+            for (int count : visits) {
+                if (count > 0) {
+                    vehicles[Math.min(count, maxVisits)]++;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return vehicles;
+    }
+
+    /**
+     * Sums the price of the tickets closed in the range, in cents, by parking type ordinal.
+     */
+    public long[] revenueCentsByType(long fromMillis, long toMillis) {
+        long[] revenue = new long[ParkingType.values().length];
+        lock.readLock().lock();
+        try {
+            MappedByteBuffer out = outTimes.buffer;
+            MappedByteBuffer price = priceCents.buffer;
+            MappedByteBuffer type = types.buffer;
+            for (int row = 0; row < rowCount; row++) {
+                long outMillis = out.getLong(row * 8);
+                if (outMillis >= fromMillis && outMillis < toMillis) {
+                    revenue[type.get(row)] += price.getInt(row * 4);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return revenue;
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            for (Column column : columns) {
+                column.close();
+            }
+            dictionary.close();
+            fileLock.release();
+            lockChannel.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void writeClosing(int row, Ticket ticket) {
+        outTimes.buffer.putLong(row * 8, (ticket.getOutTime() == null) ? 0 : ticket.getOutTime().getTime());
+        priceCents.buffer.putInt(row * 4, (int) Math.round(ticket.getPrice() * 100));
+    }
+
+    //the ticket IDs are ascending
+    private int findRow(int ticketId) {
+        int low = 0;
+        int high = pendingRowCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int id = ids.buffer.getInt(middle * 4);
+            if (id < ticketId) {
+                low = middle + 1;
+            } else if (id > ticketId) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    private int plateId(String vehicleRegNumber) throws IOException {
+        long plateKey = PlateKey.pack(vehicleRegNumber);
+        int id;
+        if (plateKey == PlateKey.NO_KEY) {
+            Integer unpackedId = unpackedPlateIds.get(vehicleRegNumber);
+            id = (unpackedId == null) ? -1 : unpackedId;
+        } else {
+            id = plateIds.get(plateKey, -1);
+        }
+        if (id < 0) {
+            id = plateCount++;
+            ByteBuffer line = StandardCharsets.UTF_8.encode(vehicleRegNumber + "\n");
+            while (line.hasRemaining()) {
+                dictionary.write(line);
+            }
+            putPlateId(vehicleRegNumber, id);
+        }
+        return id;
+    }
+
+    private void putPlateId(String vehicleRegNumber, int id) {
+        long plateKey = PlateKey.pack(vehicleRegNumber);
+        if (plateKey == PlateKey.NO_KEY) {
+            unpackedPlateIds.put(vehicleRegNumber, id);
+        } else {
+            plateIds.put(plateKey, id);
+        }
+    }
+
+    private static final class Column {
+        private final FileChannel channel;
+        private final int width;
+        private MappedByteBuffer buffer;
+        private int capacity;
+
+        private Column(Path file, int width) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.width = width;
+        }
+
+        private void map(int rows) throws IOException {
+            if ((long) rows * width > Integer.MAX_VALUE) {
+                throw new IOException("Ticket store column is full");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) rows * width);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            capacity = rows;
+        }
+
+        //the previous mapping is released by the garbage collector
+        private void ensureCapacity(int rows) throws IOException {
+            if (rows > capacity) {
+                map(Math.max(rows, (int) Math.min((long) capacity * 2, Integer.MAX_VALUE / width)));
+            }
+        }
+
+        private void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.parkit.parkingsystem.cache;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Binary image of the in-process lot state: spot availability per parking type, open tickets
+ * and visit counts, along with the ticket ID and time they were taken at.
+ * The file ends with a CRC32 of its content and is replaced atomically.
+ */
+public class LotStateSnapshot {
+
+    private static final int MAGIC = 0x504B534E;
+    private static final int FORMAT_VERSION = 2;
+    private static final int MAX_STRING_BYTES = 255;
+
+    private final long takenAt;
+    private final int maxTicketId;
+    private final int[] totals;
+    private final int[] frees;
+    private final List<Ticket> openTickets;
+    private final Map<String, Integer> visitCounts;
+
+    public LotStateSnapshot(long takenAt, int maxTicketId, int[] totals, int[] frees,
+                            List<Ticket> openTickets, Map<String, Integer> visitCounts) {
+        this.takenAt = takenAt;
+        this.maxTicketId = maxTicketId;
+        this.totals = totals;
+        this.frees = frees;
+        this.openTickets = openTickets;
+        this.visitCounts = visitCounts;
+    }
+
+    public long getTakenAt() {
+        return takenAt;
+    }
+
+    public int getMaxTicketId() {
+        return maxTicketId;
+    }
+
+    public int[] getTotals() {
+        return totals;
+    }
+
+    public int[] getFrees() {
+        return frees;
+    }
+
+    public List<Ticket> getOpenTickets() {
+        return openTickets;
+    }
+
+    public Map<String, Integer> getVisitCounts() {
+        return visitCounts;
+    }
+
+    public void writeTo(Path file) throws IOException {
+        ByteBuffer buffer = encode();
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static LotStateSnapshot readFrom(Path file) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                //read until the buffer is full
+            }
+        }
+        buffer.flip();
+        return decode(buffer);
+    }
+
+    ByteBuffer encode() {
+        ParkingType[] parkingTypes = ParkingType.values();
+        int size = 4 + 4 + 8 + 4 + 4 + 4 + 4;
+        for (ParkingType parkingType : parkingTypes) {
+            size += stringSize(parkingType.name()) + 8;
+        }
+        for (Ticket ticket : openTickets) {
+            size += 4 + 4 + 1 + 8 + 8 + stringSize(ticket.getVehicleRegNumber());
+        }
+        for (String vehicleRegNumber : visitCounts.keySet()) {
+            size += stringSize(vehicleRegNumber) + 4;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size + 8);
+        buffer.putInt(MAGIC);
+        buffer.putInt(FORMAT_VERSION);
+        buffer.putLong(takenAt);
+        buffer.putInt(maxTicketId);
+        //parking types are written by name, tickets then refer to them by their index here
+        buffer.putInt(parkingTypes.length);
+        for (ParkingType parkingType : parkingTypes) {
+            putString(buffer, parkingType.name());
+            buffer.putInt(totals[parkingType.ordinal()]);
+            buffer.putInt(frees[parkingType.ordinal()]);
+        }
+        buffer.putInt(openTickets.size());
+        for (Ticket ticket : openTickets) {
+            buffer.putInt(ticket.getId());
+            buffer.putInt(ticket.getParkingSpot().getId());
+            buffer.put((byte) ticket.getParkingSpot().getParkingType().ordinal());
+            buffer.putLong(ticket.getInTime().getTime());
+            buffer.putDouble(ticket.getRateMultiplier());
+            putString(buffer, ticket.getVehicleRegNumber());
+        }
+        buffer.putInt(visitCounts.size());
+        for (Map.Entry<String, Integer> visitCount : visitCounts.entrySet()) {
+            putString(buffer, visitCount.getKey());
+            buffer.putInt(visitCount.getValue());
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putLong(crc.getValue());
+        buffer.flip();
+        return buffer;
+    }
+
+    static LotStateSnapshot decode(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < 8 + 8) {
+            throw new IOException("Snapshot is truncated");
+        }
+        int end = buffer.limit() - 8;
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), buffer.arrayOffset(), end);
+        if (crc.getValue() != buffer.getLong(end)) {
+            throw new IOException("Snapshot checksum mismatch");
+        }
+        buffer.limit(end);
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                throw new IOException("Unknown snapshot format");
+            }
+            long takenAt = buffer.getLong();
+            int maxTicketId = buffer.getInt();
+            int nbTypes = buffer.getInt();
+            ParkingType[] parkingTypes = new ParkingType[nbTypes];
+            int[] totals = new int[ParkingType.values().length];
+            int[] frees = new int[ParkingType.values().length];
+            for (int i = 0; i < nbTypes; i++) {
+                parkingTypes[i] = ParkingType.valueOf(getString(buffer));
+                totals[parkingTypes[i].ordinal()] = buffer.getInt();
+                frees[parkingTypes[i].ordinal()] = buffer.getInt();
+            }
+            int nbOpenTickets = buffer.getInt();
+            List<Ticket> openTickets = new ArrayList<>(nbOpenTickets);
+            for (int i = 0; i < nbOpenTickets; i++) {
+                Ticket ticket = new Ticket();
+                ticket.setId(buffer.getInt());
+                int parkingNumber = buffer.getInt();
+                ticket.setParkingSpot(new ParkingSpot(parkingNumber, parkingTypes[buffer.get()], false));
+                ticket.setInTime(new Date(buffer.getLong()));
+                ticket.setRateMultiplier(buffer.getDouble());
+                ticket.setVehicleRegNumber(getString(buffer));
+                openTickets.add(ticket);
+            }
+            int nbVisitCounts = buffer.getInt();
+            Map<String, Integer> visitCounts = new HashMap<>(nbVisitCounts * 2);
+            for (int i = 0; i < nbVisitCounts; i++) {
+                visitCounts.put(getString(buffer), buffer.getInt());
+            }
+            return new LotStateSnapshot(takenAt, maxTicketId, totals, frees, openTickets, visitCounts);
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupted snapshot", e);
+        }
+    }
+
+    private static int stringSize(String value) {
+        return 1 + value.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_BYTES) {
+            throw new IllegalArgumentException("Value too long for snapshot: " + value);
+        }
+        buffer.put((byte) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.get() & 0xFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,189 @@
+package com.parkit.parkingsystem.cache;
+
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.util.LongObjectHashMap;
+import com.parkit.parkingsystem.util.PlateKey;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Open tickets by vehicle registration number, so that an exit does not have to
+ * read back a ticket this application saved itself. Bounded by the lot capacity:
+ * there can never be more open tickets than parking spots.
+ * Tickets are kept by packed plate in primitive maps, split in segments locked apart; the rare
+ * plates that cannot be packed are kept by string.
+ */
+public class OpenTicketCache {
+
+    private static final Logger logger = LogManager.getLogger("OpenTicketCache");
+
+    private static final int SEGMENTS = 16;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final LongObjectHashMap<Ticket>[] segments = new LongObjectHashMap[SEGMENTS];
+    private final ConcurrentHashMap<String, Ticket> unpackedTickets = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private volatile int capacity;
+
+    public OpenTicketCache() {
+        this(Integer.MAX_VALUE);
+    }
+
+    public OpenTicketCache(int capacity) {
+        this.capacity = capacity;
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new LongObjectHashMap<>();
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Grows a bounded cache by the given number of entries, an unbounded one stays unbounded.
+     */
+    public void addCapacity(int count) {
+        if (capacity != Integer.MAX_VALUE) {
+            capacity = (int) Math.min(Integer.MAX_VALUE - 1L, (long) capacity + count);
+        }
+    }
+
+    public boolean put(Ticket ticket) {
+        if (ticket == null || ticket.getId() <= 0 || ticket.getOutTime() != null || ticket.getVehicleRegNumber() == null) {
+            return false;
+        }
+        String vehicleRegNumber = ticket.getVehicleRegNumber();
+        if (size.get() >= capacity && lookup(vehicleRegNumber) == null) {
+            logger.warn("Open ticket cache is full ({} entries), ticket {} not cached", capacity, ticket.getId());
+            return false;
+        }
+        Ticket copy = copy(ticket);
+        long key = PlateKey.pack(vehicleRegNumber);
+        Ticket previous;
+        if (key == PlateKey.NO_KEY) {
+            previous = unpackedTickets.put(vehicleRegNumber, copy);
+        } else {
+            LongObjectHashMap<Ticket> segment = segment(key);
+            synchronized (segment) {
+                previous = segment.put(key, copy);
+            }
+        }
+        if (previous == null) {
+            size.incrementAndGet();
+        }
+        return true;
+    }
+
+    public Ticket get(String vehicleRegNumber) {
+        if (vehicleRegNumber == null) {
+            return null;
+        }
+        Ticket ticket = lookup(vehicleRegNumber);
+        return (ticket == null) ? null : copy(ticket);
+    }
+
+    public boolean remove(Ticket ticket) {
+        if (ticket == null || ticket.getVehicleRegNumber() == null) {
+            return false;
+        }
+        //only evict the entry of this very ticket, a newer one may have been cached in between
+        String vehicleRegNumber = ticket.getVehicleRegNumber();
+        long key = PlateKey.pack(vehicleRegNumber);
+        boolean removed;
+        if (key == PlateKey.NO_KEY) {
+            Ticket cached = unpackedTickets.get(vehicleRegNumber);
+            removed = cached != null && cached.getId() == ticket.getId() && unpackedTickets.remove(vehicleRegNumber, cached);
+        } else {
+            LongObjectHashMap<Ticket> segment = segment(key);
+            synchronized (segment) {
+                Ticket cached = segment.get(key);
+                removed = cached != null && cached.getId() == ticket.getId() && segment.remove(key, cached);
+            }
+        }
+        if (removed) {
+            size.decrementAndGet();
+        }
+        return removed;
+    }
+
+    public List<Ticket> getTickets() {
+        List<Ticket> openTickets = new ArrayList<>(size.get());
+        for (LongObjectHashMap<Ticket> segment : segments) {
+            synchronized (segment) {
+                segment.forEachValue(ticket -> openTickets.add(copy(ticket)));
+            }
+        }
+        for (Ticket ticket : unpackedTickets.values()) {
+            openTickets.add(copy(ticket));
+        }
+        return openTickets;
+    }
+
+    public int load(Collection<Ticket> openTickets) {
+        int loaded = 0;
+        for (Ticket ticket : openTickets) {
+            if (put(ticket)) {
+                loaded++;
+            }
+        }
+        logger.info("Loaded {} open tickets in cache", loaded);
+        return loaded;
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public void clear() {
+        for (LongObjectHashMap<Ticket> segment : segments) {
+            synchronized (segment) {
+                size.addAndGet(-segment.size());
+                segment.clear();
+            }
+        }
+        size.addAndGet(-unpackedTickets.size());
+        unpackedTickets.clear();
+    }
+
+    private Ticket lookup(String vehicleRegNumber) {
+        long key = PlateKey.pack(vehicleRegNumber);
+        if (key == PlateKey.NO_KEY) {
+            return unpackedTickets.get(vehicleRegNumber);
+        }
+        LongObjectHashMap<Ticket> segment = segment(key);
+        synchronized (segment) {
+            return segment.get(key);
+        }
+    }
+
+    private LongObjectHashMap<Ticket> segment(long key) {
+        return segments[(int) (PlateKey.hash(key) >>> 60)];
+    }
+
+    private static Ticket copy(Ticket ticket) {
+        Ticket copy = new Ticket();
+        copy.setId(ticket.getId());
+        ParkingSpot parkingSpot = ticket.getParkingSpot();
+        copy.setParkingSpot((parkingSpot == null) ? null
+                : new ParkingSpot(parkingSpot.getId(), parkingSpot.getParkingType(), parkingSpot.isAvailable()));
+        copy.setVehicleRegNumber(ticket.getVehicleRegNumber());
+        copy.setPrice(ticket.getPrice());
+        copy.setInTime(ticket.getInTime());
+        copy.setOutTime(ticket.getOutTime());
+        copy.setDiscount(ticket.isDiscount());
+        copy.setRateMultiplier(ticket.getRateMultiplier());
+        return copy;
+    }
+}
@@ -0,0 +1,205 @@
+package com.parkit.parkingsystem.cache;
+
+import com.parkit.parkingsystem.model.Pass;
+import com.parkit.parkingsystem.util.LongIntHashMap;
+import com.parkit.parkingsystem.util.PlateKey;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Season passes and permits by vehicle, to price a stay without a query. The passes are kept in
+ * parallel arrays chained by packed plate; a loaded index is never modified, a refresh builds a
+ * new one and swaps it in, so lookups take no lock.
+ */
+public class PassIndex {
+
+    private static final int NO_ROW = -1;
+
+    private volatile Passes passes = new Builder().build(Long.MIN_VALUE);
+
+    /**
+     * Returns the best discount, in percent, of the passes of the vehicle valid when it leaves,
+     * 0 if there is none: a pass bought during the stay covers all of it, a pass expired
+     * before the exit covers none of it.
+     */
+    public int getDiscountPercent(String vehicleRegNumber, long outMillis) {
+        if (vehicleRegNumber == null) {
+            return 0;
+        }
+        Passes current = passes;
+        int row = current.firstRow(PlateKey.normalize(vehicleRegNumber));
+        int discountPercent = 0;
+        while (row != NO_ROW) {
+            if (current.validFrom[row] <= outMillis && current.validTo[row] >= outMillis) {
+                discountPercent = Math.max(discountPercent, current.discountPercents[row]);
+            }
+            row = current.next[row];
+        }
+        return discountPercent;
+    }
+
+    public int size() {
+        return passes.size;
+    }
+
+    /**
+     * Returns a builder holding the passes of the index, to add the updated ones to.
+     */
+    public Builder toBuilder() {
+        return new Builder(passes);
+    }
+
+    /**
+     * Replaces the passes of the index by the ones of the builder, except those expired before the given time.
+     */
+    public void publish(Builder builder, long expiredBeforeMillis) {
+        passes = builder.build(expiredBeforeMillis);
+    }
+
+    /**
+     * Passes by ID; a pass added again replaces the previous version of the pass.
+     */
+    public static class Builder {
+
+        private final LongIntHashMap rowsById;
+        //the rare plates that cannot be packed, by row
+        private final Map<Integer, String> unpackedPlates;
+        private int size;
+        private int[] ids;
+        private long[] plateKeys;
+        private long[] validFrom;
+        private long[] validTo;
+        private byte[] discountPercents;
+
+        public Builder() {
+            this(new Passes(0));
+        }
+
+        private Builder(Passes passes) {
+            size = passes.size;
+            int capacity = Math.max(16, size + size / 4);
+            ids = Arrays.copyOf(passes.ids, capacity);
+            plateKeys = Arrays.copyOf(passes.plateKeys, capacity);
+            validFrom = Arrays.copyOf(passes.validFrom, capacity);
+            validTo = Arrays.copyOf(passes.validTo, capacity);
+            discountPercents = Arrays.copyOf(passes.discountPercents, capacity);
+            unpackedPlates = new HashMap<>(passes.unpackedPlates);
+            rowsById = new LongIntHashMap(size);
+            for (int row = 0; row < size; row++) {
+                rowsById.put(ids[row], row);
+            }
+        }
+
+        /**
+         * @throws IllegalArgumentException for a pass without ID, vehicle or validity dates
+         */
+        public Builder add(Pass pass) {
+            if (pass.getId() <= 0 || pass.getVehicleRegNumber() == null || pass.getValidFrom() == null || pass.getValidTo() == null) {
+                throw new IllegalArgumentException("Incomplete pass " + pass.getId());
+            }
+            int row = rowsById.get(pass.getId(), NO_ROW);
+            if (row == NO_ROW) {
+                if (size == ids.length) {
+                    grow();
+                }
+                row = size++;
+                rowsById.put(pass.getId(), row);
+            }
+            String vehicleRegNumber = PlateKey.normalize(pass.getVehicleRegNumber());
+            long plateKey = PlateKey.pack(vehicleRegNumber);
+            if (plateKey == PlateKey.NO_KEY) {
+                unpackedPlates.put(row, vehicleRegNumber);
+            } else {
+                unpackedPlates.remove(row);
+            }
+            ids[row] = pass.getId();
+            plateKeys[row] = plateKey;
+            validFrom[row] = pass.getValidFrom().getTime();
+            validTo[row] = pass.getValidTo().getTime();
+            discountPercents[row] = (byte) Math.max(0, Math.min(100, pass.getDiscountPercent()));
+            return this;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        private void grow() {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            plateKeys = Arrays.copyOf(plateKeys, capacity);
+            validFrom = Arrays.copyOf(validFrom, capacity);
+            validTo = Arrays.copyOf(validTo, capacity);
+            discountPercents = Arrays.copyOf(discountPercents, capacity);
+        }
+
+        private Passes build(long expiredBeforeMillis) {
+            int kept = 0;
+            for (int row = 0; row < size; row++) {
+                if (validTo[row] >= expiredBeforeMillis) {
+                    kept++;
+                }
+            }
+            Passes passes = new Passes(kept);
+            int to = 0;
+            for (int row = 0; row < size; row++) {
+                if (validTo[row] < expiredBeforeMillis) {
+                    continue;
+                }
+                passes.ids[to] = ids[row];
+                passes.plateKeys[to] = plateKeys[row];
+                passes.validFrom[to] = validFrom[row];
+                passes.validTo[to] = validTo[row];
+                passes.discountPercents[to] = discountPercents[row];
+                if (plateKeys[row] == PlateKey.NO_KEY) {
+                    String vehicleRegNumber = unpackedPlates.get(row);
+                    passes.unpackedPlates.put(to, vehicleRegNumber);
+                    Integer head = passes.unpackedHeads.put(vehicleRegNumber, to);
+                    passes.next[to] = (head == null) ? NO_ROW : head;
+                } else {
+                    passes.next[to] = passes.heads.get(plateKeys[row], NO_ROW);
+                    passes.heads.put(plateKeys[row], to);
+                }
+                to++;
+            }
+            return passes;
+        }
+    }
+
+    private static final class Passes {
+
+        private final int size;
+        private final int[] ids;
+        private final long[] plateKeys;
+        private final long[] validFrom;
+        private final long[] validTo;
+        private final byte[] discountPercents;
+        //next row of the same vehicle
+        private final int[] next;
+        private final LongIntHashMap heads;
+        private final Map<String, Integer> unpackedHeads = new HashMap<>();
+        private final Map<Integer, String> unpackedPlates = new HashMap<>();
+
+        private Passes(int size) {
+            this.size = size;
+            ids = new int[size];
+            plateKeys = new long[size];
+            validFrom = new long[size];
+            validTo = new long[size];
+            discountPercents = new byte[size];
+            next = new int[size];
+            heads = new LongIntHashMap(size);
+        }
+
+        private int firstRow(String vehicleRegNumber) {
+            long plateKey = PlateKey.pack(vehicleRegNumber);
+            if (plateKey == PlateKey.NO_KEY) {
+                Integer head = unpackedHeads.get(vehicleRegNumber);
+                return (head == null) ? NO_ROW : head;
+            }
+            return heads.get(plateKey, NO_ROW);
+        }
+    }
+}
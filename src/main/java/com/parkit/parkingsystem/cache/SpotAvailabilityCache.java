@@ -0,0 +1,135 @@
+package com.parkit.parkingsystem.cache;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Free and total number of spots per parking type, maintained in process from the spot
+ * claims and releases. Both numbers of a type are packed in a single long so that they are
+ * always read and updated together, without locking.
+ */
+public class SpotAvailabilityCache {
+
+    private static final long FREE_MASK = 0xFFFFFFFFL;
+
+    private final AtomicLongArray availability = new AtomicLongArray(ParkingType.values().length);
+    private volatile boolean loaded;
+    private final CopyOnWriteArrayList<SpotAvailabilityListener> listeners = new CopyOnWriteArrayList<>();
+
+    public void load(int[] totals, int[] frees) {
+        for (ParkingType parkingType : ParkingType.values()) {
+            int i = parkingType.ordinal();
+            availability.set(i, pack(totals[i], frees[i]));
+        }
+        loaded = true;
+        for (ParkingType parkingType : ParkingType.values()) {
+            fireChanged(parkingType);
+        }
+    }
+
+    public void addListener(SpotAvailabilityListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(SpotAvailabilityListener listener) {
+        listeners.remove(listener);
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public int getFree(ParkingType parkingType) {
+        return free(availability.get(parkingType.ordinal()));
+    }
+
+    public int getTotal(ParkingType parkingType) {
+        return total(availability.get(parkingType.ordinal()));
+    }
+
+    public int getOccupied(ParkingType parkingType) {
+        long value = availability.get(parkingType.ordinal());
+        return total(value) - free(value);
+    }
+
+    /**
+     * Returns the occupied share of the spots of the type in percent, 0 when it has no spot.
+     */
+    public int getOccupancyPercent(ParkingType parkingType) {
+        long value = availability.get(parkingType.ordinal());
+        int total = total(value);
+        return (total == 0) ? 0 : (int) (100L * (total - free(value)) / total);
+    }
+
+    public int[] getTotals() {
+        int[] totals = new int[ParkingType.values().length];
+        for (int i = 0; i < totals.length; i++) {
+            totals[i] = total(availability.get(i));
+        }
+        return totals;
+    }
+
+    public int[] getFrees() {
+        int[] frees = new int[ParkingType.values().length];
+        for (int i = 0; i < frees.length; i++) {
+            frees[i] = free(availability.get(i));
+        }
+        return frees;
+    }
+
+    public void claim(ParkingType parkingType) {
+        int i = parkingType.ordinal();
+        long value;
+        do {
+            value = availability.get(i);
+            if (free(value) == 0) {
+                return;
+            }
+        } while (!availability.compareAndSet(i, value, pack(total(value), free(value) - 1)));
+        fireChanged(parkingType);
+    }
+
+    public void release(ParkingType parkingType) {
+        int i = parkingType.ordinal();
+        long value;
+        do {
+            value = availability.get(i);
+            if (free(value) >= total(value)) {
+                return;
+            }
+        } while (!availability.compareAndSet(i, value, pack(total(value), free(value) + 1)));
+        fireChanged(parkingType);
+    }
+
+    /**
+     * Adds newly provisioned spots, free, to the type.
+     */
+    public void addSpots(ParkingType parkingType, int count) {
+        int i = parkingType.ordinal();
+        long value;
+        do {
+            value = availability.get(i);
+        } while (!availability.compareAndSet(i, value, pack(total(value) + count, free(value) + count)));
+        fireChanged(parkingType);
+    }
+
+    private void fireChanged(ParkingType parkingType) {
+        for (SpotAvailabilityListener listener : listeners) {
+            listener.availabilityChanged(parkingType);
+        }
+    }
+
+    private static long pack(int total, int free) {
+        return ((long) total << 32) | (free & FREE_MASK);
+    }
+
+    private static int total(long value) {
+        return (int) (value >>> 32);
+    }
+
+    private static int free(long value) {
+        return (int) (value & FREE_MASK);
+    }
+}
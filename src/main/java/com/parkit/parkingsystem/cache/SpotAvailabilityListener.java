@@ -0,0 +1,12 @@
+package com.parkit.parkingsystem.cache;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+/**
+ * Notified, on the updating thread, after the availability of a parking type changed.
+ * Implementations must return quickly and never block.
+ */
+public interface SpotAvailabilityListener {
+
+    void availabilityChanged(ParkingType parkingType);
+}
@@ -0,0 +1,200 @@
+package com.parkit.parkingsystem.cache;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Type, level and attributes of the parking spots, indexed by parking number. Spots rarely
+ * change: the arrays are never written once published, a change copies them and swaps the
+ * reference, so lookups are plain array reads without locking. Dense numberings are indexed by
+ * offset from the lowest number; sparse ones keep their numbers sorted and are binary searched.
+ */
+public class SpotRegistry {
+
+    private static final Logger logger = LogManager.getLogger("SpotRegistry");
+
+    //numberings spread wider than this many numbers per spot are stored sorted instead of by offset
+    public static final int MAX_SPAN_PER_SPOT = 4;
+    //below this span, a numbering is stored by offset whatever its density
+    private static final int MIN_DENSE_SPAN = 1024;
+
+    private static final ParkingType[] TYPES = ParkingType.values();
+
+    private volatile Spots spots = Spots.EMPTY;
+    private volatile boolean loaded;
+
+    /**
+     * Replaces the registered spots.
+     */
+    public synchronized void load(Collection<ParkingSpot> parkingSpots) {
+        Spots loadedSpots = Spots.EMPTY.with(parkingSpots);
+        spots = loadedSpots;
+        loaded = true;
+        logger.info("Loaded {} parking spots in registry, {}", loadedSpots.size,
+                (loadedSpots.numbers == null) ? "by offset" : "sorted");
+    }
+
+    /**
+     * Registers new spots, or the new definition of existing ones. Each call copies the
+     * registry: spots provisioned in bulk are registered with a single {@link #load}.
+     */
+    public synchronized void add(Collection<ParkingSpot> parkingSpots) {
+        spots = spots.with(parkingSpots);
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Returns null for an unknown spot.
+     */
+    public ParkingType getParkingType(int number) {
+        return spots.type(number);
+    }
+
+    /**
+     * Returns a new unavailable spot filled from the registry, without parking type when the
+     * spot is unknown. Spots are mutable, each caller gets its own instance; the attributes
+     * strings are shared.
+     */
+    public ParkingSpot newParkingSpot(int number) {
+        Spots current = spots;
+        ParkingSpot parkingSpot = new ParkingSpot(number, current.type(number), false);
+        int i = current.index(number);
+        if (i >= 0) {
+            parkingSpot.setLevel(current.levels[i]);
+            parkingSpot.setAttributes(current.attributes[i]);
+        }
+        return parkingSpot;
+    }
+
+    public int size() {
+        return spots.size;
+    }
+
+    public synchronized void clear() {
+        spots = Spots.EMPTY;
+        loaded = false;
+    }
+
+    private static final class Spots {
+
+        private static final Spots EMPTY = new Spots(0, null, new byte[0], new int[0], new String[0], 0);
+
+        private final int base;
+        //sorted parking numbers of a sparse numbering, null when indexed by offset from base
+        private final int[] numbers;
+        //ordinal of the parking type plus one, 0 for no spot
+        private final byte[] types;
+        private final int[] levels;
+        private final String[] attributes;
+        private final int size;
+
+        private Spots(int base, int[] numbers, byte[] types, int[] levels, String[] attributes, int size) {
+            this.base = base;
+            this.numbers = numbers;
+            this.types = types;
+            this.levels = levels;
+            this.attributes = attributes;
+            this.size = size;
+        }
+
+        private int index(int number) {
+            if (numbers != null) {
+                int i = Arrays.binarySearch(numbers, number);
+                return (i >= 0) ? i : -1;
+            }
+            long i = (long) number - base;
+            return (i >= 0 && i < types.length && types[(int) i] != 0) ? (int) i : -1;
+        }
+
+        private ParkingType type(int number) {
+            int i = index(number);
+            return (i < 0) ? null : TYPES[types[i] - 1];
+        }
+
+        private int numberAt(int i) {
+            return (numbers != null) ? numbers[i] : base + i;
+        }
+
+        private Spots with(Collection<ParkingSpot> parkingSpots) {
+            //the new spots sorted by number, the last definition of a number winning
+            ParkingSpot[] added = parkingSpots.toArray(new ParkingSpot[0]);
+            long[] order = new long[added.length];
+            int nbAdded = 0;
+            for (int k = 0; k < added.length; k++) {
+                if (added[k].getParkingType() != null) {
+                    order[nbAdded++] = ((long) added[k].getId() << 32) | k;
+                }
+            }
+            Arrays.sort(order, 0, nbAdded);
+            if (nbAdded == 0) {
+                return this;
+            }
+
+            //merge the current spots, in number order, with the new ones
+            int[] mergedNumbers = new int[size + nbAdded];
+            int[] sources = new int[size + nbAdded];
+            int merged = 0;
+            int i = 0;
+            int k = 0;
+            while (i < types.length || k < nbAdded) {
+                if (i < types.length && types[i] == 0) {
+                    i++;
+                    continue;
+                }
+                int number = (i < types.length) ? numberAt(i) : Integer.MAX_VALUE;
+                int addedNumber = (k < nbAdded) ? (int) (order[k] >> 32) : Integer.MAX_VALUE;
+                if (k < nbAdded && (i == types.length || addedNumber <= number)) {
+                    //the last definition of the number among the new spots
+                    while (k + 1 < nbAdded && (int) (order[k + 1] >> 32) == addedNumber) {
+                        k++;
+                    }
+                    mergedNumbers[merged] = addedNumber;
+                    sources[merged++] = -1 - (int) order[k];
+                    k++;
+                    if (i < types.length && number == addedNumber) {
+                        i++;
+                    }
+                } else {
+                    mergedNumbers[merged] = number;
+                    sources[merged++] = i++;
+                }
+            }
+
+            long span = (long) mergedNumbers[merged - 1] - mergedNumbers[0] + 1;
+            boolean dense = span <= Math.max(MIN_DENSE_SPAN, (long) merged * MAX_SPAN_PER_SPOT);
+            int newBase = mergedNumbers[0];
+            int length = dense ? (int) span : merged;
+            byte[] newTypes = new byte[length];
+            int[] newLevels = new int[length];
+            String[] newAttributes = new String[length];
+            Map<String, String> sharedAttributes = new HashMap<>();
+            for (int m = 0; m < merged; m++) {
+                int to = dense ? mergedNumbers[m] - newBase : m;
+                int source = sources[m];
+                String attribute;
+                if (source >= 0) {
+                    newTypes[to] = types[source];
+                    newLevels[to] = levels[source];
+                    attribute = attributes[source];
+                } else {
+                    ParkingSpot parkingSpot = added[-1 - source];
+                    newTypes[to] = (byte) (parkingSpot.getParkingType().ordinal() + 1);
+                    newLevels[to] = parkingSpot.getLevel();
+                    attribute = parkingSpot.getAttributes();
+                }
+                newAttributes[to] = (attribute == null) ? null : sharedAttributes.computeIfAbsent(attribute, a -> a);
+            }
+            return new Spots(newBase, dense ? null : Arrays.copyOf(mergedNumbers, merged), newTypes, newLevels, newAttributes, merged);
+        }
+    }
+}
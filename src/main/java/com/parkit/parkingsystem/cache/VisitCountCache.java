@@ -0,0 +1,129 @@
+package com.parkit.parkingsystem.cache;
+
+import com.parkit.parkingsystem.util.LongIntHashMap;
+import com.parkit.parkingsystem.util.PlateKey;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Number of tickets per vehicle registration number. A vehicle's count only grows, even when
+ * its tickets are archived, so only positive counts are kept: a cached count can be behind
+ * the database but never turns a recurring user into a new one.
+ * Counts are kept by packed plate in primitive maps, split in segments locked apart; the rare
+ * plates that cannot be packed are kept by string. The number of vehicles is capped: a full
+ * segment evicts an entry picked about at random, whose count is read again from the database
+ * when next needed.
+ */
+public class VisitCountCache {
+
+    public static final int DEFAULT_MAX_SIZE = 1000000;
+
+    private static final int SEGMENTS = 16;
+
+    private final LongIntHashMap[] segments = new LongIntHashMap[SEGMENTS];
+    private final ConcurrentHashMap<String, Integer> unpackedVisits = new ConcurrentHashMap<>();
+    private final int maxSegmentSize;
+
+    public VisitCountCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    public VisitCountCache(int maxSize) {
+        this.maxSegmentSize = Math.max(1, (maxSize + SEGMENTS - 1) / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new LongIntHashMap();
+        }
+    }
+
+    /**
+     * Returns the known number of tickets of the vehicle, -1 if unknown.
+     */
+    public int get(String vehicleRegNumber) {
+        if (vehicleRegNumber == null) {
+            return -1;
+        }
+        long key = PlateKey.pack(vehicleRegNumber);
+        if (key == PlateKey.NO_KEY) {
+            Integer nbTickets = unpackedVisits.get(vehicleRegNumber);
+            return (nbTickets == null) ? -1 : nbTickets;
+        }
+        LongIntHashMap segment = segment(key);
+        synchronized (segment) {
+            return segment.get(key, -1);
+        }
+    }
+
+    public void put(String vehicleRegNumber, int nbTickets) {
+        if (vehicleRegNumber == null || nbTickets <= 0) {
+            return;
+        }
+        long key = PlateKey.pack(vehicleRegNumber);
+        if (key == PlateKey.NO_KEY) {
+            if (unpackedVisits.size() < maxSegmentSize || unpackedVisits.containsKey(vehicleRegNumber)) {
+                unpackedVisits.merge(vehicleRegNumber, nbTickets, Math::max);
+            }
+            return;
+        }
+        LongIntHashMap segment = segment(key);
+        synchronized (segment) {
+            int known = segment.get(key, -1);
+            if (nbTickets > known) {
+                if (known < 0 && segment.size() >= maxSegmentSize) {
+                    segment.remove(segment.anyKey(key));
+                }
+                segment.put(key, nbTickets);
+            }
+        }
+    }
+
+    public void increment(String vehicleRegNumber) {
+        if (vehicleRegNumber == null) {
+            return;
+        }
+        long key = PlateKey.pack(vehicleRegNumber);
+        if (key == PlateKey.NO_KEY) {
+            unpackedVisits.computeIfPresent(vehicleRegNumber, (plate, nbTickets) -> nbTickets + 1);
+            return;
+        }
+        LongIntHashMap segment = segment(key);
+        synchronized (segment) {
+            int nbTickets = segment.get(key, -1);
+            if (nbTickets > 0) {
+                segment.put(key, nbTickets + 1);
+            }
+        }
+    }
+
+    public void forEach(BiConsumer<String, Integer> action) {
+        for (LongIntHashMap segment : segments) {
+            synchronized (segment) {
+                segment.forEach((key, nbTickets) -> action.accept(PlateKey.unpack(key), nbTickets));
+            }
+        }
+        unpackedVisits.forEach(action);
+    }
+
+    public int size() {
+        int size = unpackedVisits.size();
+        for (LongIntHashMap segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public void clear() {
+        for (LongIntHashMap segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+        unpackedVisits.clear();
+    }
+
+    private LongIntHashMap segment(long key) {
+        return segments[(int) (PlateKey.hash(key) >>> 60)];
+    }
+}
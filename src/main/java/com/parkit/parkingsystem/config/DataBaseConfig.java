@@ -1,5 +1,6 @@
 package com.parkit.parkingsystem.config;
 
+import com.parkit.parkingsystem.metrics.SqlProfiler;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -12,8 +13,8 @@ public class DataBaseConfig {
     public Connection getConnection() throws ClassNotFoundException, SQLException {
         logger.info("Create DB connection");
         Class.forName("com.mysql.cj.jdbc.Driver");
-        return DriverManager.getConnection(
-                "jdbc:mysql://localhost:3306/prod","root","rootroot");
+        return SqlProfiler.profile(DriverManager.getConnection(
+                "jdbc:mysql://localhost:3306/prod?rewriteBatchedStatements=true","root","rootroot"), this);
     }
 
     public void closeConnection(Connection con){
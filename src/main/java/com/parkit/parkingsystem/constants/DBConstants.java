@@ -3,9 +3,46 @@ package com.parkit.parkingsystem.constants;
 public class DBConstants {
 
     public static final String GET_NEXT_PARKING_SPOT = "select min(PARKING_NUMBER) from parking where AVAILABLE = true and TYPE = ?";
+    public static final String GET_AVAILABLE_PARKING_SPOTS = "select PARKING_NUMBER from parking where AVAILABLE = true and TYPE = ? order by PARKING_NUMBER limit ?";
+    public static final String CLAIM_PARKING_SPOT = "update parking set AVAILABLE = false, OCCUPANT = ?, CLAIM_TIME = now() where PARKING_NUMBER = ? and AVAILABLE = true";
+    //spots taken before the OCCUPANT column existed have no occupant
+    public static final String RELEASE_PARKING_SPOT = "update parking set AVAILABLE = true, OCCUPANT = null, CLAIM_TIME = null where PARKING_NUMBER = ? and AVAILABLE = false and (OCCUPANT = ? or OCCUPANT is null)";
     public static final String UPDATE_PARKING_SPOT = "update parking set available = ? where PARKING_NUMBER = ?";
+    public static final String GET_PARKING_CAPACITY = "select count(*) from parking";
+    public static final String IMPORT_PARKING_SPOT = "insert ignore into parking(PARKING_NUMBER, AVAILABLE, TYPE, LEVEL, ATTRIBUTES) values(?,true,?,?,?)";
+    public static final String GET_PARKING_SPOTS = "select PARKING_NUMBER, TYPE, LEVEL, ATTRIBUTES from parking";
+    public static final String GET_PARKING_SPOTS_IN = "select PARKING_NUMBER, TYPE, LEVEL, ATTRIBUTES from parking where PARKING_NUMBER in (%s)";
+    public static final String COUNT_PARKING_SPOTS_BETWEEN = "select TYPE, count(*) from parking where PARKING_NUMBER between ? and ? group by TYPE";
+    public static final String GET_PARKING_TOTALS = "select TYPE, count(*) from parking group by TYPE";
+    public static final String GET_PARKING_AVAILABILITY = "select TYPE, count(*), sum(AVAILABLE) from parking group by TYPE";
+    public static final String GET_PARKING_NUMBER_RANGE = "select min(PARKING_NUMBER), max(PARKING_NUMBER) from parking";
+    //taken spots without open ticket, once the claim is older than the grace period given to the entry to save its ticket
+    public static final String FREE_UNTICKETED_PARKING_SPOTS = "update parking p left join ticket t on t.PARKING_NUMBER = p.PARKING_NUMBER and t.OUT_TIME IS NULL set p.AVAILABLE = true, p.OCCUPANT = null, p.CLAIM_TIME = null where p.PARKING_NUMBER between ? and ? and p.AVAILABLE = false and t.ID IS NULL and (p.CLAIM_TIME IS NULL or p.CLAIM_TIME < now() - interval ? second)";
+    public static final String TAKE_TICKETED_PARKING_SPOTS = "update parking p join ticket t on t.PARKING_NUMBER = p.PARKING_NUMBER and t.OUT_TIME IS NULL set p.AVAILABLE = false, p.OCCUPANT = t.VEHICLE_REG_NUMBER, p.CLAIM_TIME = t.IN_TIME where p.PARKING_NUMBER between ? and ? and p.AVAILABLE = true";
+    public static final String COUNT_DOUBLE_BOOKED_PARKING_SPOTS = "select count(*) from (select PARKING_NUMBER from ticket where OUT_TIME IS NULL group by PARKING_NUMBER having count(*) > 1) d";
 
-    public static final String SAVE_TICKET = "insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) values(?,?,?,?,?)";
-    public static final String UPDATE_TICKET = "update ticket set PRICE=?, OUT_TIME=? where ID=? and OUT_TIME IS NULL";
-    public static final String GET_TICKET = "select t.PARKING_NUMBER, t.ID, t.PRICE, t.IN_TIME, t.OUT_TIME, p.TYPE from ticket t,parking p where p.parking_number = t.parking_number and t.VEHICLE_REG_NUMBER=? order by t.IN_TIME desc limit 1";
+    public static final String SAVE_TICKET = "insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME, RATE_MULTIPLIER) values(?,?,?,?,?,?)";
+    public static final String UPDATE_TICKET = "update ticket set PRICE=?, OUT_TIME=?, DISCOUNT=? where ID=? and OUT_TIME IS NULL";
+    public static final String GET_TICKET = "select PARKING_NUMBER, ID, PRICE, IN_TIME, OUT_TIME, VEHICLE_REG_NUMBER, RATE_MULTIPLIER from ticket where VEHICLE_REG_NUMBER=? order by IN_TIME desc limit 1";
+    public static final String GET_LATEST_TICKETS = "select t.PARKING_NUMBER, t.ID, t.PRICE, t.IN_TIME, t.OUT_TIME, t.VEHICLE_REG_NUMBER, t.RATE_MULTIPLIER from ticket t join (select VEHICLE_REG_NUMBER, max(IN_TIME) IN_TIME from ticket where VEHICLE_REG_NUMBER in (%s) group by VEHICLE_REG_NUMBER) l on l.VEHICLE_REG_NUMBER = t.VEHICLE_REG_NUMBER and l.IN_TIME = t.IN_TIME";
+    public static final String GET_NUMBER_TICKETS = "select VEHICLE_REG_NUMBER, sum(NB_TICKETS) from (select VEHICLE_REG_NUMBER, count(*) NB_TICKETS from ticket where VEHICLE_REG_NUMBER in (%1$s) group by VEHICLE_REG_NUMBER union all select VEHICLE_REG_NUMBER, NB_TICKETS from ticket_archive_count where VEHICLE_REG_NUMBER in (%1$s)) c group by VEHICLE_REG_NUMBER";
+    public static final String GET_OPEN_TICKETS = "select PARKING_NUMBER, ID, PRICE, IN_TIME, OUT_TIME, VEHICLE_REG_NUMBER, RATE_MULTIPLIER from ticket where OUT_TIME IS NULL";
+    public static final String GET_MAX_TICKET_ID = "select max(ID) from ticket";
+    public static final String GET_TICKETS_AFTER = "select PARKING_NUMBER, ID, PRICE, IN_TIME, OUT_TIME, VEHICLE_REG_NUMBER, RATE_MULTIPLIER from ticket where ID > ? order by ID limit ?";
+    public static final String GET_TICKETS_CLOSED_SINCE = "select PARKING_NUMBER, ID, PRICE, IN_TIME, OUT_TIME, VEHICLE_REG_NUMBER, RATE_MULTIPLIER from ticket where ID <= ? and OUT_TIME >= ?";
+    public static final String GET_NUMBER_TICKET = "select (select count(*) from ticket where VEHICLE_REG_NUMBER = ?) + coalesce((select NB_TICKETS from ticket_archive_count where VEHICLE_REG_NUMBER = ?), 0)";
+
+    public static final String TICKET_HISTORY_TABLE_PREFIX = "ticket_history_";
+    public static final String GET_ARCHIVABLE_TICKETS = "select ID, OUT_TIME from ticket where OUT_TIME < ? order by ID limit ?";
+    public static final String CREATE_TICKET_HISTORY = "create table if not exists %s like ticket";
+    public static final String ARCHIVE_TICKETS = "insert into %s select * from ticket where ID between ? and ? and OUT_TIME >= ? and OUT_TIME < ?";
+    public static final String ARCHIVE_TICKET_COUNTS = "insert into ticket_archive_count(VEHICLE_REG_NUMBER, NB_TICKETS) select VEHICLE_REG_NUMBER, count(*) from ticket where ID between ? and ? and OUT_TIME >= ? and OUT_TIME < ? group by VEHICLE_REG_NUMBER on duplicate key update NB_TICKETS = NB_TICKETS + values(NB_TICKETS)";
+
+    public static final String GET_PASSES = "select ID, VEHICLE_REG_NUMBER, VALID_FROM, VALID_TO, DISCOUNT_PERCENT, UPDATED_TIME from pass where UPDATED_TIME >= ? and VALID_TO >= ?";
+
+    public static final String GET_REPORT_ID_RANGE = "select min(ID), max(ID) from %s where IN_TIME >= ? and IN_TIME < ?";
+    public static final String GET_REPORT_TICKETS = "select t.IN_TIME, t.OUT_TIME, t.PRICE, t.DISCOUNT, p.TYPE from %s t,parking p where p.parking_number = t.parking_number and t.ID between ? and ? and t.IN_TIME >= ? and t.IN_TIME < ?";
+    public static final String GET_REPORT_CLOSED_CARRIED_OVER_TICKETS = "select t.IN_TIME, t.OUT_TIME, t.PRICE, t.DISCOUNT, p.TYPE from %s t,parking p where p.parking_number = t.parking_number and t.OUT_TIME >= ? and t.IN_TIME < ?";
+    public static final String GET_REPORT_OPEN_CARRIED_OVER_TICKETS = "select t.IN_TIME, t.OUT_TIME, t.PRICE, t.DISCOUNT, p.TYPE from %s t,parking p where p.parking_number = t.parking_number and t.OUT_TIME IS NULL and t.IN_TIME < ?";
+    public static final String DELETE_ARCHIVED_TICKETS = "delete from ticket where ID between ? and ? and OUT_TIME >= ? and OUT_TIME < ?";
 }
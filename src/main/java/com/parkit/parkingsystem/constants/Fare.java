@@ -3,4 +3,10 @@ package com.parkit.parkingsystem.constants;
 public class Fare {
     public static final double BIKE_RATE_PER_HOUR = 1.0;
     public static final double CAR_RATE_PER_HOUR = 1.5;
+
+    //surge pricing: occupancy of the vehicle's parking type at entry, in percent, and its rate multiplier
+    public static final int SURGE_OCCUPANCY_PERCENT = 70;
+    public static final double SURGE_RATE_MULTIPLIER = 1.25;
+    public static final int PEAK_SURGE_OCCUPANCY_PERCENT = 90;
+    public static final double PEAK_SURGE_RATE_MULTIPLIER = 1.5;
 }
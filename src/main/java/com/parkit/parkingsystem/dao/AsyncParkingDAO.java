@@ -0,0 +1,94 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non blocking variants of the ticket and parking spot DAO methods, so that independent
+ * queries can run at the same time. The queries run on a bounded executor: when all its
+ * threads are busy and its queue is full, the caller runs the query itself.
+ */
+public class AsyncParkingDAO {
+
+    public static final int DEFAULT_THREADS = 16;
+    public static final int DEFAULT_QUEUE_SIZE = 256;
+
+    private static final Executor DEFAULT_EXECUTOR = newExecutor(DEFAULT_THREADS, DEFAULT_QUEUE_SIZE);
+
+    private final TicketDAO ticketDAO;
+    private final ParkingSpotDAO parkingSpotDAO;
+    private final Executor executor;
+
+    public AsyncParkingDAO(TicketDAO ticketDAO, ParkingSpotDAO parkingSpotDAO) {
+        this(ticketDAO, parkingSpotDAO, DEFAULT_EXECUTOR);
+    }
+
+    public AsyncParkingDAO(TicketDAO ticketDAO, ParkingSpotDAO parkingSpotDAO, Executor executor) {
+        this.ticketDAO = ticketDAO;
+        this.parkingSpotDAO = parkingSpotDAO;
+        this.executor = executor;
+    }
+
+    public static ThreadPoolExecutor newExecutor(int threads, int queueSize) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+                    Thread thread = new Thread(runnable, "dao-async-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    public CompletableFuture<Integer> getNextAvailableSlot(ParkingType parkingType) {
+        return CompletableFuture.supplyAsync(() -> parkingSpotDAO.getNextAvailableSlot(parkingType), executor);
+    }
+
+    public CompletableFuture<List<Integer>> getAvailableSlots(ParkingType parkingType, int limit) {
+        return CompletableFuture.supplyAsync(() -> parkingSpotDAO.getAvailableSlots(parkingType, limit), executor);
+    }
+
+    public CompletableFuture<Boolean> claimParking(ParkingSpot parkingSpot, String vehicleRegNumber) {
+        return CompletableFuture.supplyAsync(() -> parkingSpotDAO.claimParking(parkingSpot, vehicleRegNumber), executor);
+    }
+
+    public CompletableFuture<Boolean> releaseParking(ParkingSpot parkingSpot, String vehicleRegNumber) {
+        return CompletableFuture.supplyAsync(() -> parkingSpotDAO.releaseParking(parkingSpot, vehicleRegNumber), executor);
+    }
+
+    public CompletableFuture<Boolean> saveTicket(Ticket ticket) {
+        return CompletableFuture.supplyAsync(() -> ticketDAO.saveTicket(ticket), executor);
+    }
+
+    public CompletableFuture<Ticket> getTicket(String vehicleRegNumber) {
+        return CompletableFuture.supplyAsync(() -> ticketDAO.getTicket(vehicleRegNumber), executor);
+    }
+
+    public CompletableFuture<Map<String, Ticket>> getTickets(Collection<String> vehicleRegNumbers) {
+        return CompletableFuture.supplyAsync(() -> ticketDAO.getTickets(vehicleRegNumbers), executor);
+    }
+
+    public CompletableFuture<Boolean> updateTicket(Ticket ticket) {
+        return CompletableFuture.supplyAsync(() -> ticketDAO.updateTicket(ticket), executor);
+    }
+
+    public CompletableFuture<Integer> getNumberTicket(String vehicleRegNumber) {
+        return CompletableFuture.supplyAsync(() -> ticketDAO.getNumberTicket(vehicleRegNumber), executor);
+    }
+
+    public CompletableFuture<int[]> getNumberTickets(List<String> vehicleRegNumbers) {
+        return CompletableFuture.supplyAsync(() -> ticketDAO.getNumberTickets(vehicleRegNumbers), executor);
+    }
+}
@@ -1,8 +1,10 @@
 package com.parkit.parkingsystem.dao;
 
+import com.parkit.parkingsystem.cache.SpotAvailabilityCache;
 import com.parkit.parkingsystem.config.DataBaseConfig;
 import com.parkit.parkingsystem.constants.DBConstants;
 import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.metrics.DaoCallEvent;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -10,15 +12,21 @@ import org.apache.logging.log4j.Logger;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 public class ParkingSpotDAO {
     private static final Logger logger = LogManager.getLogger("ParkingSpotDAO");
 
     public DataBaseConfig dataBaseConfig = new DataBaseConfig();
 
+    public SpotAvailabilityCache spotAvailabilityCache = new SpotAvailabilityCache();
+
     public int getNextAvailableSlot(ParkingType parkingType){
         Connection con = null;
         int result=-1;
+        DaoCallEvent event = DaoCallEvent.start("GET_NEXT_PARKING_SPOT");
         try {
             con = dataBaseConfig.getConnection();
             PreparedStatement ps = con.prepareStatement(DBConstants.GET_NEXT_PARKING_SPOT);
@@ -33,26 +41,367 @@ public class ParkingSpotDAO {
             logger.error("Error fetching next available slot",ex);
         }finally {
             dataBaseConfig.closeConnection(con);
+            event.finish((result > 0) ? 1 : 0);
+        }
+        return result;
+    }
+
+    /**
+     * Returns up to limit available spots of the type, lowest numbers first.
+     */
+    public List<Integer> getAvailableSlots(ParkingType parkingType, int limit){
+        Connection con = null;
+        List<Integer> result = new ArrayList<>(limit);
+        DaoCallEvent event = DaoCallEvent.start("GET_AVAILABLE_PARKING_SPOTS");
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(DBConstants.GET_AVAILABLE_PARKING_SPOTS);
+            ps.setString(1, parkingType.toString());
+            ps.setInt(2, limit);
+            ResultSet rs = ps.executeQuery();
+            while(rs.next()){
+                result.add(rs.getInt(1));
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+        }catch (Exception ex){
+            logger.error("Error fetching available slots",ex);
+        }finally {
+            dataBaseConfig.closeConnection(con);
+            event.finish(result.size());
+        }
+        return result;
+    }
+
+    public int getParkingCapacity(){
+        Connection con = null;
+        int result=-1;
+        DaoCallEvent event = DaoCallEvent.start("GET_PARKING_CAPACITY");
+        int rowCount = 0;
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(DBConstants.GET_PARKING_CAPACITY);
+            ResultSet rs = ps.executeQuery();
+            if(rs.next()){
+                result = rs.getInt(1);
+                rowCount = 1;
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+        }catch (Exception ex){
+            logger.error("Error fetching parking capacity",ex);
+            rowCount = 0;
+        }finally {
+            dataBaseConfig.closeConnection(con);
+            event.finish(rowCount);
         }
         return result;
     }
 
+    /**
+     * Returns the number of spots of each parking type, by ordinal, null on error.
+     */
+    public int[] getParkingTotals(){
+        Connection con = null;
+        int[] totals = null;
+        DaoCallEvent event = DaoCallEvent.start("GET_PARKING_TOTALS");
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(DBConstants.GET_PARKING_TOTALS);
+            ResultSet rs = ps.executeQuery();
+            int[] counts = new int[ParkingType.values().length];
+            while(rs.next()){
+                counts[ParkingType.valueOf(rs.getString(1)).ordinal()] = rs.getInt(2);
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            totals = counts;
+        }catch (Exception ex){
+            logger.error("Error fetching parking totals",ex);
+        }finally {
+            dataBaseConfig.closeConnection(con);
+            event.finish((totals == null) ? 0 : totals.length);
+        }
+        return totals;
+    }
+
+    public boolean loadAvailability(){
+        Connection con = null;
+        DaoCallEvent event = DaoCallEvent.start("GET_PARKING_AVAILABILITY");
+        int rowCount = 0;
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(DBConstants.GET_PARKING_AVAILABILITY);
+            ResultSet rs = ps.executeQuery();
+            int[] totals = new int[ParkingType.values().length];
+            int[] frees = new int[ParkingType.values().length];
+            while(rs.next()){
+                int i = ParkingType.valueOf(rs.getString(1)).ordinal();
+                totals[i] = rs.getInt(2);
+                frees[i] = rs.getInt(3);
+                rowCount++;
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            spotAvailabilityCache.load(totals, frees);
+            return true;
+        }catch (Exception ex){
+            logger.error("Error loading parking availability",ex);
+            return false;
+        }finally {
+            dataBaseConfig.closeConnection(con);
+            event.finish(rowCount);
+        }
+    }
+
+    /**
+     * Returns the lowest and highest parking numbers, null if there is no spot or on error.
+     */
+    public int[] getParkingNumberRange(){
+        Connection con = null;
+        int[] result = null;
+        DaoCallEvent event = DaoCallEvent.start("GET_PARKING_NUMBER_RANGE");
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(DBConstants.GET_PARKING_NUMBER_RANGE);
+            ResultSet rs = ps.executeQuery();
+            if(rs.next() && rs.getObject(1) != null){
+                result = new int[]{rs.getInt(1), rs.getInt(2)};
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+        }catch (Exception ex){
+            logger.error("Error fetching parking number range",ex);
+        }finally {
+            dataBaseConfig.closeConnection(con);
+            event.finish((result == null) ? 0 : 1);
+        }
+        return result;
+    }
+
+    /**
+     * Aligns the availability of the spots of the range with the open tickets: taken spots
+     * without open ticket are freed, unless claimed less than graceSeconds ago, and available
+     * spots with an open ticket are taken. Returns the number of spots freed and taken, null
+     * on error.
+     */
+    public int[] reconcileParkingSpots(int fromNumber, int toNumber, int graceSeconds){
+        Connection con = null;
+        DaoCallEvent event = DaoCallEvent.start("RECONCILE_PARKING_SPOTS");
+        int rowCount = 0;
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(DBConstants.FREE_UNTICKETED_PARKING_SPOTS);
+            ps.setInt(1, fromNumber);
+            ps.setInt(2, toNumber);
+            ps.setInt(3, graceSeconds);
+            int freed = ps.executeUpdate();
+            dataBaseConfig.closePreparedStatement(ps);
+            ps = con.prepareStatement(DBConstants.TAKE_TICKETED_PARKING_SPOTS);
+            ps.setInt(1, fromNumber);
+            ps.setInt(2, toNumber);
+            int taken = ps.executeUpdate();
+            dataBaseConfig.closePreparedStatement(ps);
+            rowCount = freed + taken;
+            return new int[]{freed, taken};
+        }catch (Exception ex){
+            logger.error("Error reconciling parking spots " + fromNumber + " to " + toNumber,ex);
+            return null;
+        }finally {
+            dataBaseConfig.closeConnection(con);
+            event.finish(rowCount);
+        }
+    }
+
+    /**
+     * Returns the number of spots with more than one open ticket, -1 on error.
+     */
+    public int countDoubleBookedSpots(){
+        Connection con = null;
+        int result = -1;
+        DaoCallEvent event = DaoCallEvent.start("COUNT_DOUBLE_BOOKED_PARKING_SPOTS");
+        int rowCount = 0;
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(DBConstants.COUNT_DOUBLE_BOOKED_PARKING_SPOTS);
+            ResultSet rs = ps.executeQuery();
+            if(rs.next()){
+                result = rs.getInt(1);
+                rowCount = 1;
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+        }catch (Exception ex){
+            logger.error("Error counting double booked parking spots",ex);
+            rowCount = 0;
+        }finally {
+            dataBaseConfig.closeConnection(con);
+            event.finish(rowCount);
+        }
+        return result;
+    }
+
+    /**
+     * Inserts the spots in one transaction, skipping the parking numbers that already exist.
+     * Returns the number of spots actually added per parking type, null on error.
+     */
+    public int[] importParkingSpots(List<ParkingSpot> parkingSpots){
+        Connection con = null;
+        DaoCallEvent event = DaoCallEvent.start("IMPORT_PARKING_SPOT");
+        int rowCount = 0;
+        try {
+            con = dataBaseConfig.getConnection();
+            con.setAutoCommit(false);
+            int minNumber = Integer.MAX_VALUE;
+            int maxNumber = Integer.MIN_VALUE;
+            for(ParkingSpot parkingSpot : parkingSpots){
+                minNumber = Math.min(minNumber, parkingSpot.getId());
+                maxNumber = Math.max(maxNumber, parkingSpot.getId());
+            }
+            int[] before = countParkingSpots(con, minNumber, maxNumber);
+            PreparedStatement ps = con.prepareStatement(DBConstants.IMPORT_PARKING_SPOT);
+            for(ParkingSpot parkingSpot : parkingSpots){
+                ps.setInt(1, parkingSpot.getId());
+                ps.setString(2, parkingSpot.getParkingType().toString());
+                ps.setInt(3, parkingSpot.getLevel());
+                ps.setString(4, parkingSpot.getAttributes());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            dataBaseConfig.closePreparedStatement(ps);
+            //the row counts of a rewritten batch are not reliable, the range is counted again instead
+            int[] added = countParkingSpots(con, minNumber, maxNumber);
+            for(int i = 0; i < added.length; i++){
+                added[i] -= before[i];
+                rowCount += added[i];
+            }
+            con.commit();
+            return added;
+        }catch (Exception ex){
+            logger.error("Error importing parking spots",ex);
+            rollback(con);
+            return null;
+        }finally {
+            dataBaseConfig.closeConnection(con);
+            event.finish(rowCount);
+        }
+    }
+
+    private int[] countParkingSpots(Connection con, int fromNumber, int toNumber) throws SQLException {
+        int[] counts = new int[ParkingType.values().length];
+        PreparedStatement ps = con.prepareStatement(DBConstants.COUNT_PARKING_SPOTS_BETWEEN);
+        ps.setInt(1, fromNumber);
+        ps.setInt(2, toNumber);
+        ResultSet rs = ps.executeQuery();
+        while(rs.next()){
+            counts[ParkingType.valueOf(rs.getString(1)).ordinal()] = rs.getInt(2);
+        }
+        dataBaseConfig.closeResultSet(rs);
+        dataBaseConfig.closePreparedStatement(ps);
+        return counts;
+    }
+
+    private void rollback(Connection con){
+        if(con != null){
+            try {
+                con.rollback();
+            } catch (SQLException e) {
+                logger.error("Error while rolling back parking spot import",e);
+            }
+        }
+    }
+
+    /**
+     * Takes the spot for the vehicle, only if it is still available: false means another
+     * gate got it first.
+     */
+    public boolean claimParking(ParkingSpot parkingSpot, String vehicleRegNumber){
+        Connection con = null;
+        DaoCallEvent event = DaoCallEvent.start("CLAIM_PARKING_SPOT");
+        int rowCount = 0;
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(DBConstants.CLAIM_PARKING_SPOT);
+            ps.setString(1, vehicleRegNumber);
+            ps.setInt(2, parkingSpot.getId());
+            int updateRowCount = ps.executeUpdate();
+            rowCount = updateRowCount;
+            dataBaseConfig.closePreparedStatement(ps);
+            if(updateRowCount == 1){
+                parkingSpot.setAvailable(false);
+                if(parkingSpot.getParkingType() != null){
+                    spotAvailabilityCache.claim(parkingSpot.getParkingType());
+                }
+            }
+            return (updateRowCount == 1);
+        }catch (Exception ex){
+            logger.error("Error claiming parking spot",ex);
+            return false;
+        }finally {
+            dataBaseConfig.closeConnection(con);
+            event.finish(rowCount);
+        }
+    }
+
+    /**
+     * Frees the spot, only if it is still taken by the vehicle: false means it was already
+     * released or is now taken by another vehicle.
+     */
+    public boolean releaseParking(ParkingSpot parkingSpot, String vehicleRegNumber){
+        Connection con = null;
+        DaoCallEvent event = DaoCallEvent.start("RELEASE_PARKING_SPOT");
+        int rowCount = 0;
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(DBConstants.RELEASE_PARKING_SPOT);
+            ps.setInt(1, parkingSpot.getId());
+            ps.setString(2, vehicleRegNumber);
+            int updateRowCount = ps.executeUpdate();
+            rowCount = updateRowCount;
+            dataBaseConfig.closePreparedStatement(ps);
+            if(updateRowCount == 1){
+                parkingSpot.setAvailable(true);
+                if(parkingSpot.getParkingType() != null){
+                    spotAvailabilityCache.release(parkingSpot.getParkingType());
+                }
+            }
+            return (updateRowCount == 1);
+        }catch (Exception ex){
+            logger.error("Error releasing parking spot",ex);
+            return false;
+        }finally {
+            dataBaseConfig.closeConnection(con);
+            event.finish(rowCount);
+        }
+    }
+
     public boolean updateParking(ParkingSpot parkingSpot){
         //update the availability fo that parking slot
         Connection con = null;
+        DaoCallEvent event = DaoCallEvent.start("UPDATE_PARKING_SPOT");
+        int rowCount = 0;
         try {
             con = dataBaseConfig.getConnection();
             PreparedStatement ps = con.prepareStatement(DBConstants.UPDATE_PARKING_SPOT);
             ps.setBoolean(1, parkingSpot.isAvailable());
             ps.setInt(2, parkingSpot.getId());
             int updateRowCount = ps.executeUpdate();
+            rowCount = updateRowCount;
             dataBaseConfig.closePreparedStatement(ps);
+            if(updateRowCount == 1 && parkingSpot.getParkingType() != null){
+                if(parkingSpot.isAvailable()){
+                    spotAvailabilityCache.release(parkingSpot.getParkingType());
+                }else{
+                    spotAvailabilityCache.claim(parkingSpot.getParkingType());
+                }
+            }
             return (updateRowCount == 1);
         }catch (Exception ex){
             logger.error("Error updating parking info",ex);
             return false;
         }finally {
             dataBaseConfig.closeConnection(con);
+            event.finish(rowCount);
         }
     }
 
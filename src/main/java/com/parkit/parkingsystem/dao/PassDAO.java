@@ -0,0 +1,61 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.metrics.DaoCallEvent;
+import com.parkit.parkingsystem.model.Pass;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.function.Consumer;
+
+public class PassDAO {
+
+    private static final Logger logger = LogManager.getLogger("PassDAO");
+
+    public DataBaseConfig dataBaseConfig = new DataBaseConfig();
+
+    /**
+     * Streams to the consumer the passes updated since the given time and still valid at the
+     * other one. Returns the number of passes read, -1 on error.
+     */
+    public int getPasses(Date updatedSince, Date validAt, Consumer<Pass> consumer) {
+        Connection con = null;
+        int nbPasses = 0;
+        DaoCallEvent event = DaoCallEvent.start("GET_PASSES");
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(DBConstants.GET_PASSES, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            //the MySQL driver streams the rows instead of loading them all with this fetch size
+            ps.setFetchSize(Integer.MIN_VALUE);
+            ps.setTimestamp(1, new Timestamp(updatedSince.getTime()));
+            ps.setTimestamp(2, new Timestamp(validAt.getTime()));
+            ResultSet rs = ps.executeQuery();
+            while(rs.next()){
+                Pass pass = new Pass();
+                pass.setId(rs.getInt(1));
+                pass.setVehicleRegNumber(rs.getString(2));
+                pass.setValidFrom(rs.getTimestamp(3));
+                pass.setValidTo(rs.getTimestamp(4));
+                pass.setDiscountPercent(rs.getInt(5));
+                pass.setUpdatedTime(rs.getTimestamp(6));
+                consumer.accept(pass);
+                nbPasses++;
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+        }catch (Exception ex){
+            logger.error("Error fetching passes updated since " + updatedSince,ex);
+            nbPasses = -1;
+        }finally {
+            dataBaseConfig.closeConnection(con);
+            event.finish(Math.max(nbPasses, 0));
+        }
+        return nbPasses;
+    }
+}
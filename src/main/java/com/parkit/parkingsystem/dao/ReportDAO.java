@@ -0,0 +1,132 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingReport;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.HashSet;
+import java.util.Set;
+
+public class ReportDAO {
+
+    private static final Logger logger = LogManager.getLogger("ReportDAO");
+
+    public DataBaseConfig dataBaseConfig = new DataBaseConfig();
+
+    public Set<String> getTicketHistoryTables() {
+        Connection con = null;
+        Set<String> tables = new HashSet<>();
+        try {
+            con = dataBaseConfig.getConnection();
+            DatabaseMetaData metaData = con.getMetaData();
+            ResultSet rs = metaData.getTables(con.getCatalog(), null, DBConstants.TICKET_HISTORY_TABLE_PREFIX + "%", new String[]{"TABLE"});
+            while(rs.next()){
+                tables.add(rs.getString("TABLE_NAME"));
+            }
+            dataBaseConfig.closeResultSet(rs);
+        }catch (Exception ex){
+            logger.error("Error listing ticket history tables",ex);
+        }finally {
+            dataBaseConfig.closeConnection(con);
+        }
+        return tables;
+    }
+
+    /**
+     * Returns the {min, max} ID of the tickets of the table that entered during the interval,
+     * null if none. A ticket open for weeks does not stretch the range over the tickets of the
+     * weeks since, the stays carried over from before the interval are read by
+     * {@link #aggregateCarriedOver}.
+     */
+    public int[] getIdRange(String table, long fromMillis, long toMillis) {
+        Connection con = null;
+        int[] range = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(String.format(DBConstants.GET_REPORT_ID_RANGE, table));
+            ps.setTimestamp(1, new Timestamp(fromMillis));
+            ps.setTimestamp(2, new Timestamp(toMillis));
+            ResultSet rs = ps.executeQuery();
+            if(rs.next()){
+                int minId = rs.getInt(1);
+                if(!rs.wasNull()){
+                    range = new int[]{minId, rs.getInt(2)};
+                }
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+        }catch (Exception ex){
+            logger.error("Error fetching report ID range of " + table,ex);
+        }finally {
+            dataBaseConfig.closeConnection(con);
+        }
+        return range;
+    }
+
+    /**
+     * Adds to the report the tickets of the ID chunk that entered during the report day.
+     */
+    public boolean aggregateChunk(String table, int fromId, int toId, ParkingReport report, long dayStartMillis, long dayEndMillis) {
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(String.format(DBConstants.GET_REPORT_TICKETS, table));
+            ps.setInt(1, fromId);
+            ps.setInt(2, toId);
+            ps.setTimestamp(3, new Timestamp(dayStartMillis));
+            ps.setTimestamp(4, new Timestamp(dayEndMillis));
+            addTickets(ps, report);
+            return true;
+        }catch (Exception ex){
+            logger.error("Error aggregating tickets " + fromId + " to " + toId + " of " + table,ex);
+            return false;
+        }finally {
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    /**
+     * Adds to the report the tickets of the table that entered before the report day and were
+     * still in the parking when it started: the ones closed since, read on the out time index,
+     * and the ones still open.
+     */
+    public boolean aggregateCarriedOver(String table, ParkingReport report, long dayStartMillis) {
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(String.format(DBConstants.GET_REPORT_CLOSED_CARRIED_OVER_TICKETS, table));
+            ps.setTimestamp(1, new Timestamp(dayStartMillis));
+            ps.setTimestamp(2, new Timestamp(dayStartMillis));
+            addTickets(ps, report);
+            ps = con.prepareStatement(String.format(DBConstants.GET_REPORT_OPEN_CARRIED_OVER_TICKETS, table));
+            ps.setTimestamp(1, new Timestamp(dayStartMillis));
+            addTickets(ps, report);
+            return true;
+        }catch (Exception ex){
+            logger.error("Error aggregating the tickets carried over to the report day of " + table,ex);
+            return false;
+        }finally {
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    private void addTickets(PreparedStatement ps, ParkingReport report) throws SQLException {
+        ResultSet rs = ps.executeQuery();
+        while(rs.next()){
+            Timestamp outTime = rs.getTimestamp(2);
+            report.add(ParkingType.valueOf(rs.getString(5)), rs.getTimestamp(1).getTime(),
+                    (outTime == null) ? 0 : outTime.getTime(), rs.getDouble(3), rs.getBoolean(4));
+        }
+        dataBaseConfig.closeResultSet(rs);
+        dataBaseConfig.closePreparedStatement(ps);
+    }
+}
@@ -0,0 +1,114 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+import java.util.TreeSet;
+
+public class TicketArchiveDAO {
+
+    private static final Logger logger = LogManager.getLogger("TicketArchiveDAO");
+
+    private static final DateTimeFormatter HISTORY_TABLE_SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+
+    public DataBaseConfig dataBaseConfig = new DataBaseConfig();
+
+    /**
+     * Moves up to batchSize tickets closed before the cutoff into their monthly history table,
+     * in a single transaction. Returns the number of tickets archived, or -1 on error.
+     */
+    public int archiveBatch(Date cutoff, int batchSize) {
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            con.setAutoCommit(false);
+
+            int minId = Integer.MAX_VALUE;
+            int maxId = Integer.MIN_VALUE;
+            int nbTickets = 0;
+            TreeSet<YearMonth> months = new TreeSet<>();
+            PreparedStatement ps = con.prepareStatement(DBConstants.GET_ARCHIVABLE_TICKETS);
+            ps.setTimestamp(1, new Timestamp(cutoff.getTime()));
+            ps.setInt(2, batchSize);
+            ResultSet rs = ps.executeQuery();
+            while(rs.next()){
+                int id = rs.getInt(1);
+                minId = Math.min(minId, id);
+                maxId = Math.max(maxId, id);
+                months.add(YearMonth.from(rs.getTimestamp(2).toLocalDateTime()));
+                nbTickets++;
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+
+            if(nbTickets == 0){
+                con.commit();
+                return 0;
+            }
+
+            //DDL commits implicitly in MySQL, so the history tables are created before any row is moved
+            Statement st = con.createStatement();
+            for(YearMonth month : months){
+                st.execute(String.format(DBConstants.CREATE_TICKET_HISTORY, historyTable(month)));
+            }
+            st.close();
+
+            LocalDateTime cutoffTime = new Timestamp(cutoff.getTime()).toLocalDateTime();
+            for(YearMonth month : months){
+                LocalDateTime from = month.atDay(1).atStartOfDay();
+                LocalDateTime to = month.plusMonths(1).atDay(1).atStartOfDay();
+                if(to.isAfter(cutoffTime)){
+                    to = cutoffTime;
+                }
+                executeForRange(con, String.format(DBConstants.ARCHIVE_TICKETS, historyTable(month)), minId, maxId, from, to);
+                executeForRange(con, DBConstants.ARCHIVE_TICKET_COUNTS, minId, maxId, from, to);
+                executeForRange(con, DBConstants.DELETE_ARCHIVED_TICKETS, minId, maxId, from, to);
+            }
+            con.commit();
+            return nbTickets;
+        }catch (Exception ex){
+            logger.error("Error archiving tickets",ex);
+            rollback(con);
+            return -1;
+        }finally {
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    public static String historyTable(YearMonth month) {
+        return DBConstants.TICKET_HISTORY_TABLE_PREFIX + month.format(HISTORY_TABLE_SUFFIX);
+    }
+
+    private int executeForRange(Connection con, String sql, int minId, int maxId, LocalDateTime from, LocalDateTime to) throws SQLException {
+        PreparedStatement ps = con.prepareStatement(sql);
+        ps.setInt(1, minId);
+        ps.setInt(2, maxId);
+        ps.setTimestamp(3, Timestamp.valueOf(from));
+        ps.setTimestamp(4, Timestamp.valueOf(to));
+        int updateRowCount = ps.executeUpdate();
+        dataBaseConfig.closePreparedStatement(ps);
+        return updateRowCount;
+    }
+
+    private void rollback(Connection con) {
+        if(con != null){
+            try {
+                con.rollback();
+            } catch (SQLException e) {
+                logger.error("Error while rolling back archive batch",e);
+            }
+        }
+    }
+}
@@ -1,8 +1,12 @@
 package com.parkit.parkingsystem.dao;
 
+import com.parkit.parkingsystem.cache.OpenTicketCache;
+import com.parkit.parkingsystem.cache.SpotRegistry;
+import com.parkit.parkingsystem.cache.VisitCountCache;
 import com.parkit.parkingsystem.config.DataBaseConfig;
 import com.parkit.parkingsystem.constants.DBConstants;
 import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.metrics.DaoCallEvent;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
 import org.apache.logging.log4j.LogManager;
@@ -11,19 +15,44 @@ import org.apache.logging.log4j.Logger;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 public class TicketDAO {
 
     private static final Logger logger = LogManager.getLogger("TicketDAO");
 
+    public static final int PLATES_PER_QUERY = 500;
+    //plates compare as in the case insensitive collation of VEHICLE_REG_NUMBER, so rows of legacy lower case plates are matched back
+    private static final Comparator<String> PLATE_ORDER = String.CASE_INSENSITIVE_ORDER;
+
     public DataBaseConfig dataBaseConfig = new DataBaseConfig();
 
+    public OpenTicketCache openTicketCache = new OpenTicketCache();
+
+    public VisitCountCache visitCountCache = new VisitCountCache();
+
+    public SpotRegistry spotRegistry = new SpotRegistry();
+
     public boolean saveTicket(Ticket ticket){
         Connection con = null;
+        DaoCallEvent event = DaoCallEvent.start("SAVE_TICKET");
+        int rowCount = 0;
         try {
             con = dataBaseConfig.getConnection();
-            PreparedStatement ps = con.prepareStatement(DBConstants.SAVE_TICKET);
+            PreparedStatement ps = con.prepareStatement(DBConstants.SAVE_TICKET, Statement.RETURN_GENERATED_KEYS);
             //ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME)
             //ps.setInt(1,ticket.getId());
             ps.setInt(1,ticket.getParkingSpot().getId());
@@ -31,18 +60,35 @@ public class TicketDAO {
             ps.setDouble(3, ticket.getPrice());
             ps.setTimestamp(4, new Timestamp(ticket.getInTime().getTime()));
             ps.setTimestamp(5, (ticket.getOutTime() == null)?null: (new Timestamp(ticket.getOutTime().getTime())) );
-            return ps.execute();
+            ps.setDouble(6, ticket.getRateMultiplier());
+            ps.executeUpdate();
+            ResultSet rs = ps.getGeneratedKeys();
+            if(rs.next()){
+                rowCount = 1;
+                ticket.setId(rs.getInt(1));
+                openTicketCache.put(ticket);
+                visitCountCache.increment(ticket.getVehicleRegNumber());
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            //the ticket is saved once it has an ID
+            return rowCount == 1;
         }catch (Exception ex){
             logger.error("Error saving ticket",ex);
             return false;
         }finally {
             dataBaseConfig.closeConnection(con);
+            event.finish(rowCount);
         }
     }
 
     public Ticket getTicket(String vehicleRegNumber) {
+        Ticket ticket = openTicketCache.get(vehicleRegNumber);
+        if(ticket != null){
+            return ticket;
+        }
         Connection con = null;
-        Ticket ticket = null;
+        DaoCallEvent event = DaoCallEvent.start("GET_TICKET");
         try {
             con = dataBaseConfig.getConnection();
             PreparedStatement ps = con.prepareStatement(DBConstants.GET_TICKET);
@@ -50,60 +96,529 @@ public class TicketDAO {
             ps.setString(1,vehicleRegNumber);
             ResultSet rs = ps.executeQuery();
             if(rs.next()){
-                ticket = new Ticket();
-                ParkingSpot parkingSpot = new ParkingSpot(rs.getInt(1), ParkingType.valueOf(rs.getString(6)),false);
-                ticket.setParkingSpot(parkingSpot);
-                ticket.setId(rs.getInt(2));
-                ticket.setVehicleRegNumber(vehicleRegNumber);
-                ticket.setPrice(rs.getDouble(3));
-                ticket.setInTime(rs.getTimestamp(4));
-                ticket.setOutTime(rs.getTimestamp(5));
+                ticket = mapTicket(rs);
             }
             dataBaseConfig.closeResultSet(rs);
             dataBaseConfig.closePreparedStatement(ps);
+            if(ticket != null && !resolveParkingSpots(con, Collections.singletonList(ticket)).isEmpty()){
+                ticket = null;
+            }
         }catch (Exception ex){
             logger.error("Error fetching ticket",ex);
+            ticket = null;
         }finally {
             dataBaseConfig.closeConnection(con);
+            event.finish((ticket == null) ? 0 : 1);
         }
         return ticket;
     }
 
+    /**
+     * Returns the latest ticket of each of the vehicles that have one, by registration number
+     * ignoring case, as the database compares them. Plates are looked up by chunks, one query per chunk.
+     */
+    public Map<String, Ticket> getTickets(Collection<String> vehicleRegNumbers) {
+        String[] plates = sortedPlates(vehicleRegNumbers);
+        Map<String, Ticket> result = new TreeMap<>(PLATE_ORDER);
+        //plates without an open ticket in cache, still sorted
+        int nbMissing = 0;
+        for(String plate : plates){
+            Ticket ticket = openTicketCache.get(plate);
+            if(ticket != null){
+                result.put(plate, ticket);
+            }else{
+                plates[nbMissing++] = plate;
+            }
+        }
+        Ticket[] tickets = new Ticket[nbMissing];
+        Connection con = null;
+        DaoCallEvent event = (nbMissing > 0) ? DaoCallEvent.start("GET_LATEST_TICKETS") : null;
+        int rowCount = 0;
+        try {
+            if(nbMissing > 0){
+                con = dataBaseConfig.getConnection();
+            }
+            for(int from = 0; from < nbMissing; from += PLATES_PER_QUERY){
+                int to = Math.min(nbMissing, from + PLATES_PER_QUERY);
+                PreparedStatement ps = con.prepareStatement(String.format(DBConstants.GET_LATEST_TICKETS, placeholders(to - from)));
+                for(int i = from; i < to; i++){
+                    ps.setString(i - from + 1, plates[i]);
+                }
+                ResultSet rs = ps.executeQuery();
+                while(rs.next()){
+                    rowCount++;
+                    int i = Arrays.binarySearch(plates, from, to, rs.getString(6), PLATE_ORDER);
+                    //two tickets of a plate with the same IN_TIME: the last created one wins
+                    if(i >= 0 && (tickets[i] == null || tickets[i].getId() < rs.getInt(2))){
+                        tickets[i] = mapTicket(rs);
+                    }
+                }
+                dataBaseConfig.closeResultSet(rs);
+                dataBaseConfig.closePreparedStatement(ps);
+            }
+            if(nbMissing > 0){
+                for(Ticket ticket : resolveParkingSpots(con, Arrays.asList(tickets))){
+                    tickets[Arrays.binarySearch(plates, 0, nbMissing, ticket.getVehicleRegNumber(), PLATE_ORDER)] = null;
+                }
+            }
+        }catch (Exception ex){
+            logger.error("Error fetching tickets",ex);
+        }finally {
+            dataBaseConfig.closeConnection(con);
+            if(event != null){
+                event.finish(rowCount);
+            }
+        }
+        for(int i = 0; i < nbMissing; i++){
+            if(tickets[i] != null){
+                result.put(plates[i], tickets[i]);
+            }
+        }
+        return result;
+    }
+
     public boolean updateTicket(Ticket ticket) {
         Connection con = null;
+        DaoCallEvent event = DaoCallEvent.start("UPDATE_TICKET");
+        int rowCount = 0;
         try {
             con = dataBaseConfig.getConnection();
             PreparedStatement ps = con.prepareStatement(DBConstants.UPDATE_TICKET);
             ps.setDouble(1, ticket.getPrice());
             ps.setTimestamp(2, new Timestamp(ticket.getOutTime().getTime()));
-            ps.setInt(3,ticket.getId());
-            ps.execute();
-            return true;
+            ps.setBoolean(3, ticket.isDiscount());
+            ps.setInt(4,ticket.getId());
+            rowCount = ps.executeUpdate();
+            dataBaseConfig.closePreparedStatement(ps);
+            //no row is updated when another node closed the ticket first
+            if(rowCount == 1){
+                openTicketCache.remove(ticket);
+            }
+            return rowCount == 1;
         }catch (Exception ex){
             logger.error("Error updating ticket info",ex);
             return false;
         }finally {
             dataBaseConfig.closeConnection(con);
+            event.finish(rowCount);
+        }
+
+    }
+
+    /**
+     * Closes the priced tickets and frees their spots in one transaction, as two JDBC batches.
+     * Returns, in the order of the tickets, -1 for a ticket that was already closed, else the
+     * number of spots freed (0 when the spot was not held by the vehicle any more); null on error,
+     * nothing is then closed.
+     */
+    public int[] closeTickets(List<Ticket> tickets) {
+        int[] result = new int[tickets.size()];
+        if(tickets.isEmpty()){
+            return result;
+        }
+        Connection con = null;
+        DaoCallEvent event = DaoCallEvent.start("CLOSE_TICKETS");
+        int rowCount = 0;
+        try {
+            con = dataBaseConfig.getConnection();
+            con.setAutoCommit(false);
+            PreparedStatement ps = con.prepareStatement(DBConstants.UPDATE_TICKET);
+            for(Ticket ticket : tickets){
+                ps.setDouble(1, ticket.getPrice());
+                ps.setTimestamp(2, new Timestamp(ticket.getOutTime().getTime()));
+                ps.setBoolean(3, ticket.isDiscount());
+                ps.setInt(4, ticket.getId());
+                ps.addBatch();
+            }
+            int[] closed = ps.executeBatch();
+            dataBaseConfig.closePreparedStatement(ps);
+            ps = con.prepareStatement(DBConstants.RELEASE_PARKING_SPOT);
+            int nbClosed = 0;
+            for(int i = 0; i < closed.length; i++){
+                if(isUpdated(closed[i])){
+                    Ticket ticket = tickets.get(i);
+                    ps.setInt(1, ticket.getParkingSpot().getId());
+                    ps.setString(2, ticket.getVehicleRegNumber());
+                    ps.addBatch();
+                    nbClosed++;
+                }else{
+                    result[i] = -1;
+                }
+            }
+            int[] released = (nbClosed > 0) ? ps.executeBatch() : new int[0];
+            dataBaseConfig.closePreparedStatement(ps);
+            con.commit();
+            int k = 0;
+            for(int i = 0; i < closed.length; i++){
+                if(result[i] == 0){
+                    result[i] = isUpdated(released[k++]) ? 1 : 0;
+                    openTicketCache.remove(tickets.get(i));
+                    rowCount += 1 + result[i];
+                }
+            }
+            return result;
+        }catch (Exception ex){
+            logger.error("Error closing " + tickets.size() + " tickets",ex);
+            rollback(con);
+            return null;
+        }finally {
+            dataBaseConfig.closeConnection(con);
+            event.finish(rowCount);
+        }
+    }
+
+    //a rewritten batch reports its statements as successful without a row count
+    private static boolean isUpdated(int updateCount) {
+        return updateCount == 1 || updateCount == Statement.SUCCESS_NO_INFO;
+    }
+
+    private void rollback(Connection con){
+        if(con != null){
+            try {
+                con.rollback();
+            } catch (SQLException e) {
+                logger.error("Error while rolling back ticket closing",e);
+            }
+        }
+    }
+
+    public List<Ticket> getOpenTickets() {
+        Connection con = null;
+        List<Ticket> tickets = new ArrayList<>();
+        DaoCallEvent event = DaoCallEvent.start("GET_OPEN_TICKETS");
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(DBConstants.GET_OPEN_TICKETS);
+            ResultSet rs = ps.executeQuery();
+            while(rs.next()){
+                tickets.add(mapTicket(rs));
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            tickets.removeAll(resolveParkingSpots(con, tickets));
+        }catch (Exception ex){
+            logger.error("Error fetching open tickets",ex);
+        }finally {
+            dataBaseConfig.closeConnection(con);
+            event.finish((tickets == null) ? 0 : tickets.size());
+        }
+        return tickets;
+    }
+
+    public int getMaxTicketId() {
+        Connection con = null;
+        int maxId = 0;
+        DaoCallEvent event = DaoCallEvent.start("GET_MAX_TICKET_ID");
+        int rowCount = 0;
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(DBConstants.GET_MAX_TICKET_ID);
+            ResultSet rs = ps.executeQuery();
+            if(rs.next()){
+                maxId = rs.getInt(1);
+                rowCount = 1;
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+        }catch (Exception ex){
+            logger.error("Error fetching max ticket ID",ex);
+            maxId = -1;
+            rowCount = 0;
+        }finally {
+            dataBaseConfig.closeConnection(con);
+            event.finish(rowCount);
+        }
+        return maxId;
+    }
+
+    /**
+     * Returns the tickets created after the given ticket ID, null on error.
+     */
+    public List<Ticket> getTicketsAfter(int ticketId) {
+        return getTicketsAfter(ticketId, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns at most limit tickets created after the given ticket ID, in ID order, null on error.
+     */
+    public List<Ticket> getTicketsAfter(int ticketId, int limit) {
+        Connection con = null;
+        List<Ticket> tickets = new ArrayList<>();
+        DaoCallEvent event = DaoCallEvent.start("GET_TICKETS_AFTER");
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(DBConstants.GET_TICKETS_AFTER);
+            ps.setInt(1, ticketId);
+            ps.setInt(2, limit);
+            ResultSet rs = ps.executeQuery();
+            while(rs.next()){
+                tickets.add(mapTicket(rs));
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            tickets.removeAll(resolveParkingSpots(con, tickets));
+        }catch (Exception ex){
+            logger.error("Error fetching tickets after " + ticketId,ex);
+            tickets = null;
+        }finally {
+            dataBaseConfig.closeConnection(con);
+            event.finish((tickets == null) ? 0 : tickets.size());
+        }
+        return tickets;
+    }
+
+    /**
+     * Returns the tickets up to the given ticket ID that were closed since the given time, null on error.
+     */
+    public List<Ticket> getTicketsClosedSince(int maxTicketId, Date since) {
+        Connection con = null;
+        List<Ticket> tickets = new ArrayList<>();
+        DaoCallEvent event = DaoCallEvent.start("GET_TICKETS_CLOSED_SINCE");
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(DBConstants.GET_TICKETS_CLOSED_SINCE);
+            ps.setInt(1, maxTicketId);
+            ps.setTimestamp(2, new Timestamp(since.getTime()));
+            ResultSet rs = ps.executeQuery();
+            while(rs.next()){
+                tickets.add(mapTicket(rs));
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            tickets.removeAll(resolveParkingSpots(con, tickets));
+        }catch (Exception ex){
+            logger.error("Error fetching tickets closed since " + since,ex);
+            tickets = null;
+        }finally {
+            dataBaseConfig.closeConnection(con);
+            event.finish((tickets == null) ? 0 : tickets.size());
+        }
+        return tickets;
+    }
+
+    //PARKING_NUMBER, ID, PRICE, IN_TIME, OUT_TIME, VEHICLE_REG_NUMBER, RATE_MULTIPLIER
+    //the spot is filled from the registry, its type is left null when the spot is not registered yet
+    private Ticket mapTicket(ResultSet rs) throws SQLException {
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(spotRegistry.newParkingSpot(rs.getInt(1)));
+        ticket.setId(rs.getInt(2));
+        ticket.setVehicleRegNumber(rs.getString(6));
+        ticket.setPrice(rs.getDouble(3));
+        ticket.setInTime(rs.getTimestamp(4));
+        ticket.setOutTime(rs.getTimestamp(5));
+        ticket.setRateMultiplier(rs.getDouble(7));
+        return ticket;
+    }
+
+    /**
+     * Looks up the spots of the tickets that are not registered, spots added since the registry
+     * was loaded, and registers them. Returns the tickets whose spot does not exist any more.
+     */
+    private List<Ticket> resolveParkingSpots(Connection con, List<Ticket> tickets) throws SQLException {
+        TreeSet<Integer> unknown = new TreeSet<>();
+        for(Ticket ticket : tickets){
+            if(ticket != null && ticket.getParkingSpot().getParkingType() == null){
+                unknown.add(ticket.getParkingSpot().getId());
+            }
+        }
+        if(unknown.isEmpty()){
+            return Collections.emptyList();
+        }
+        Integer[] numbers = unknown.toArray(new Integer[0]);
+        Map<Integer, ParkingSpot> parkingSpots = new HashMap<>(numbers.length * 2);
+        for(int from = 0; from < numbers.length; from += PLATES_PER_QUERY){
+            int to = Math.min(numbers.length, from + PLATES_PER_QUERY);
+            PreparedStatement ps = con.prepareStatement(String.format(DBConstants.GET_PARKING_SPOTS_IN, placeholders(to - from)));
+            for(int i = from; i < to; i++){
+                ps.setInt(i - from + 1, numbers[i]);
+            }
+            ResultSet rs = ps.executeQuery();
+            while(rs.next()){
+                ParkingSpot parkingSpot = mapParkingSpot(rs);
+                parkingSpots.put(parkingSpot.getId(), parkingSpot);
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+        }
+        spotRegistry.add(parkingSpots.values());
+        List<Ticket> orphans = new ArrayList<>();
+        for(Ticket ticket : tickets){
+            if(ticket == null || ticket.getParkingSpot().getParkingType() != null){
+                continue;
+            }
+            ParkingSpot parkingSpot = parkingSpots.get(ticket.getParkingSpot().getId());
+            if(parkingSpot == null){
+                orphans.add(ticket);
+            }else{
+                ticket.setParkingSpot(new ParkingSpot(parkingSpot.getId(), parkingSpot.getParkingType(), false));
+                ticket.getParkingSpot().setLevel(parkingSpot.getLevel());
+                ticket.getParkingSpot().setAttributes(parkingSpot.getAttributes());
+            }
+        }
+        return orphans;
+    }
+
+    //PARKING_NUMBER, TYPE, LEVEL, ATTRIBUTES
+    private static ParkingSpot mapParkingSpot(ResultSet rs) throws SQLException {
+        ParkingSpot parkingSpot = new ParkingSpot(rs.getInt(1), ParkingType.valueOf(rs.getString(2)), true);
+        parkingSpot.setLevel(rs.getInt(3));
+        parkingSpot.setAttributes(rs.getString(4));
+        return parkingSpot;
+    }
+
+    /**
+     * Loads the type, level and attributes of every spot, so that tickets are read without
+     * joining the parking table. Returns the number of spots, -1 on error.
+     */
+    public int warmUpSpotRegistry() {
+        Connection con = null;
+        List<ParkingSpot> parkingSpots = new ArrayList<>();
+        DaoCallEvent event = DaoCallEvent.start("GET_PARKING_SPOTS");
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(DBConstants.GET_PARKING_SPOTS);
+            ResultSet rs = ps.executeQuery();
+            while(rs.next()){
+                parkingSpots.add(mapParkingSpot(rs));
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+        }catch (Exception ex){
+            logger.error("Error loading parking spots",ex);
+            parkingSpots = null;
+        }finally {
+            dataBaseConfig.closeConnection(con);
+            event.finish((parkingSpots == null) ? 0 : parkingSpots.size());
+        }
+        if(parkingSpots == null){
+            return -1;
+        }
+        spotRegistry.load(parkingSpots);
+        return parkingSpots.size();
+    }
+
+    public int warmUpOpenTicketCache(int capacity) {
+        if(capacity > 0){
+            openTicketCache.setCapacity(capacity);
+        }
+        return openTicketCache.load(getOpenTickets());
+    }
+
+    /**
+     * Returns the number of tickets of each vehicle, in the order of the given registration numbers.
+     * Plates are looked up by chunks, one query per chunk.
+     */
+    public int[] getNumberTickets(List<String> vehicleRegNumbers) {
+        String[] plates = sortedPlates(vehicleRegNumbers);
+        int[] counts = new int[plates.length];
+        //plates without a cached count, still sorted
+        String[] missing = new String[plates.length];
+        int nbMissing = 0;
+        for(int i = 0; i < plates.length; i++){
+            counts[i] = visitCountCache.get(plates[i]);
+            if(counts[i] <= 0){
+                counts[i] = 0;
+                missing[nbMissing++] = plates[i];
+            }
+        }
+        Connection con = null;
+        DaoCallEvent event = (nbMissing > 0) ? DaoCallEvent.start("GET_NUMBER_TICKETS") : null;
+        int rowCount = 0;
+        try {
+            if(nbMissing > 0){
+                con = dataBaseConfig.getConnection();
+            }
+            for(int from = 0; from < nbMissing; from += PLATES_PER_QUERY){
+                int to = Math.min(nbMissing, from + PLATES_PER_QUERY);
+                PreparedStatement ps = con.prepareStatement(String.format(DBConstants.GET_NUMBER_TICKETS, placeholders(to - from)));
+                for(int i = from; i < to; i++){
+                    ps.setString(i - from + 1, missing[i]);
+                    ps.setString(i - from + 1 + (to - from), missing[i]);
+                }
+                ResultSet rs = ps.executeQuery();
+                while(rs.next()){
+                    rowCount++;
+                    int i = Arrays.binarySearch(plates, rs.getString(1), PLATE_ORDER);
+                    if(i >= 0){
+                        counts[i] = rs.getInt(2);
+                        visitCountCache.put(plates[i], counts[i]);
+                    }
+                }
+                dataBaseConfig.closeResultSet(rs);
+                dataBaseConfig.closePreparedStatement(ps);
+            }
+        }catch (Exception ex){
+            logger.error("Error counting number of tickets: ",ex);
+        }finally {
+            dataBaseConfig.closeConnection(con);
+            if(event != null){
+                event.finish(rowCount);
+            }
         }
+        int[] result = new int[vehicleRegNumbers.size()];
+        int k = 0;
+        for(String vehicleRegNumber : vehicleRegNumbers){
+            result[k++] = (vehicleRegNumber == null) ? 0 : counts[Arrays.binarySearch(plates, vehicleRegNumber, PLATE_ORDER)];
+        }
+        return result;
+    }
 
+    //distinct non null plates, sorted for binary search in PLATE_ORDER
+    private static String[] sortedPlates(Collection<String> vehicleRegNumbers) {
+        String[] plates = new String[vehicleRegNumbers.size()];
+        int n = 0;
+        for(String vehicleRegNumber : vehicleRegNumbers){
+            if(vehicleRegNumber != null){
+                plates[n++] = vehicleRegNumber;
+            }
+        }
+        Arrays.sort(plates, 0, n, PLATE_ORDER);
+        int distinct = 0;
+        for(int i = 0; i < n; i++){
+            if(distinct == 0 || PLATE_ORDER.compare(plates[i], plates[distinct - 1]) != 0){
+                plates[distinct++] = plates[i];
+            }
+        }
+        return Arrays.copyOf(plates, distinct);
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder placeholders = new StringBuilder(count * 2);
+        for(int i = 0; i < count; i++){
+            placeholders.append((i == 0) ? "?" : ",?");
+        }
+        return placeholders.toString();
     }
 
     public int getNumberTicket(String vehicleRegNumber) {
+        int nbTickets = visitCountCache.get(vehicleRegNumber);
+        if(nbTickets > 0){
+            return nbTickets;
+        }
         Connection con = null;
-        int nbTickets = 0;
+        nbTickets = 0;
+        DaoCallEvent event = DaoCallEvent.start("GET_NUMBER_TICKET");
+        int rowCount = 0;
 
         try {
             con = dataBaseConfig.getConnection();
-            PreparedStatement ps = con.prepareStatement("SELECT COUNT(*) FROM ticket WHERE VEHICLE_REG_NUMBER = ?");
+            PreparedStatement ps = con.prepareStatement(DBConstants.GET_NUMBER_TICKET);
             ps.setString(1,vehicleRegNumber );
+            ps.setString(2,vehicleRegNumber );
             ResultSet rs = ps.executeQuery();
             if ( rs.next() ) {
                 nbTickets = rs.getInt(1);
+                visitCountCache.put(vehicleRegNumber, nbTickets);
+                rowCount = 1;
             }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
         } catch (Exception ex) {
             logger.error("Error counting number of tickets: ",ex);
+            rowCount = 0;
         } finally {
             dataBaseConfig.closeConnection(con);
+            event.finish(rowCount);
         }
         return nbTickets;
     }
@@ -0,0 +1,41 @@
+package com.parkit.parkingsystem.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight Recorder event covering a DAO call that reached the database, named after its statement.
+ */
+@Name("com.parkit.DaoCall")
+@Label("DAO Call")
+@Category({"Parking System", "Database"})
+@StackTrace(false)
+@Enabled(false)
+@Threshold("10 ms")
+public class DaoCallEvent extends jdk.jfr.Event {
+
+    @Label("SQL Id")
+    private String sqlId;
+
+    @Label("Row Count")
+    private int rowCount;
+
+    public static DaoCallEvent start(String sqlId) {
+        DaoCallEvent event = new DaoCallEvent();
+        event.begin();
+        event.sqlId = sqlId;
+        return event;
+    }
+
+    public void finish(int rowCount) {
+        end();
+        if (shouldCommit()) {
+            this.rowCount = rowCount;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.parkit.parkingsystem.metrics;
+
+import com.parkit.parkingsystem.model.Ticket;
+import jdk.jfr.Category;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event covering the fare calculation of a ticket.
+ */
+@Name("com.parkit.FareCalculation")
+@Label("Fare Calculation")
+@Category({"Parking System", "Fare"})
+@StackTrace(false)
+@Enabled(false)
+public class FareCalculationEvent extends jdk.jfr.Event {
+
+    @Label("Parking Type")
+    private String parkingType;
+
+    @Label("Stay")
+    @Timespan(Timespan.MILLISECONDS)
+    private long stay;
+
+    @Label("Discount")
+    private boolean discount;
+
+    @Label("Rate Multiplier")
+    private double rateMultiplier;
+
+    @Label("Price")
+    private double price;
+
+    public static FareCalculationEvent start() {
+        FareCalculationEvent event = new FareCalculationEvent();
+        event.begin();
+        return event;
+    }
+
+    public void finish(Ticket ticket) {
+        end();
+        if (shouldCommit()) {
+            this.parkingType = ticket.getParkingSpot().getParkingType().name();
+            this.stay = ticket.getOutTime().getTime() - ticket.getInTime().getTime();
+            this.discount = ticket.isDiscount();
+            this.rateMultiplier = ticket.getRateMultiplier();
+            this.price = ticket.getPrice();
+            commit();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.parkit.parkingsystem.metrics;
+
+import com.parkit.parkingsystem.constants.GateEvent;
+import com.parkit.parkingsystem.constants.ParkingType;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+
+/**
+ * Flight Recorder event covering a vehicle entry or exit, from the gate trigger to the ticket.
+ * The plate is only recorded as an HMAC keyed by a random key drawn at startup: the events of
+ * a vehicle can be correlated within a recording, but the plate cannot be found back from it.
+ */
+@Name("com.parkit.GateOperation")
+@Label("Gate Operation")
+@Category({"Parking System", "Gate"})
+@StackTrace(false)
+@Enabled(false)
+public class GateOperationEvent extends jdk.jfr.Event {
+
+    public static final String PARKED = "PARKED";
+    public static final String EXITED = "EXITED";
+    public static final String NO_SPOT = "NO_SPOT";
+    public static final String REJECTED = "REJECTED";
+    public static final String FAILED = "FAILED";
+
+    private static final String PLATE_HASH_ALGORITHM = "HmacSHA256";
+    private static final SecretKeySpec PLATE_HASH_KEY = newPlateHashKey();
+    //a Mac is not thread safe
+    private static final ThreadLocal<Mac> PLATE_HASH = ThreadLocal.withInitial(GateOperationEvent::newPlateHash);
+
+    @Label("Operation")
+    private String operation;
+
+    @Label("Plate Hash")
+    @Description("Keyed hash of the vehicle registration number, the key changes on every start")
+    private long plateHash;
+
+    @Label("Parking Type")
+    private String parkingType;
+
+    @Label("Outcome")
+    private String outcome;
+
+    public static GateOperationEvent start(GateEvent gateEvent) {
+        GateOperationEvent event = new GateOperationEvent();
+        event.begin();
+        event.operation = gateEvent.name();
+        return event;
+    }
+
+    /**
+     * Records the event, only when it is enabled and lasted longer than its threshold.
+     */
+    public void finish(String vehicleRegNumber, ParkingType parkingType, String outcome) {
+        end();
+        if (shouldCommit()) {
+            this.plateHash = plateHash(vehicleRegNumber);
+            this.parkingType = (parkingType == null) ? null : parkingType.name();
+            this.outcome = outcome;
+            commit();
+        }
+    }
+
+    private static long plateHash(String vehicleRegNumber) {
+        if (vehicleRegNumber == null) {
+            return 0;
+        }
+        byte[] hash = PLATE_HASH.get().doFinal(vehicleRegNumber.getBytes(StandardCharsets.UTF_8));
+        return ByteBuffer.wrap(hash).getLong();
+    }
+
+    private static SecretKeySpec newPlateHashKey() {
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        return new SecretKeySpec(key, PLATE_HASH_ALGORITHM);
+    }
+
+    private static Mac newPlateHash() {
+        try {
+            Mac mac = Mac.getInstance(PLATE_HASH_ALGORITHM);
+            mac.init(PLATE_HASH_KEY);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            //every Java platform provides HmacSHA256
+            throw new IllegalStateException(e);
+        }
+    }
+}
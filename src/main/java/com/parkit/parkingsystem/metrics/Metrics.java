@@ -0,0 +1,88 @@
+package com.parkit.parkingsystem.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process wide counters and timers, cheap enough to be updated on every gate operation.
+ */
+public final class Metrics {
+
+    private static final ConcurrentHashMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, Timer> timers = new ConcurrentHashMap<>();
+
+    private Metrics() {
+    }
+
+    public static void increment(String name) {
+        add(name, 1);
+    }
+
+    public static void add(String name, long value) {
+        counters.computeIfAbsent(name, key -> new LongAdder()).add(value);
+    }
+
+    public static long getCount(String name) {
+        LongAdder counter = counters.get(name);
+        return (counter == null) ? 0 : counter.sum();
+    }
+
+    public static void recordNanos(String name, long nanos) {
+        timer(name).record(nanos);
+    }
+
+    public static Timer timer(String name) {
+        return timers.computeIfAbsent(name, key -> new Timer());
+    }
+
+    public static Map<String, String> snapshot() {
+        Map<String, String> snapshot = new TreeMap<>();
+        counters.forEach((name, counter) -> snapshot.put(name, String.valueOf(counter.sum())));
+        timers.forEach((name, timer) -> snapshot.put(name, timer.toString()));
+        return snapshot;
+    }
+
+    public static void reset() {
+        counters.clear();
+        timers.clear();
+    }
+
+    public static class Timer {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        public void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+
+        public double getMeanMillis() {
+            long n = count.sum();
+            return (n == 0) ? 0 : (double) totalNanos.sum() / n / TimeUnit.MILLISECONDS.toNanos(1);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d mean=%.3fms max=%.3fms", getCount(), getMeanMillis(),
+                    (double) getMaxNanos() / TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+}
@@ -0,0 +1,438 @@
+package com.parkit.parkingsystem.metrics;
+
+import com.parkit.parkingsystem.cache.SpotAvailabilityCache;
+import com.parkit.parkingsystem.cache.SpotAvailabilityListener;
+import com.parkit.parkingsystem.constants.ParkingType;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Occupied spot count history per parking type, kept in memory at one second resolution for
+ * the last hour, one minute for the last day and one hour for the last year.
+ * It is fed by the spot availability changes: the count held between two changes is added to
+ * the second ring buffer, whose closed slots are rolled up into the minute one, and so on.
+ * The buffers have a fixed size whatever the traffic and are saved to a local file periodically.
+ */
+public class OccupancyTimeSeries implements SpotAvailabilityListener {
+
+    private static final Logger logger = LogManager.getLogger("OccupancyTimeSeries");
+
+    public static final long DEFAULT_PERIOD_SECONDS = 60;
+
+    private static final int MAGIC = 0x504B5453;
+    private static final int FORMAT_VERSION = 1;
+
+    public enum Resolution {
+        SECOND(1000, 3600),
+        MINUTE(60 * 1000, 24 * 60),
+        HOUR(60 * 60 * 1000, 365 * 24);
+
+        private final long stepMillis;
+        private final int size;
+
+        Resolution(long stepMillis, int size) {
+            this.stepMillis = stepMillis;
+            this.size = size;
+        }
+
+        public long getStepMillis() {
+            return stepMillis;
+        }
+
+        public int getSize() {
+            return size;
+        }
+    }
+
+    private final SpotAvailabilityCache spotAvailabilityCache;
+    private final Path file;
+    private final Series[] series = new Series[ParkingType.values().length];
+
+    private ScheduledExecutorService scheduler;
+
+    public OccupancyTimeSeries(SpotAvailabilityCache spotAvailabilityCache, Path file) {
+        this.spotAvailabilityCache = spotAvailabilityCache;
+        this.file = file;
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < series.length; i++) {
+            series[i] = new Series(now);
+        }
+    }
+
+    /**
+     * Restores the saved history, then records the changes and saves them every period.
+     */
+    public synchronized void start(long periodSeconds) {
+        if (scheduler != null) {
+            return;
+        }
+        if (file != null && Files.exists(file)) {
+            restore();
+        }
+        spotAvailabilityCache.addListener(this);
+        for (ParkingType parkingType : ParkingType.values()) {
+            availabilityChanged(parkingType);
+        }
+        if (file == null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "occupancy-time-series");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::save, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    public synchronized void stop() {
+        spotAvailabilityCache.removeListener(this);
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+            save();
+        }
+    }
+
+    @Override
+    public void availabilityChanged(ParkingType parkingType) {
+        if (spotAvailabilityCache.isLoaded()) {
+            record(parkingType, System.currentTimeMillis(), spotAvailabilityCache.getOccupied(parkingType));
+        }
+    }
+
+    public void record(ParkingType parkingType, long time, int occupied) {
+        series[parkingType.ordinal()].record(time, occupied);
+    }
+
+    /**
+     * Returns the slots of the resolution overlapping [from, to), oldest first. Slots without
+     * data (before the history starts, or while the application was stopped) are left out.
+     * A minute or hour slot includes the finer slots closed so far.
+     */
+    public Points query(ParkingType parkingType, Resolution resolution, long from, long to) {
+        return series[parkingType.ordinal()].query(resolution, from, to, System.currentTimeMillis());
+    }
+
+    public boolean save() {
+        if (file == null) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        ByteBuffer buffer = ByteBuffer.allocate(4 + 4 + 4 + series.length * (4 + seriesBytes()) + 8);
+        buffer.putInt(MAGIC);
+        buffer.putInt(FORMAT_VERSION);
+        buffer.putInt(series.length);
+        for (ParkingType parkingType : ParkingType.values()) {
+            buffer.putInt(parkingType.ordinal());
+            series[parkingType.ordinal()].writeTo(buffer, now);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putLong(crc.getValue());
+        buffer.flip();
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (Exception e) {
+            logger.error("Unable to save occupancy history to " + file, e);
+            return false;
+        }
+    }
+
+    boolean restore() {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+            int end = buffer.limit() - 8;
+            CRC32 crc = new CRC32();
+            crc.update(buffer.array(), 0, Math.max(0, end));
+            if (end < 12 || crc.getValue() != buffer.getLong(end)) {
+                throw new IOException("Occupancy history checksum mismatch");
+            }
+            buffer.limit(end);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                throw new IOException("Unknown occupancy history format");
+            }
+            int nbSeries = buffer.getInt();
+            if (buffer.remaining() != nbSeries * (4 + seriesBytes())) {
+                throw new IOException("Occupancy history is truncated");
+            }
+            for (int i = 0; i < nbSeries; i++) {
+                int ordinal = buffer.getInt();
+                if (ordinal >= series.length) {
+                    break;
+                }
+                series[ordinal].readFrom(buffer);
+            }
+            logger.info("Restored occupancy history from {}", file);
+            return true;
+        } catch (Exception e) {
+            logger.error("Unable to read occupancy history " + file, e);
+            return false;
+        }
+    }
+
+    private static int seriesBytes() {
+        int size = 0;
+        for (Resolution resolution : Resolution.values()) {
+            size += 8 + resolution.size * Tier.SLOT_BYTES;
+        }
+        return size;
+    }
+
+    /**
+     * The history of one parking type: the count held since the last change, and the tiers.
+     */
+    private static class Series {
+        private final Tier[] tiers = new Tier[Resolution.values().length];
+        private long lastTime;
+        private int lastOccupied = -1;
+
+        private Series(long now) {
+            Tier parent = null;
+            for (int i = tiers.length - 1; i >= 0; i--) {
+                tiers[i] = new Tier(Resolution.values()[i], parent);
+                parent = tiers[i];
+            }
+            lastTime = now;
+        }
+
+        private synchronized void record(long time, int occupied) {
+            advance(time);
+            lastOccupied = occupied;
+        }
+
+        private void advance(long time) {
+            if (time <= lastTime) {
+                return;
+            }
+            if (lastOccupied >= 0) {
+                tiers[0].add(lastTime, time, lastOccupied, lastOccupied, (long) lastOccupied * (time - lastTime),
+                        (int) Math.min(Integer.MAX_VALUE, time - lastTime));
+            }
+            lastTime = time;
+        }
+
+        private synchronized Points query(Resolution resolution, long from, long to, long now) {
+            //the count held since the last change is accounted up to now
+            advance(now);
+            return tiers[resolution.ordinal()].query(from, to);
+        }
+
+        private synchronized void writeTo(ByteBuffer buffer, long now) {
+            advance(now);
+            for (Tier tier : tiers) {
+                tier.writeTo(buffer);
+            }
+        }
+
+        private synchronized void readFrom(ByteBuffer buffer) throws IOException {
+            for (Tier tier : tiers) {
+                tier.readFrom(buffer);
+            }
+            //nothing is known of the time the application was stopped
+            lastTime = Math.max(lastTime, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * A ring buffer of slots of one resolution. Each slot keeps the minimum and maximum count
+     * seen, and the sum of count x milliseconds over the part of the slot that was covered.
+     */
+    private static class Tier {
+        private static final int SLOT_BYTES = 8 + 4 + 4 + 8 + 4;
+
+        private final long stepMillis;
+        private final int size;
+        private final Tier parent;
+        //absolute slot number (time / step) held at each index, -1 when empty
+        private final long[] slots;
+        private final int[] mins;
+        private final int[] maxes;
+        private final long[] areas;
+        private final int[] covered;
+        private long current = -1;
+
+        private Tier(Resolution resolution, Tier parent) {
+            this.stepMillis = resolution.stepMillis;
+            this.size = resolution.size;
+            this.parent = parent;
+            this.slots = new long[size];
+            this.mins = new int[size];
+            this.maxes = new int[size];
+            this.areas = new long[size];
+            this.covered = new int[size];
+            Arrays.fill(slots, -1);
+        }
+
+        /**
+         * Adds the interval [from, to). An interval spanning several slots always holds a
+         * single count: a change in between would have split it.
+         */
+        private void add(long from, long to, int min, int max, long area, int duration) {
+            long first = from / stepMillis;
+            long last = (to - 1) / stepMillis;
+            if (first == last) {
+                merge(first, min, max, area, duration);
+                return;
+            }
+            long firstEnd = (first + 1) * stepMillis;
+            merge(first, min, max, (long) min * (firstEnd - from), (int) (firstEnd - from));
+            long lastStart = last * stepMillis;
+            if (last > first + 1) {
+                //the first slot goes up before the span, the parent receives its intervals in order
+                close();
+                current = -1;
+                //the slots fully covered are only written for the last turn of the ring
+                for (long slot = Math.max(first + 1, last - size + 1); slot < last; slot++) {
+                    fill(slot, min);
+                }
+                if (parent != null) {
+                    parent.add(firstEnd, lastStart, min, min, (long) min * (lastStart - firstEnd),
+                            (int) Math.min(Integer.MAX_VALUE, lastStart - firstEnd));
+                }
+            }
+            merge(last, min, max, (long) min * (to - lastStart), (int) (to - lastStart));
+        }
+
+        private void merge(long slot, int min, int max, long area, int duration) {
+            if (slot < current) {
+                //the clock went back, the interval is counted in the current slot
+                slot = current;
+            }
+            int index = (int) (slot % size);
+            if (slot != current) {
+                close();
+                current = slot;
+                slots[index] = slot;
+                mins[index] = min;
+                maxes[index] = max;
+                areas[index] = 0;
+                covered[index] = 0;
+            }
+            mins[index] = Math.min(mins[index], min);
+            maxes[index] = Math.max(maxes[index], max);
+            areas[index] += area;
+            covered[index] += duration;
+        }
+
+        private void fill(long slot, int occupied) {
+            int index = (int) (slot % size);
+            slots[index] = slot;
+            mins[index] = occupied;
+            maxes[index] = occupied;
+            areas[index] = occupied * stepMillis;
+            covered[index] = (int) stepMillis;
+        }
+
+        private void close() {
+            if (current < 0 || parent == null) {
+                return;
+            }
+            int index = (int) (current % size);
+            long start = current * stepMillis;
+            parent.add(start, start + stepMillis, mins[index], maxes[index], areas[index], covered[index]);
+        }
+
+        private Points query(long from, long to) {
+            long first = Math.max(from / stepMillis, current - size + 1);
+            long last = Math.min((to - 1) / stepMillis, current);
+            Points points = new Points((int) Math.max(0, last - first + 1));
+            for (long slot = first; slot <= last; slot++) {
+                int index = (int) (slot % size);
+                if (slots[index] == slot && covered[index] > 0) {
+                    points.add(slot * stepMillis, mins[index], maxes[index], (double) areas[index] / covered[index]);
+                }
+            }
+            return points;
+        }
+
+        private void writeTo(ByteBuffer buffer) {
+            buffer.putLong(current);
+            for (int i = 0; i < size; i++) {
+                buffer.putLong(slots[i]);
+                buffer.putInt(mins[i]);
+                buffer.putInt(maxes[i]);
+                buffer.putLong(areas[i]);
+                buffer.putInt(covered[i]);
+            }
+        }
+
+        private void readFrom(ByteBuffer buffer) {
+            current = buffer.getLong();
+            for (int i = 0; i < size; i++) {
+                slots[i] = buffer.getLong();
+                mins[i] = buffer.getInt();
+                maxes[i] = buffer.getInt();
+                areas[i] = buffer.getLong();
+                covered[i] = buffer.getInt();
+            }
+        }
+    }
+
+    /**
+     * Slots returned by a range query: start time, minimum, maximum and mean occupied count.
+     */
+    public static class Points {
+        private final long[] times;
+        private final int[] mins;
+        private final int[] maxes;
+        private final double[] means;
+        private int size;
+
+        private Points(int capacity) {
+            times = new long[capacity];
+            mins = new int[capacity];
+            maxes = new int[capacity];
+            means = new double[capacity];
+        }
+
+        private void add(long time, int min, int max, double mean) {
+            times[size] = time;
+            mins[size] = min;
+            maxes[size] = max;
+            means[size] = mean;
+            size++;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public long getTime(int i) {
+            return times[i];
+        }
+
+        public int getMin(int i) {
+            return mins[i];
+        }
+
+        public int getMax(int i) {
+            return maxes[i];
+        }
+
+        public double getMean(int i) {
+            return means[i];
+        }
+    }
+}
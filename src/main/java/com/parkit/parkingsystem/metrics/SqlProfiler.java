@@ -0,0 +1,335 @@
+package com.parkit.parkingsystem.metrics;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Times the statements run on the connections handed out by {@link DataBaseConfig}: execution
+ * and row fetching are aggregated per SQL, statements slower than a threshold are logged with
+ * their parameters redacted, and the plan of a statement is captured with EXPLAIN, on a
+ * background thread, the first time it is slow.
+ * A fast statement only pays a few proxy calls and a map lookup.
+ */
+public final class SqlProfiler {
+
+    private static final Logger logger = LogManager.getLogger("SqlProfiler");
+
+    public static final long DEFAULT_SLOW_MILLIS = 200;
+    public static final int MAX_STATEMENTS = 1000;
+
+    private static final int EXPLAIN_QUEUE_SIZE = 16;
+    //the statements built for a list of plates differ only by their number of placeholders
+    private static final Pattern PLACEHOLDER_LIST = Pattern.compile("\\?(\\s*,\\s*\\?)+");
+
+    private static final ConcurrentHashMap<String, SqlStatistics> statistics = new ConcurrentHashMap<>();
+    private static volatile boolean enabled = Boolean.parseBoolean(System.getProperty("parkit.sql.profile", "true"));
+    private static volatile long slowNanos = TimeUnit.MILLISECONDS.toNanos(Long.getLong("parkit.sql.slow.millis", DEFAULT_SLOW_MILLIS));
+    private static ThreadPoolExecutor explainExecutor;
+
+    private SqlProfiler() {
+    }
+
+    /**
+     * Returns a connection timing its statements, the connection itself when profiling is disabled.
+     * The connection used to capture plans is taken from the given configuration.
+     */
+    public static Connection profile(Connection con, DataBaseConfig dataBaseConfig) {
+        if (!enabled || con == null) {
+            return con;
+        }
+        return (Connection) Proxy.newProxyInstance(SqlProfiler.class.getClassLoader(), new Class<?>[]{Connection.class},
+                new ConnectionHandler(con, dataBaseConfig));
+    }
+
+    public static void setEnabled(boolean enabled) {
+        SqlProfiler.enabled = enabled;
+    }
+
+    public static void setSlowThresholdMillis(long slowMillis) {
+        slowNanos = TimeUnit.MILLISECONDS.toNanos(slowMillis);
+    }
+
+    /**
+     * Returns the statistics of every statement, the most time consuming first.
+     */
+    public static List<SqlStatistics> getStatistics() {
+        List<SqlStatistics> result = new ArrayList<>(statistics.values());
+        result.sort((a, b) -> Long.compare(b.getTotalNanos(), a.getTotalNanos()));
+        return result;
+    }
+
+    public static SqlStatistics getStatistics(String sql) {
+        return statistics.get(normalize(sql));
+    }
+
+    public static void logSummary(int limit) {
+        List<SqlStatistics> top = getStatistics();
+        for (SqlStatistics sqlStatistics : top.subList(0, Math.min(limit, top.size()))) {
+            logger.info("{}", sqlStatistics);
+        }
+    }
+
+    public static void reset() {
+        statistics.clear();
+    }
+
+    private static String normalize(String sql) {
+        return (sql.indexOf(',') < 0) ? sql : PLACEHOLDER_LIST.matcher(sql).replaceAll("?, ...");
+    }
+
+    //null once MAX_STATEMENTS distinct statements are profiled
+    private static SqlStatistics statisticsOf(String sql) {
+        String key = normalize(sql);
+        SqlStatistics sqlStatistics = statistics.get(key);
+        if (sqlStatistics == null && statistics.size() < MAX_STATEMENTS) {
+            sqlStatistics = statistics.computeIfAbsent(key, SqlStatistics::new);
+        }
+        return sqlStatistics;
+    }
+
+    private static boolean isExplainable(String sql) {
+        String verb = sql.trim().toLowerCase(Locale.ROOT);
+        return verb.startsWith("select") || verb.startsWith("update") || verb.startsWith("delete") || verb.startsWith("insert");
+    }
+
+    private static String redact(Object[] parameters, int count) {
+        StringBuilder redacted = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            Object parameter = parameters[i];
+            redacted.append((i == 0) ? "" : ", ").append((parameter == null) ? "null" : "<" + parameter.getClass().getSimpleName() + ">");
+        }
+        return redacted.append(']').toString();
+    }
+
+    private static void slowRun(SqlStatistics sqlStatistics, String sql, long executeNanos, long fetchNanos, int rows,
+                                Object[] parameters, int nbParameters, DataBaseConfig dataBaseConfig) {
+        sqlStatistics.recordSlowRun();
+        Metrics.increment("sql.slow");
+        logger.warn("Slow SQL: {} ms executing, {} ms fetching {} rows: {} parameters {}",
+                TimeUnit.NANOSECONDS.toMillis(executeNanos), TimeUnit.NANOSECONDS.toMillis(fetchNanos), rows, sql,
+                redact(parameters, nbParameters));
+        if (dataBaseConfig != null && sqlStatistics.markExplained() && isExplainable(sql)) {
+            Object[] values = Arrays.copyOf(parameters, nbParameters);
+            explainExecutor().execute(() -> explain(sqlStatistics, sql, values, dataBaseConfig));
+        }
+    }
+
+    private static synchronized ThreadPoolExecutor explainExecutor() {
+        if (explainExecutor == null) {
+            //plans are best effort: when the queue is full, new requests are dropped
+            explainExecutor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(EXPLAIN_QUEUE_SIZE),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "sql-explain");
+                        thread.setDaemon(true);
+                        return thread;
+                    }, new ThreadPoolExecutor.DiscardPolicy());
+            explainExecutor.allowCoreThreadTimeOut(true);
+        }
+        return explainExecutor;
+    }
+
+    private static void explain(SqlStatistics sqlStatistics, String sql, Object[] parameters, DataBaseConfig dataBaseConfig) {
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement("explain " + sql);
+            for (int i = 0; i < parameters.length; i++) {
+                ps.setObject(i + 1, parameters[i]);
+            }
+            ResultSet rs = ps.executeQuery();
+            ResultSetMetaData metaData = rs.getMetaData();
+            StringBuilder plan = new StringBuilder();
+            while (rs.next()) {
+                for (int column = 1; column <= metaData.getColumnCount(); column++) {
+                    plan.append((column == 1) ? "" : ", ").append(metaData.getColumnLabel(column)).append('=').append(rs.getString(column));
+                }
+                plan.append(System.lineSeparator());
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            sqlStatistics.setPlan(plan.toString());
+            logger.warn("Plan of slow SQL: {}{}{}", sql, System.lineSeparator(), plan);
+        } catch (Exception e) {
+            logger.warn("Unable to capture the plan of SQL: " + sql, e);
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static class ConnectionHandler implements InvocationHandler {
+        private final Connection con;
+        private final DataBaseConfig dataBaseConfig;
+        private List<StatementHandler> statements = Collections.emptyList();
+
+        private ConnectionHandler(Connection con, DataBaseConfig dataBaseConfig) {
+            this.con = con;
+            this.dataBaseConfig = dataBaseConfig;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("prepareStatement") && args[0] instanceof String) {
+                String sql = (String) args[0];
+                PreparedStatement ps = (PreparedStatement) invokeTarget(con, method, args);
+                //the plans are captured on profiled connections, without timing them
+                SqlStatistics sqlStatistics = sql.regionMatches(true, 0, "explain", 0, 7) ? null : statisticsOf(sql);
+                if (sqlStatistics == null) {
+                    return ps;
+                }
+                StatementHandler handler = new StatementHandler(ps, sql, sqlStatistics, dataBaseConfig);
+                if (statements.isEmpty()) {
+                    statements = new ArrayList<>(4);
+                }
+                statements.add(handler);
+                return Proxy.newProxyInstance(SqlProfiler.class.getClassLoader(), new Class<?>[]{PreparedStatement.class}, handler);
+            }
+            if (name.equals("close")) {
+                //statements left open are closed with the connection
+                for (StatementHandler statement : statements) {
+                    statement.complete();
+                }
+            } else if (name.equals("equals")) {
+                return proxy == args[0];
+            } else if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+            return invokeTarget(con, method, args);
+        }
+    }
+
+    private static class StatementHandler implements InvocationHandler {
+        private final PreparedStatement ps;
+        private final String sql;
+        private final SqlStatistics sqlStatistics;
+        private final DataBaseConfig dataBaseConfig;
+        private Object[] parameters = new Object[8];
+        private int nbParameters;
+        private boolean running;
+        private long executeNanos;
+        private long fetchNanos;
+        private int rows;
+
+        private StatementHandler(PreparedStatement ps, String sql, SqlStatistics sqlStatistics, DataBaseConfig dataBaseConfig) {
+            this.ps = ps;
+            this.sql = sql;
+            this.sqlStatistics = sqlStatistics;
+            this.dataBaseConfig = dataBaseConfig;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                bind((Integer) args[0], args[1]);
+                return invokeTarget(ps, method, args);
+            }
+            if (name.startsWith("execute")) {
+                complete();
+                long start = System.nanoTime();
+                Object result = invokeTarget(ps, method, args);
+                executeNanos = System.nanoTime() - start;
+                running = true;
+                if (result instanceof ResultSet) {
+                    return profile((ResultSet) result);
+                }
+                if (!(result instanceof Boolean) || !((Boolean) result)) {
+                    complete();
+                }
+                return result;
+            }
+            if (name.equals("getResultSet")) {
+                ResultSet rs = (ResultSet) invokeTarget(ps, method, args);
+                return (rs == null || !running) ? rs : profile(rs);
+            }
+            if (name.equals("close")) {
+                complete();
+            } else if (name.equals("equals")) {
+                return proxy == args[0];
+            } else if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+            return invokeTarget(ps, method, args);
+        }
+
+        private void bind(int index, Object value) {
+            if (index < 1) {
+                return;
+            }
+            if (index > parameters.length) {
+                parameters = Arrays.copyOf(parameters, Math.max(index, parameters.length * 2));
+            }
+            parameters[index - 1] = value;
+            nbParameters = Math.max(nbParameters, index);
+        }
+
+        private ResultSet profile(ResultSet rs) {
+            return (ResultSet) Proxy.newProxyInstance(SqlProfiler.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                    (proxy, method, args) -> {
+                        String name = method.getName();
+                        if (name.equals("next")) {
+                            long start = System.nanoTime();
+                            Object hasNext = invokeTarget(rs, method, args);
+                            fetchNanos += System.nanoTime() - start;
+                            if ((Boolean) hasNext) {
+                                rows++;
+                            } else {
+                                complete();
+                            }
+                            return hasNext;
+                        }
+                        if (name.equals("close")) {
+                            complete();
+                        } else if (name.equals("equals")) {
+                            return proxy == args[0];
+                        } else if (name.equals("hashCode")) {
+                            return System.identityHashCode(proxy);
+                        }
+                        return invokeTarget(rs, method, args);
+                    });
+        }
+
+        //records the run once its rows are fetched, or once the statement is done with
+        private void complete() {
+            if (!running) {
+                return;
+            }
+            running = false;
+            sqlStatistics.record(executeNanos, fetchNanos, rows);
+            if (executeNanos + fetchNanos >= slowNanos) {
+                slowRun(sqlStatistics, sql, executeNanos, fetchNanos, rows, parameters, nbParameters, dataBaseConfig);
+            }
+            executeNanos = 0;
+            fetchNanos = 0;
+            rows = 0;
+        }
+    }
+}
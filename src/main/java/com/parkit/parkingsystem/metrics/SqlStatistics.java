@@ -0,0 +1,81 @@
+package com.parkit.parkingsystem.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Aggregated timings of one SQL statement: time spent executing it, time spent fetching its
+ * rows, rows fetched and slow runs, with the execution plan captured on its first slow run.
+ */
+public class SqlStatistics {
+
+    private final String sql;
+    private final Metrics.Timer executions = new Metrics.Timer();
+    private final Metrics.Timer fetches = new Metrics.Timer();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder slowRuns = new LongAdder();
+    private final AtomicBoolean explained = new AtomicBoolean();
+    private volatile String plan;
+
+    public SqlStatistics(String sql) {
+        this.sql = sql;
+    }
+
+    public void record(long executeNanos, long fetchNanos, int rowCount) {
+        executions.record(executeNanos);
+        if (fetchNanos > 0 || rowCount > 0) {
+            fetches.record(fetchNanos);
+            rows.add(rowCount);
+        }
+    }
+
+    public void recordSlowRun() {
+        slowRuns.increment();
+    }
+
+    /**
+     * True only for the first caller: the plan of a statement is captured once.
+     */
+    public boolean markExplained() {
+        return explained.compareAndSet(false, true);
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public Metrics.Timer getExecutions() {
+        return executions;
+    }
+
+    public Metrics.Timer getFetches() {
+        return fetches;
+    }
+
+    public long getRows() {
+        return rows.sum();
+    }
+
+    public long getSlowRuns() {
+        return slowRuns.sum();
+    }
+
+    public long getTotalNanos() {
+        return executions.getTotalNanos() + fetches.getTotalNanos();
+    }
+
+    public String getPlan() {
+        return plan;
+    }
+
+    public void setPlan(String plan) {
+        this.plan = plan;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("total=%.3fms execute[%s] fetch[%s] rows=%d slow=%d: %s",
+                (double) getTotalNanos() / TimeUnit.MILLISECONDS.toNanos(1), executions, fetches, getRows(), getSlowRuns(), sql);
+    }
+}
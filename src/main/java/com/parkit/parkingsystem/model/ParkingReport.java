@@ -0,0 +1,193 @@
+package com.parkit.parkingsystem.model;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Revenue, stays, discounts and occupancy of one day, by parking type and hour of the day.
+ * Revenue, stays and discounts are accounted on the exit hour. Occupancy is the peak number of
+ * vehicles present at once during each hour, at minute resolution: it is kept as the vehicles
+ * present at the start of the day plus the arrivals and departures of each minute, so that
+ * reports of disjoint sets of tickets are still merged by sum.
+ */
+public class ParkingReport {
+
+    public static final int HOURS = 24;
+
+    private static final long HOUR_MILLIS = 60 * 60 * 1000;
+    private static final long MINUTE_MILLIS = 60 * 1000;
+    private static final int MINUTES_PER_HOUR = 60;
+    private static final int MINUTES = HOURS * MINUTES_PER_HOUR;
+
+    private final LocalDate day;
+    private final long dayStartMillis;
+    private final long dayEndMillis;
+
+    private final long[] revenueCents = new long[ParkingType.values().length * HOURS];
+    private final long[] staySeconds = new long[ParkingType.values().length * HOURS];
+    private final int[] closedTickets = new int[ParkingType.values().length * HOURS];
+    private final int[] discountedTickets = new int[ParkingType.values().length * HOURS];
+    private final int[] presentAtStart = new int[ParkingType.values().length];
+    //arrivals minus departures of each minute of the day
+    private final int[] occupancyChanges = new int[ParkingType.values().length * MINUTES];
+    //peak of each hour, computed from the changes when first read
+    private volatile int[] peakOccupancy;
+
+    public ParkingReport(LocalDate day, long dayStartMillis, long dayEndMillis) {
+        this.day = day;
+        this.dayStartMillis = dayStartMillis;
+        this.dayEndMillis = dayEndMillis;
+    }
+
+    public LocalDate getDay() {
+        return day;
+    }
+
+    public void add(ParkingType parkingType, long inMillis, long outMillis, double price, boolean discount) {
+        int offset = parkingType.ordinal() * HOURS;
+        boolean closed = outMillis > 0;
+        long presentUntil = closed ? Math.min(outMillis, dayEndMillis) : dayEndMillis;
+        long presentFrom = Math.max(inMillis, dayStartMillis);
+        if (presentFrom < presentUntil) {
+            int minuteOffset = parkingType.ordinal() * MINUTES;
+            if (inMillis < dayStartMillis) {
+                presentAtStart[parkingType.ordinal()]++;
+            } else {
+                occupancyChanges[minuteOffset + minute(presentFrom)]++;
+            }
+            if (presentUntil < dayEndMillis) {
+                occupancyChanges[minuteOffset + minute(presentUntil)]--;
+            }
+            peakOccupancy = null;
+        }
+        if (closed && outMillis >= dayStartMillis && outMillis < dayEndMillis) {
+            int hour = Math.min((int) ((outMillis - dayStartMillis) / HOUR_MILLIS), HOURS - 1);
+            revenueCents[offset + hour] += Math.round(price * 100);
+            staySeconds[offset + hour] += (outMillis - inMillis) / 1000;
+            closedTickets[offset + hour]++;
+            if (discount) {
+                discountedTickets[offset + hour]++;
+            }
+        }
+    }
+
+    /**
+     * Adds the tickets of a report of the same day.
+     */
+    public ParkingReport merge(ParkingReport other) {
+        for (int i = 0; i < revenueCents.length; i++) {
+            revenueCents[i] += other.revenueCents[i];
+            staySeconds[i] += other.staySeconds[i];
+            closedTickets[i] += other.closedTickets[i];
+            discountedTickets[i] += other.discountedTickets[i];
+        }
+        for (int i = 0; i < presentAtStart.length; i++) {
+            presentAtStart[i] += other.presentAtStart[i];
+        }
+        for (int i = 0; i < occupancyChanges.length; i++) {
+            occupancyChanges[i] += other.occupancyChanges[i];
+        }
+        peakOccupancy = null;
+        return this;
+    }
+
+    /**
+     * Combines several daily reports: totals are summed, occupancy keeps the peak of each hour.
+     */
+    public static ParkingReport summarize(List<ParkingReport> reports) {
+        ParkingReport summary = new ParkingReport(null, 0, 0);
+        int[] peaks = new int[ParkingType.values().length * HOURS];
+        for (ParkingReport report : reports) {
+            int[] reportPeaks = report.getPeakOccupancy();
+            for (int i = 0; i < peaks.length; i++) {
+                summary.revenueCents[i] += report.revenueCents[i];
+                summary.staySeconds[i] += report.staySeconds[i];
+                summary.closedTickets[i] += report.closedTickets[i];
+                summary.discountedTickets[i] += report.discountedTickets[i];
+                peaks[i] = Math.max(peaks[i], reportPeaks[i]);
+            }
+        }
+        summary.peakOccupancy = peaks;
+        return summary;
+    }
+
+    public double getRevenue(ParkingType parkingType, int hour) {
+        return revenueCents[parkingType.ordinal() * HOURS + hour] / 100.0;
+    }
+
+    public double getRevenue(ParkingType parkingType) {
+        return sum(revenueCents, parkingType) / 100.0;
+    }
+
+    public int getClosedTickets(ParkingType parkingType) {
+        return (int) sum(closedTickets, parkingType);
+    }
+
+    public double getAverageStayMinutes(ParkingType parkingType) {
+        long nbTickets = sum(closedTickets, parkingType);
+        return (nbTickets == 0) ? 0 : sum(staySeconds, parkingType) / 60.0 / nbTickets;
+    }
+
+    public double getDiscountShare(ParkingType parkingType) {
+        long nbTickets = sum(closedTickets, parkingType);
+        return (nbTickets == 0) ? 0 : (double) sum(discountedTickets, parkingType) / nbTickets;
+    }
+
+    /**
+     * Returns the most vehicles present at once during the hour.
+     */
+    public int getPeakOccupancy(ParkingType parkingType, int hour) {
+        return getPeakOccupancy()[parkingType.ordinal() * HOURS + hour];
+    }
+
+    public int getPeakOccupancy(ParkingType parkingType) {
+        int[] peaks = getPeakOccupancy();
+        int peak = 0;
+        int offset = parkingType.ordinal() * HOURS;
+        for (int hour = 0; hour < HOURS; hour++) {
+            peak = Math.max(peak, peaks[offset + hour]);
+        }
+        return peak;
+    }
+
+    private int[] getPeakOccupancy() {
+        int[] peaks = peakOccupancy;
+        if (peaks == null) {
+            peaks = new int[ParkingType.values().length * HOURS];
+            for (int type = 0; type < presentAtStart.length; type++) {
+                int present = presentAtStart[type];
+                for (int minute = 0; minute < MINUTES; minute++) {
+                    present += occupancyChanges[type * MINUTES + minute];
+                    int hour = type * HOURS + minute / MINUTES_PER_HOUR;
+                    peaks[hour] = Math.max(peaks[hour], present);
+                }
+            }
+            peakOccupancy = peaks;
+        }
+        return peaks;
+    }
+
+    private int minute(long millis) {
+        return (int) Math.min((millis - dayStartMillis) / MINUTE_MILLIS, MINUTES - 1);
+    }
+
+    private static long sum(long[] values, ParkingType parkingType) {
+        long sum = 0;
+        int offset = parkingType.ordinal() * HOURS;
+        for (int hour = 0; hour < HOURS; hour++) {
+            sum += values[offset + hour];
+        }
+        return sum;
+    }
+
+    private static long sum(int[] values, ParkingType parkingType) {
+        long sum = 0;
+        int offset = parkingType.ordinal() * HOURS;
+        for (int hour = 0; hour < HOURS; hour++) {
+            sum += values[offset + hour];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,67 @@
+package com.parkit.parkingsystem.model;
+
+import java.util.Date;
+
+/**
+ * A season pass or permit: the vehicle parks with the given discount between the validity dates.
+ * A discount of 100 percent makes its stays free.
+ */
+public class Pass {
+    private int id;
+    private String vehicleRegNumber;
+    private Date validFrom;
+    private Date validTo;
+    private int discountPercent;
+    private Date updatedTime;
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public String getVehicleRegNumber() {
+        return vehicleRegNumber;
+    }
+
+    public void setVehicleRegNumber(String vehicleRegNumber) {
+        this.vehicleRegNumber = vehicleRegNumber;
+    }
+
+    public Date getValidFrom() {
+        return validFrom;
+    }
+
+    public void setValidFrom(Date validFrom) {
+        this.validFrom = validFrom;
+    }
+
+    public Date getValidTo() {
+        return validTo;
+    }
+
+    public void setValidTo(Date validTo) {
+        this.validTo = validTo;
+    }
+
+    public int getDiscountPercent() {
+        return discountPercent;
+    }
+
+    public void setDiscountPercent(int discountPercent) {
+        this.discountPercent = discountPercent;
+    }
+
+    /**
+     * Time of the last change of the pass, set by the database.
+     */
+    public Date getUpdatedTime() {
+        return updatedTime;
+    }
+
+    public void setUpdatedTime(Date updatedTime) {
+        this.updatedTime = updatedTime;
+    }
+}
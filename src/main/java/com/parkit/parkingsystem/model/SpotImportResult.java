@@ -0,0 +1,58 @@
+package com.parkit.parkingsystem.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SpotImportResult {
+    private int resumedFromLine;
+    private int linesRead;
+    private int spotsAdded;
+    private int spotsSkipped;
+    private final List<String> invalidLines = new ArrayList<>();
+    private boolean completed;
+
+    public int getResumedFromLine() {
+        return resumedFromLine;
+    }
+
+    public void setResumedFromLine(int resumedFromLine) {
+        this.resumedFromLine = resumedFromLine;
+    }
+
+    public int getLinesRead() {
+        return linesRead;
+    }
+
+    public void setLinesRead(int linesRead) {
+        this.linesRead = linesRead;
+    }
+
+    public int getSpotsAdded() {
+        return spotsAdded;
+    }
+
+    public void addSpots(int added, int skipped) {
+        this.spotsAdded += added;
+        this.spotsSkipped += skipped;
+    }
+
+    public int getSpotsSkipped() {
+        return spotsSkipped;
+    }
+
+    public List<String> getInvalidLines() {
+        return invalidLines;
+    }
+
+    public void addInvalidLine(String invalidLine) {
+        invalidLines.add(invalidLine);
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    public void setCompleted(boolean completed) {
+        this.completed = completed;
+    }
+}
@@ -0,0 +1,50 @@
+package com.parkit.parkingsystem.model;
+
+public class SpotReconciliationResult {
+    private int spotsFreed;
+    private int spotsTaken;
+    private int doubleBookedSpots;
+    private int failedRanges;
+    private long durationMillis;
+
+    public int getSpotsFreed() {
+        return spotsFreed;
+    }
+
+    public int getSpotsTaken() {
+        return spotsTaken;
+    }
+
+    public void addSpots(int freed, int taken) {
+        this.spotsFreed += freed;
+        this.spotsTaken += taken;
+    }
+
+    public int getDoubleBookedSpots() {
+        return doubleBookedSpots;
+    }
+
+    public void setDoubleBookedSpots(int doubleBookedSpots) {
+        this.doubleBookedSpots = doubleBookedSpots;
+    }
+
+    public int getFailedRanges() {
+        return failedRanges;
+    }
+
+    public void addFailedRange() {
+        this.failedRanges++;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public void setDurationMillis(long durationMillis) {
+        this.durationMillis = durationMillis;
+    }
+
+    public boolean hasFixes() {
+        return spotsFreed > 0 || spotsTaken > 0;
+    }
+}
@@ -11,6 +11,7 @@ public class Ticket {
     private Date inTime;
     private Date outTime;
     private boolean discount;
+    private double rateMultiplier = 1.0;
 
     public int getId() {
         return id;
@@ -67,4 +68,12 @@ public class Ticket {
     public void setDiscount(boolean discount) {
         this.discount = discount;
     }
+
+    public double getRateMultiplier() {
+        return rateMultiplier;
+    }
+
+    public void setRateMultiplier(double rateMultiplier) {
+        this.rateMultiplier = rateMultiplier;
+    }
 }
@@ -0,0 +1,176 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.GateEvent;
+import com.parkit.parkingsystem.metrics.Metrics;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Limits the number of gate operations running against the database at the same time.
+ * The limit adapts to the observed latency (additive increase, multiplicative decrease),
+ * waiting operations are bounded and exits are admitted before entries.
+ * When saturated, an operation is rejected right away with a retry hint.
+ */
+public class AdmissionController {
+
+    private static final Logger logger = LogManager.getLogger("AdmissionController");
+
+    public static final int DEFAULT_MIN_LIMIT = 2;
+    public static final int DEFAULT_MAX_LIMIT = 20;
+    public static final int DEFAULT_MAX_WAITING = 50;
+    public static final long DEFAULT_MAX_WAIT_MILLIS = 2000;
+    public static final long DEFAULT_TARGET_LATENCY_MILLIS = 250;
+
+    private static final double DECREASE_FACTOR = 0.8;
+    private static final double LATENCY_SMOOTHING = 0.1;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxWaiting;
+    private final long maxWaitNanos;
+    private final long targetLatencyNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    //exits first: a car leaving frees a spot, a car entering needs one
+    private final ArrayDeque<Waiter> exitWaiters = new ArrayDeque<>();
+    private final ArrayDeque<Waiter> entryWaiters = new ArrayDeque<>();
+    private double limit;
+    private int inFlight;
+    private double averageLatencyNanos;
+
+    public AdmissionController() {
+        this(DEFAULT_MIN_LIMIT, DEFAULT_MAX_LIMIT, DEFAULT_MAX_WAITING, DEFAULT_MAX_WAIT_MILLIS, DEFAULT_TARGET_LATENCY_MILLIS);
+    }
+
+    public AdmissionController(int minLimit, int maxLimit, int maxWaiting, long maxWaitMillis, long targetLatencyMillis) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxWaiting = maxWaiting;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMillis);
+        this.limit = minLimit;
+        this.averageLatencyNanos = targetLatencyNanos / 2.0;
+    }
+
+    /**
+     * Runs the operation once admitted.
+     * @throws AdmissionRejectedException if too many operations are already waiting, or if
+     * the operation could not be admitted in time
+     */
+    public <T> T execute(GateEvent gateEvent, Supplier<T> operation) {
+        acquire(gateEvent);
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            T result = operation.get();
+            succeeded = true;
+            return result;
+        } finally {
+            release(System.nanoTime() - start, succeeded);
+        }
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void acquire(GateEvent gateEvent) {
+        long start = System.nanoTime();
+        lock.lock();
+        try {
+            if (inFlight < (int) limit && exitWaiters.isEmpty() && (gateEvent == GateEvent.EXIT || entryWaiters.isEmpty())) {
+                inFlight++;
+                return;
+            }
+            if (exitWaiters.size() + entryWaiters.size() >= maxWaiting) {
+                throw reject(gateEvent, "too many waiting operations");
+            }
+            Waiter waiter = new Waiter(lock.newCondition());
+            ArrayDeque<Waiter> waiters = (gateEvent == GateEvent.EXIT) ? exitWaiters : entryWaiters;
+            waiters.addLast(waiter);
+            long remainingNanos = maxWaitNanos;
+            try {
+                while (!waiter.admitted && remainingNanos > 0) {
+                    remainingNanos = waiter.condition.awaitNanos(remainingNanos);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (!waiter.admitted) {
+                waiters.remove(waiter);
+                throw reject(gateEvent, "timed out waiting for admission");
+            }
+        } finally {
+            lock.unlock();
+            Metrics.recordNanos("admission.wait", System.nanoTime() - start);
+        }
+    }
+
+    private void release(long latencyNanos, boolean succeeded) {
+        lock.lock();
+        try {
+            inFlight--;
+            averageLatencyNanos += LATENCY_SMOOTHING * (latencyNanos - averageLatencyNanos);
+            if (!succeeded || latencyNanos > targetLatencyNanos) {
+                limit = Math.max(minLimit, limit * DECREASE_FACTOR);
+            } else {
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+            while (inFlight < (int) limit) {
+                Waiter waiter = exitWaiters.pollFirst();
+                if (waiter == null) {
+                    waiter = entryWaiters.pollFirst();
+                }
+                if (waiter == null) {
+                    break;
+                }
+                waiter.admitted = true;
+                inFlight++;
+                waiter.condition.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+        Metrics.recordNanos("admission.latency", latencyNanos);
+    }
+
+    //called with the lock held
+    private AdmissionRejectedException reject(GateEvent gateEvent, String reason) {
+        int waiting = exitWaiters.size() + entryWaiters.size();
+        long retryAfterMillis = Math.max(100, TimeUnit.NANOSECONDS.toMillis(
+                (long) (averageLatencyNanos * (waiting + 1) / Math.max(1, (int) limit))));
+        Metrics.increment("admission.rejected." + gateEvent.name().toLowerCase());
+        logger.warn("{} rejected: {}, limit {}, in flight {}, retry after {} ms",
+                gateEvent, reason, (int) limit, inFlight, retryAfterMillis);
+        return new AdmissionRejectedException("Parking system busy: " + reason, retryAfterMillis);
+    }
+
+    private static class Waiter {
+        private final Condition condition;
+        private boolean admitted;
+
+        private Waiter(Condition condition) {
+            this.condition = condition;
+        }
+    }
+}
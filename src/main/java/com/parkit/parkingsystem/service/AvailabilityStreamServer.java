@@ -0,0 +1,328 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.cache.SpotAvailabilityCache;
+import com.parkit.parkingsystem.cache.SpotAvailabilityListener;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.metrics.Metrics;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes the free spot counts to display boards and apps as Server-Sent Events, straight from
+ * the in-process availability counters: subscribers never cause a database read.
+ * Changes are coalesced per parking type and sent at most once per interval. Each subscriber
+ * has room for a single event in flight: while a slow subscriber has not read it, further
+ * changes only mark its parking types as pending and it gets their latest counts afterwards.
+ * All the connections are served by one non-blocking thread.
+ */
+public class AvailabilityStreamServer implements SpotAvailabilityListener {
+
+    private static final Logger logger = LogManager.getLogger("AvailabilityStreamServer");
+
+    public static final long DEFAULT_INTERVAL_MILLIS = 1000;
+    public static final int DEFAULT_MAX_SUBSCRIBERS = 10000;
+
+    private static final long HEARTBEAT_MILLIS = 30 * 1000;
+    private static final int MAX_REQUEST_BYTES = 2048;
+    private static final int ALL_TYPES = (1 << ParkingType.values().length) - 1;
+    private static final byte[] RESPONSE_HEADERS = ("HTTP/1.1 200 OK\r\n"
+            + "Content-Type: text/event-stream\r\n"
+            + "Cache-Control: no-cache\r\n"
+            + "Connection: keep-alive\r\n"
+            + "Access-Control-Allow-Origin: *\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] BAD_REQUEST = "HTTP/1.1 400 Bad Request\r\nConnection: close\r\n\r\n"
+            .getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEARTBEAT = ": ping\n\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final SpotAvailabilityCache spotAvailabilityCache;
+    private final int port;
+    private final long intervalMillis;
+    private final int maxSubscribers;
+
+    //parking types changed since the last flush, one bit per ordinal
+    private final AtomicInteger changedTypes = new AtomicInteger();
+    private final byte[][] events = new byte[ALL_TYPES + 1][];
+
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread thread;
+    private volatile boolean running;
+    private int nbSubscribers;
+
+    public AvailabilityStreamServer(SpotAvailabilityCache spotAvailabilityCache, int port) {
+        this(spotAvailabilityCache, port, DEFAULT_INTERVAL_MILLIS, DEFAULT_MAX_SUBSCRIBERS);
+    }
+
+    public AvailabilityStreamServer(SpotAvailabilityCache spotAvailabilityCache, int port, long intervalMillis, int maxSubscribers) {
+        this.spotAvailabilityCache = spotAvailabilityCache;
+        this.port = port;
+        this.intervalMillis = intervalMillis;
+        this.maxSubscribers = maxSubscribers;
+    }
+
+    public synchronized void start() throws IOException {
+        if (running) {
+            return;
+        }
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        spotAvailabilityCache.addListener(this);
+        running = true;
+        thread = new Thread(this::run, "availability-stream");
+        thread.setDaemon(true);
+        thread.start();
+        logger.info("Streaming spot availability on port {}", getPort());
+    }
+
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        spotAvailabilityCache.removeListener(this);
+        selector.wakeup();
+        try {
+            thread.join(intervalMillis * 2);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    @Override
+    public void availabilityChanged(ParkingType parkingType) {
+        int bit = 1 << parkingType.ordinal();
+        int types;
+        do {
+            types = changedTypes.get();
+        } while ((types & bit) == 0 && !changedTypes.compareAndSet(types, types | bit));
+    }
+
+    private void run() {
+        long nextFlush = System.currentTimeMillis() + intervalMillis;
+        long nextHeartbeat = System.currentTimeMillis() + HEARTBEAT_MILLIS;
+        try {
+            while (running) {
+                selector.select(Math.max(1, nextFlush - System.currentTimeMillis()));
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    handle(key);
+                }
+                long now = System.currentTimeMillis();
+                if (now >= nextFlush) {
+                    boolean heartbeat = now >= nextHeartbeat;
+                    flush(changedTypes.getAndSet(0), heartbeat);
+                    nextFlush = now + intervalMillis;
+                    if (heartbeat) {
+                        nextHeartbeat = now + HEARTBEAT_MILLIS;
+                    }
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Availability stream stopped", e);
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                closeQuietly(key);
+            }
+            closeQuietly(selector);
+            logger.info("Availability stream closed");
+        }
+    }
+
+    private void handle(SelectionKey key) {
+        try {
+            if (!key.isValid()) {
+                return;
+            }
+            if (key.isAcceptable()) {
+                accept();
+            } else {
+                Subscriber subscriber = (Subscriber) key.attachment();
+                if (key.isReadable()) {
+                    read(key, subscriber);
+                }
+                if (key.isValid() && key.isWritable()) {
+                    write(key, subscriber);
+                }
+            }
+        } catch (IOException e) {
+            close(key);
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            if (nbSubscribers >= maxSubscribers) {
+                Metrics.increment("availability.stream.refused");
+                closeQuietly(channel);
+                continue;
+            }
+            channel.configureBlocking(false);
+            channel.register(selector, SelectionKey.OP_READ, new Subscriber());
+            nbSubscribers++;
+        }
+    }
+
+    private void read(SelectionKey key, Subscriber subscriber) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        if (subscriber.request == null) {
+            //streaming: only the end of the connection is expected
+            if (channel.read(ByteBuffer.allocate(64)) < 0) {
+                close(key);
+            }
+            return;
+        }
+        if (channel.read(subscriber.request) < 0) {
+            close(key);
+            return;
+        }
+        String request = new String(subscriber.request.array(), 0, subscriber.request.position(), StandardCharsets.US_ASCII);
+        if (!request.contains("\r\n\r\n")) {
+            if (!subscriber.request.hasRemaining()) {
+                close(key);
+            }
+            return;
+        }
+        subscriber.request = null;
+        if (!request.startsWith("GET ")) {
+            subscriber.closeAfterWrite = true;
+            send(key, subscriber, BAD_REQUEST);
+            return;
+        }
+        //the current counts of every type follow the headers
+        subscriber.pendingTypes = ALL_TYPES;
+        send(key, subscriber, RESPONSE_HEADERS);
+        Metrics.increment("availability.stream.subscribed");
+    }
+
+    private void write(SelectionKey key, Subscriber subscriber) throws IOException {
+        ((SocketChannel) key.channel()).write(subscriber.out);
+        if (subscriber.out.hasRemaining()) {
+            return;
+        }
+        if (subscriber.closeAfterWrite) {
+            close(key);
+        } else if (subscriber.pendingTypes != 0) {
+            int types = subscriber.pendingTypes;
+            subscriber.pendingTypes = 0;
+            send(key, subscriber, event(types));
+        } else {
+            key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    private void flush(int types, boolean heartbeat) {
+        if (types == 0 && !heartbeat) {
+            return;
+        }
+        //events are built once per flush and shared by the subscribers
+        for (int i = 0; i < events.length; i++) {
+            events[i] = null;
+        }
+        for (SelectionKey key : selector.keys()) {
+            if (!(key.attachment() instanceof Subscriber) || !key.isValid()) {
+                continue;
+            }
+            Subscriber subscriber = (Subscriber) key.attachment();
+            if (subscriber.request != null) {
+                continue;
+            }
+            subscriber.pendingTypes |= types;
+            if (subscriber.out.hasRemaining()) {
+                //slow subscriber: the pending types are sent with their latest counts once it caught up
+                Metrics.increment("availability.stream.coalesced");
+                continue;
+            }
+            try {
+                if (subscriber.pendingTypes != 0) {
+                    int pending = subscriber.pendingTypes;
+                    subscriber.pendingTypes = 0;
+                    send(key, subscriber, sharedEvent(pending));
+                } else {
+                    send(key, subscriber, HEARTBEAT);
+                }
+            } catch (IOException e) {
+                close(key);
+            }
+        }
+    }
+
+    private void send(SelectionKey key, Subscriber subscriber, byte[] bytes) throws IOException {
+        subscriber.out = ByteBuffer.wrap(bytes);
+        ((SocketChannel) key.channel()).write(subscriber.out);
+        if (subscriber.out.hasRemaining()) {
+            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        } else {
+            write(key, subscriber);
+        }
+    }
+
+    private byte[] sharedEvent(int types) {
+        if (events[types] == null) {
+            events[types] = event(types);
+        }
+        return events[types];
+    }
+
+    private byte[] event(int types) {
+        StringBuilder event = new StringBuilder("event: availability\ndata: {");
+        boolean first = true;
+        for (ParkingType parkingType : ParkingType.values()) {
+            if ((types & (1 << parkingType.ordinal())) != 0) {
+                event.append(first ? "" : ",").append('"').append(parkingType).append("\":{\"free\":")
+                        .append(spotAvailabilityCache.getFree(parkingType)).append(",\"total\":")
+                        .append(spotAvailabilityCache.getTotal(parkingType)).append('}');
+                first = false;
+            }
+        }
+        return event.append("}\n\n").toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private void close(SelectionKey key) {
+        if (key.isValid() && key.attachment() instanceof Subscriber) {
+            nbSubscribers--;
+        }
+        closeQuietly(key);
+    }
+
+    private static void closeQuietly(SelectionKey key) {
+        key.cancel();
+        closeQuietly(key.channel());
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            logger.debug("Error while closing", e);
+        }
+    }
+
+    private static class Subscriber {
+        private ByteBuffer request = ByteBuffer.allocate(MAX_REQUEST_BYTES);
+        private ByteBuffer out = ByteBuffer.allocate(0);
+        private int pendingTypes;
+        private boolean closeAfterWrite;
+    }
+}
@@ -0,0 +1,238 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.cache.SpotAvailabilityCache;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.util.PlateKey;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Groups the exits arriving within a few milliseconds of each other, for the surges at the end
+ * of an event. A group is looked up with one query per table, priced in one pass and closed in
+ * a single transaction, the tickets and the spots being updated as two JDBC batches; each exit
+ * then gets its own ticket back.
+ * Groups are flushed by a single thread, so a surge holds one database connection at a time.
+ */
+public class ExitBatcher {
+
+    private static final Logger logger = LogManager.getLogger("ExitBatcher");
+
+    public static final long DEFAULT_WINDOW_MILLIS = 5;
+    public static final int DEFAULT_MAX_BATCH = 200;
+
+    private final TicketDAO ticketDAO;
+    private final ParkingSpotDAO parkingSpotDAO;
+    private final long windowNanos;
+    private final int maxBatch;
+    private final LinkedBlockingQueue<PendingExit> pending = new LinkedBlockingQueue<>();
+
+    private volatile Thread flusher;
+    private FareCalculatorService fareCalculatorService = new FareCalculatorService();
+    private Clock clock = Clock.systemDefaultZone();
+
+    public ExitBatcher(TicketDAO ticketDAO, ParkingSpotDAO parkingSpotDAO) {
+        this(ticketDAO, parkingSpotDAO, DEFAULT_WINDOW_MILLIS, DEFAULT_MAX_BATCH);
+    }
+
+    public ExitBatcher(TicketDAO ticketDAO, ParkingSpotDAO parkingSpotDAO, long windowMillis, int maxBatch) {
+        this.ticketDAO = ticketDAO;
+        this.parkingSpotDAO = parkingSpotDAO;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.maxBatch = maxBatch;
+    }
+
+    /**
+     * To be set before the batcher is started.
+     */
+    public void setFareCalculatorService(FareCalculatorService fareCalculatorService) {
+        this.fareCalculatorService = fareCalculatorService;
+    }
+
+    /**
+     * Clock giving the out times of the tickets, to be set before the batcher is started.
+     */
+    public void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    public synchronized void start() {
+        if (flusher != null) {
+            return;
+        }
+        flusher = new Thread(this::run, "exit-batcher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Flushes the exits still waiting before returning.
+     */
+    public synchronized void stop() {
+        Thread thread = flusher;
+        if (thread == null) {
+            return;
+        }
+        flusher = null;
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushPending();
+    }
+
+    /**
+     * Returns the closed ticket of the vehicle once its group is flushed, null when the vehicle
+     * has no open ticket. When the batcher is not started, the exit is flushed on its own right away.
+     */
+    public CompletableFuture<Ticket> submit(String vehicleRegNumber) {
+        PendingExit exit = new PendingExit(PlateKey.normalize(vehicleRegNumber));
+        if (flusher == null) {
+            flush(Collections.singletonList(exit));
+            return exit.result;
+        }
+        pending.add(exit);
+        //the batcher may have been stopped in between
+        if (flusher == null) {
+            flushPending();
+        }
+        return exit.result;
+    }
+
+    public Ticket exit(String vehicleRegNumber) {
+        return submit(vehicleRegNumber).join();
+    }
+
+    private void run() {
+        List<PendingExit> group = new ArrayList<>(maxBatch);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                group.add(pending.take());
+                //the first exit of a group waits at most one window for the others
+                long deadline = System.nanoTime() + windowNanos;
+                while (group.size() < maxBatch) {
+                    PendingExit next = pending.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    group.add(next);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (!group.isEmpty()) {
+                flush(group);
+                group.clear();
+            }
+        }
+    }
+
+    private void flushPending() {
+        List<PendingExit> group = new ArrayList<>();
+        while (pending.drainTo(group, maxBatch) > 0) {
+            flush(group);
+            group.clear();
+        }
+    }
+
+    private void flush(List<PendingExit> group) {
+        long start = System.nanoTime();
+        List<PendingExit> closing = new ArrayList<>(group.size());
+        try {
+            List<String> plates = new ArrayList<>(group.size());
+            for (PendingExit exit : group) {
+                plates.add(exit.vehicleRegNumber);
+            }
+            Map<String, Ticket> tickets = ticketDAO.getTickets(plates);
+            int[] nbTickets = ticketDAO.getNumberTickets(plates);
+
+            Date outTime = new Date(clock.millis());
+            List<Ticket> toClose = new ArrayList<>(group.size());
+            Set<String> seen = new HashSet<>();
+            for (int i = 0; i < group.size(); i++) {
+                PendingExit exit = group.get(i);
+                Ticket ticket = tickets.get(exit.vehicleRegNumber);
+                //a repeated exit finds the ticket already closed, or already closing in this group
+                if (ticket == null || ticket.getOutTime() != null || !seen.add(exit.vehicleRegNumber)) {
+                    exit.result.complete(null);
+                    continue;
+                }
+                ticket.setOutTime(outTime);
+                ticket.setDiscount(nbTickets[i] > 0);
+                try {
+                    fareCalculatorService.calculateFare(ticket);
+                } catch (IllegalArgumentException e) {
+                    exit.result.completeExceptionally(e);
+                    continue;
+                }
+                toClose.add(ticket);
+                closing.add(exit);
+            }
+
+            int[] closed = ticketDAO.closeTickets(toClose);
+            if (closed == null) {
+                Metrics.increment("exit.batch.failed");
+                IllegalStateException failure = new IllegalStateException("Unable to close a group of " + toClose.size() + " tickets");
+                for (PendingExit exit : closing) {
+                    exit.result.completeExceptionally(failure);
+                }
+                return;
+            }
+            for (int j = 0; j < closed.length; j++) {
+                Ticket ticket = toClose.get(j);
+                if (closed[j] < 0) {
+                    //closed by another gate since the lookup
+                    closing.get(j).result.complete(null);
+                    continue;
+                }
+                ParkingSpot parkingSpot = ticket.getParkingSpot();
+                if (closed[j] > 0) {
+                    parkingSpot.setAvailable(true);
+                    SpotAvailabilityCache spotAvailabilityCache = parkingSpotDAO.spotAvailabilityCache;
+                    if (spotAvailabilityCache != null && parkingSpot.getParkingType() != null) {
+                        spotAvailabilityCache.release(parkingSpot.getParkingType());
+                    }
+                } else {
+                    logger.warn("Parking spot {} was not held by vehicle {}, left as is", parkingSpot.getId(), ticket.getVehicleRegNumber());
+                }
+                closing.get(j).result.complete(ticket);
+            }
+        } catch (RuntimeException e) {
+            logger.error("Unable to flush a group of " + group.size() + " exits", e);
+            Metrics.increment("exit.batch.failed");
+            for (PendingExit exit : group) {
+                exit.result.completeExceptionally(e);
+            }
+        } finally {
+            Metrics.increment("exit.batch.groups");
+            Metrics.add("exit.batch.exits", group.size());
+            Metrics.recordNanos("exit.batch.flush", System.nanoTime() - start);
+        }
+    }
+
+    private static class PendingExit {
+        private final String vehicleRegNumber;
+        private final CompletableFuture<Ticket> result = new CompletableFuture<>();
+
+        private PendingExit(String vehicleRegNumber) {
+            this.vehicleRegNumber = vehicleRegNumber;
+        }
+    }
+}
@@ -1,15 +1,31 @@
 package com.parkit.parkingsystem.service;
 
+import com.parkit.parkingsystem.cache.PassIndex;
 import com.parkit.parkingsystem.constants.Fare;
+import com.parkit.parkingsystem.metrics.FareCalculationEvent;
 import com.parkit.parkingsystem.model.Ticket;
 
 public class FareCalculatorService {
 
+    private final PassIndex passIndex;
+
+    public FareCalculatorService() {
+        this(null);
+    }
+
+    /**
+     * Stays covered by a pass of the index get the discount of the pass.
+     */
+    public FareCalculatorService(PassIndex passIndex) {
+        this.passIndex = passIndex;
+    }
+
     public void calculateFare(Ticket ticket){
         if( (ticket.getOutTime() == null) || (ticket.getOutTime().before(ticket.getInTime())) ){
             throw new IllegalArgumentException( "Out time provided is incorrect:"+ticket.getOutTime().toString() );
         }
 
+        FareCalculationEvent event = FareCalculationEvent.start();
         long inTime = ticket.getInTime().getTime();
         long outTime = ticket.getOutTime().getTime();
 
@@ -29,10 +45,30 @@ public class FareCalculatorService {
                 }
                 default: throw new IllegalArgumentException("Unkown Parking Type");
             }
+            ticket.setPrice(ticket.getPrice() * ticket.getRateMultiplier());
+            int passDiscountPercent = (passIndex == null) ? 0
+                    : passIndex.getDiscountPercent(ticket.getVehicleRegNumber(), outTime);
+            if (passDiscountPercent > 0) {
+                ticket.setPrice(ticket.getPrice() * (100 - passDiscountPercent) / 100);
+            }
             if (ticket.isDiscount()) {
                 double price = Math.round(ticket.getPrice()*100.0)/100.0;
                 ticket.setPrice( Math.round(price * 0.95*100.0)/100.0 );
             }
         }
+        event.finish(ticket);
+    }
+
+    /**
+     * Returns the rate multiplier for the given occupancy of a parking type, in percent.
+     */
+    public double getRateMultiplier(int occupancyPercent) {
+        if (occupancyPercent >= Fare.PEAK_SURGE_OCCUPANCY_PERCENT) {
+            return Fare.PEAK_SURGE_RATE_MULTIPLIER;
+        }
+        if (occupancyPercent >= Fare.SURGE_OCCUPANCY_PERCENT) {
+            return Fare.SURGE_RATE_MULTIPLIER;
+        }
+        return 1.0;
     }
 }
\ No newline at end of file
@@ -0,0 +1,153 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.GateEvent;
+import com.parkit.parkingsystem.metrics.Metrics;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Drops the repeated triggers of a gate (camera reading the same plate twice, driver pressing
+ * the button again) within a time window: a duplicate gets the result of the original event,
+ * waiting for it if it is still running, without any database work.
+ * Events are kept in two buckets of one window each, the older one being dropped as a whole.
+ */
+public class GateEventDeduplicator {
+
+    private static final Logger logger = LogManager.getLogger("GateEventDeduplicator");
+
+    public static final long DEFAULT_WINDOW_MILLIS = 5000;
+    public static final int DEFAULT_MAX_EVENTS = 10000;
+
+    private final long windowMillis;
+    private final int maxEvents;
+
+    private volatile Bucket current;
+    private volatile Bucket previous;
+
+    public GateEventDeduplicator() {
+        this(DEFAULT_WINDOW_MILLIS, DEFAULT_MAX_EVENTS);
+    }
+
+    public GateEventDeduplicator(long windowMillis, int maxEvents) {
+        this.windowMillis = windowMillis;
+        this.maxEvents = maxEvents;
+        this.current = new Bucket(System.currentTimeMillis());
+        this.previous = new Bucket(current.start - windowMillis);
+    }
+
+    /**
+     * Runs the action of the event, unless the same event for the same vehicle was already
+     * processed within the window. Failed events (null result or exception) are not kept.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T deduplicate(GateEvent gateEvent, String vehicleRegNumber, Supplier<T> action) {
+        if (vehicleRegNumber == null || windowMillis <= 0) {
+            return action.get();
+        }
+        long now = System.currentTimeMillis();
+        Bucket bucket = currentBucket(now);
+
+        Event original = find(gateEvent, vehicleRegNumber, now);
+        Event event = new Event(now);
+        if (original == null) {
+            if (bucket.size() >= maxEvents) {
+                return action.get();
+            }
+            original = bucket.events[gateEvent.ordinal()].putIfAbsent(vehicleRegNumber, event);
+        }
+        if (original != null) {
+            Metrics.increment("gate.dedup." + gateEvent.name().toLowerCase());
+            logger.info("Duplicate {} event for vehicle {} ignored", gateEvent, vehicleRegNumber);
+            try {
+                return (T) original.result.join();
+            } catch (CompletionException e) {
+                throw (e.getCause() instanceof RuntimeException) ? (RuntimeException) e.getCause() : e;
+            }
+        }
+
+        T result;
+        try {
+            result = action.get();
+        } catch (RuntimeException e) {
+            bucket.events[gateEvent.ordinal()].remove(vehicleRegNumber, event);
+            event.result.completeExceptionally(e);
+            throw e;
+        }
+        if (result == null) {
+            bucket.events[gateEvent.ordinal()].remove(vehicleRegNumber, event);
+        } else {
+            //an entry makes a later exit legitimate again, and the other way around
+            for (GateEvent otherEvent : GateEvent.values()) {
+                if (otherEvent != gateEvent) {
+                    forget(otherEvent, vehicleRegNumber);
+                }
+            }
+        }
+        event.result.complete(result);
+        return result;
+    }
+
+    public void forget(GateEvent gateEvent, String vehicleRegNumber) {
+        current.events[gateEvent.ordinal()].remove(vehicleRegNumber);
+        previous.events[gateEvent.ordinal()].remove(vehicleRegNumber);
+    }
+
+    private Event find(GateEvent gateEvent, String vehicleRegNumber, long now) {
+        Event event = current.events[gateEvent.ordinal()].get(vehicleRegNumber);
+        if (event == null) {
+            event = previous.events[gateEvent.ordinal()].get(vehicleRegNumber);
+        }
+        return (event != null && now - event.time < windowMillis) ? event : null;
+    }
+
+    private Bucket currentBucket(long now) {
+        Bucket bucket = current;
+        if (now - bucket.start < windowMillis) {
+            return bucket;
+        }
+        synchronized (this) {
+            bucket = current;
+            if (now - bucket.start >= windowMillis) {
+                previous = (now - bucket.start < 2 * windowMillis) ? bucket : new Bucket(now - windowMillis);
+                bucket = new Bucket(now);
+                current = bucket;
+            }
+            return bucket;
+        }
+    }
+
+    private static class Bucket {
+        private final long start;
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private final ConcurrentHashMap<String, Event>[] events = new ConcurrentHashMap[GateEvent.values().length];
+
+        private Bucket(long start) {
+            this.start = start;
+            for (int i = 0; i < events.length; i++) {
+                events[i] = new ConcurrentHashMap<>();
+            }
+        }
+
+        private int size() {
+            int size = 0;
+            for (ConcurrentHashMap<String, Event> gateEvents : events) {
+                size += gateEvents.size();
+            }
+            return size;
+        }
+    }
+
+    private static class Event {
+        private final long time;
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+
+        private Event(long time) {
+            this.time = time;
+        }
+    }
+}
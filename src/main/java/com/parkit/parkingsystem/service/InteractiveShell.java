@@ -1,15 +1,26 @@
 package com.parkit.parkingsystem.service;
 
+import com.parkit.parkingsystem.analytics.TicketColumnStore;
+import com.parkit.parkingsystem.cache.PassIndex;
+import com.parkit.parkingsystem.dao.AsyncParkingDAO;
+import com.parkit.parkingsystem.dao.PassDAO;
 import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketArchiveDAO;
 import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.metrics.OccupancyTimeSeries;
+import com.parkit.parkingsystem.metrics.SqlProfiler;
 import com.parkit.parkingsystem.util.InputReaderUtil;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.nio.file.Paths;
+
 public class InteractiveShell {
 
     private static final Logger logger = LogManager.getLogger("InteractiveShell");
 
+    private static final int SQL_SUMMARY_SIZE = 10;
+
     public static void loadInterface(){
         logger.info("App initialized!!!");
         System.out.println("Welcome to Parking System!");
@@ -18,10 +29,39 @@ public class InteractiveShell {
         InputReaderUtil inputReaderUtil = new InputReaderUtil();
         ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
         TicketDAO ticketDAO = new TicketDAO();
+        SnapshotService snapshotService = new SnapshotService(
+                Paths.get(System.getProperty("parkit.snapshot.file", "parking-state.snapshot")), parkingSpotDAO, ticketDAO);
+        SpotReconciliationService spotReconciliationService = new SpotReconciliationService(parkingSpotDAO);
+        spotReconciliationService.reconcile();
+        new WarmUpService(parkingSpotDAO, ticketDAO, snapshotService).warmUp();
+        spotReconciliationService.start(SpotReconciliationService.DEFAULT_PERIOD_MINUTES);
+        SpotRefreshService spotRefreshService = new SpotRefreshService(parkingSpotDAO, ticketDAO);
+        spotRefreshService.start(SpotRefreshService.DEFAULT_PERIOD_SECONDS);
+        snapshotService.start(SnapshotService.DEFAULT_PERIOD_SECONDS);
+        OccupancyTimeSeries occupancyTimeSeries = new OccupancyTimeSeries(parkingSpotDAO.spotAvailabilityCache,
+                Paths.get(System.getProperty("parkit.occupancy.file", "occupancy-history.bin")));
+        occupancyTimeSeries.start(OccupancyTimeSeries.DEFAULT_PERIOD_SECONDS);
+        AvailabilityStreamServer availabilityStreamServer = startAvailabilityStream(parkingSpotDAO);
+        PassIndex passIndex = new PassIndex();
+        PassRefreshService passRefreshService = new PassRefreshService(new PassDAO(), passIndex);
+        passRefreshService.reload();
+        passRefreshService.start(PassRefreshService.DEFAULT_PERIOD_SECONDS);
+        FareCalculatorService fareCalculatorService = new FareCalculatorService(passIndex);
         ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
+        parkingService.setFareCalculatorService(fareCalculatorService);
+        ExitBatcher exitBatcher = startExitBatcher(parkingService, parkingSpotDAO, ticketDAO, fareCalculatorService);
+        VehiclePrefetcher vehiclePrefetcher = startVehiclePrefetcher(parkingService, parkingSpotDAO, ticketDAO);
+        TicketColumnStore ticketColumnStore = openTicketColumnStore();
+        TicketColumnSyncService ticketColumnSyncService = null;
+        if(ticketColumnStore != null){
+            ticketColumnSyncService = new TicketColumnSyncService(ticketDAO, ticketColumnStore);
+            ticketColumnSyncService.start(TicketColumnSyncService.DEFAULT_PERIOD_SECONDS);
+        }
+        TicketArchiveService ticketArchiveService = new TicketArchiveService(new TicketArchiveDAO());
+        ticketArchiveService.start(TicketArchiveService.DEFAULT_PERIOD_MINUTES);
 
         while(continueApp){
-            loadMenu();
+            loadMenu(vehiclePrefetcher != null);
             int option = inputReaderUtil.readSelection();
             switch(option){
                 case 1: {
@@ -34,19 +74,124 @@ public class InteractiveShell {
                 }
                 case 3: {
                     System.out.println("Exiting from the system!");
+                    ticketArchiveService.stop();
+                    passRefreshService.stop();
+                    spotReconciliationService.stop();
+                    spotRefreshService.stop();
+                    snapshotService.stop();
+                    occupancyTimeSeries.stop();
+                    if(exitBatcher != null){
+                        exitBatcher.stop();
+                    }
+                    if(vehiclePrefetcher != null){
+                        vehiclePrefetcher.stop();
+                    }
+                    if(ticketColumnSyncService != null){
+                        ticketColumnSyncService.stop();
+                        closeTicketColumnStore(ticketColumnStore);
+                    }
+                    if(availabilityStreamServer != null){
+                        availabilityStreamServer.stop();
+                    }
+                    SqlProfiler.logSummary(SQL_SUMMARY_SIZE);
                     continueApp = false;
                     break;
                 }
+                case 4: {
+                    if(vehiclePrefetcher != null){
+                        parkingService.processApproachingVehicle();
+                    }else{
+                        System.out.println("Unsupported option. Please enter a number corresponding to the provided menu");
+                    }
+                    break;
+                }
                 default: System.out.println("Unsupported option. Please enter a number corresponding to the provided menu");
             }
         }
     }
 
-    private static void loadMenu(){
+    private static AvailabilityStreamServer startAvailabilityStream(ParkingSpotDAO parkingSpotDAO){
+        String port = System.getProperty("parkit.availability.port");
+        if(port == null){
+            return null;
+        }
+        try{
+            AvailabilityStreamServer availabilityStreamServer = new AvailabilityStreamServer(parkingSpotDAO.spotAvailabilityCache, Integer.parseInt(port));
+            availabilityStreamServer.start();
+            return availabilityStreamServer;
+        }catch(Exception e){
+            logger.error("Unable to start the availability stream on port " + port, e);
+            return null;
+        }
+    }
+
+    private static TicketColumnStore openTicketColumnStore(){
+        String directory = System.getProperty("parkit.analytics.dir");
+        if(directory == null){
+            return null;
+        }
+        try{
+            return TicketColumnStore.open(Paths.get(directory));
+        }catch(Exception e){
+            logger.error("Unable to open the analytics ticket store in " + directory, e);
+            return null;
+        }
+    }
+
+    private static void closeTicketColumnStore(TicketColumnStore ticketColumnStore){
+        try{
+            ticketColumnStore.close();
+        }catch(Exception e){
+            logger.error("Unable to close the analytics ticket store", e);
+        }
+    }
+
+    //surge mode for the end of events, the property is the grouping window in milliseconds
+    private static ExitBatcher startExitBatcher(ParkingService parkingService, ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO,
+                                                FareCalculatorService fareCalculatorService){
+        String window = System.getProperty("parkit.exit.batch.window");
+        if(window == null){
+            return null;
+        }
+        try{
+            ExitBatcher exitBatcher = new ExitBatcher(ticketDAO, parkingSpotDAO, Long.parseLong(window), ExitBatcher.DEFAULT_MAX_BATCH);
+            exitBatcher.setFareCalculatorService(fareCalculatorService);
+            exitBatcher.start();
+            parkingService.setExitBatcher(exitBatcher);
+            return exitBatcher;
+        }catch(NumberFormatException e){
+            logger.error("Invalid exit batch window " + window + ", exits are not grouped", e);
+            return null;
+        }
+    }
+
+    //the entry camera reads plates ahead of the barrier, the property is how long a held spot waits for its vehicle in milliseconds
+    private static VehiclePrefetcher startVehiclePrefetcher(ParkingService parkingService, ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO){
+        String ttl = System.getProperty("parkit.prefetch.ttl");
+        if(ttl == null){
+            return null;
+        }
+        try{
+            VehiclePrefetcher vehiclePrefetcher = new VehiclePrefetcher(new AsyncParkingDAO(ticketDAO, parkingSpotDAO), parkingSpotDAO,
+                    Long.parseLong(ttl), VehiclePrefetcher.DEFAULT_MAX_CONTEXTS);
+            //expired contexts give their held spot back
+            vehiclePrefetcher.start();
+            parkingService.setVehiclePrefetcher(vehiclePrefetcher);
+            return vehiclePrefetcher;
+        }catch(NumberFormatException e){
+            logger.error("Invalid prefetch ttl " + ttl + ", plates are not read ahead", e);
+            return null;
+        }
+    }
+
+    private static void loadMenu(boolean prefetch){
         System.out.println("Please select an option. Simply enter the number to choose an action");
         System.out.println("1 New Vehicle Entering - Allocate Parking Space");
         System.out.println("2 Vehicle Exiting - Generate Ticket Price");
         System.out.println("3 Shutdown System");
+        if(prefetch){
+            System.out.println("4 Vehicle Approaching - Hold Parking Space");
+        }
     }
 
 }
@@ -1,82 +1,307 @@
 package com.parkit.parkingsystem.service;
 
+import com.parkit.parkingsystem.cache.OpenTicketCache;
+import com.parkit.parkingsystem.cache.SpotAvailabilityCache;
+import com.parkit.parkingsystem.constants.GateEvent;
 import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.AsyncParkingDAO;
 import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.metrics.GateOperationEvent;
+import com.parkit.parkingsystem.metrics.Metrics;
 import com.parkit.parkingsystem.dao.TicketDAO;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.VehiclePrefetcher.VehicleContext;
 import com.parkit.parkingsystem.util.InputReaderUtil;
+import com.parkit.parkingsystem.util.PlateKey;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.time.Clock;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
 
 public class ParkingService {
 
     private static final Logger logger = LogManager.getLogger("ParkingService");
 
-    private static FareCalculatorService fareCalculatorService = new FareCalculatorService();
+    private static final int MAX_CLAIM_ATTEMPTS = 5;
+    private static final int CLAIM_CANDIDATES = 8;
 
     private InputReaderUtil inputReaderUtil;
     private ParkingSpotDAO parkingSpotDAO;
     private TicketDAO ticketDAO;
+    private AsyncParkingDAO asyncParkingDAO;
+    private VehiclePrefetcher vehiclePrefetcher;
+    private GateEventDeduplicator gateEventDeduplicator = new GateEventDeduplicator();
+    private AdmissionController admissionController = new AdmissionController();
+    private PlateLocks plateLocks = new PlateLocks();
+    private ExitBatcher exitBatcher;
+    private FareCalculatorService fareCalculatorService = new FareCalculatorService();
+    private Clock clock = Clock.systemDefaultZone();
 
     public ParkingService(InputReaderUtil inputReaderUtil, ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO){
         this.inputReaderUtil = inputReaderUtil;
         this.parkingSpotDAO = parkingSpotDAO;
         this.ticketDAO = ticketDAO;
+        this.asyncParkingDAO = new AsyncParkingDAO(ticketDAO, parkingSpotDAO);
+    }
+
+    public void setAsyncParkingDAO(AsyncParkingDAO asyncParkingDAO) {
+        this.asyncParkingDAO = asyncParkingDAO;
+    }
+
+    public void setVehiclePrefetcher(VehiclePrefetcher vehiclePrefetcher) {
+        this.vehiclePrefetcher = vehiclePrefetcher;
+    }
+
+    public void setGateEventDeduplicator(GateEventDeduplicator gateEventDeduplicator) {
+        this.gateEventDeduplicator = gateEventDeduplicator;
+    }
+
+    public void setAdmissionController(AdmissionController admissionController) {
+        this.admissionController = admissionController;
+    }
+
+    public void setPlateLocks(PlateLocks plateLocks) {
+        this.plateLocks = plateLocks;
+    }
+
+    public void setFareCalculatorService(FareCalculatorService fareCalculatorService) {
+        this.fareCalculatorService = fareCalculatorService;
+    }
+
+    /**
+     * Clock giving the in and out times of the tickets.
+     */
+    public void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Exits are then closed in groups, see {@link ExitBatcher}.
+     */
+    public void setExitBatcher(ExitBatcher exitBatcher) {
+        this.exitBatcher = exitBatcher;
     }
 
     public void processIncomingVehicle() {
+        ParkingType parkingType;
         try{
-            ParkingSpot parkingSpot = getNextParkingNumberIfAvailable();
-            if(parkingSpot !=null && parkingSpot.getId() > 0){
-                String vehicleRegNumber = getVehichleRegNumber();
-                parkingSpot.setAvailable(false);
-                parkingSpotDAO.updateParking(parkingSpot);//allot this parking space and mark it's availability as false
-
-                Date inTime = new Date();
-                Ticket ticket = new Ticket();
-
-                if ( ticketDAO.getNumberTicket( vehicleRegNumber ) > 0 ) {
-                    System.out.println("Heureux de vous revoir ! En tant qu’utilisateur régulier de notre parking, vous allez obtenir une remise de 5%");
-                }
-
-                //ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME)
-                //ticket.setId(ticketID);
-                ticket.setParkingSpot(parkingSpot);
-                ticket.setVehicleRegNumber(vehicleRegNumber);
-                ticket.setPrice(0);
-                ticket.setInTime(inTime);
-                ticket.setOutTime(null);
-                ticketDAO.saveTicket(ticket);
-                System.out.println("Generated Ticket and saved in DB");
-                System.out.println("Please park your vehicle in spot number:"+parkingSpot.getId());
-                System.out.println("Recorded in-time for vehicle number:"+vehicleRegNumber+" is:"+inTime);
-            }
+            parkingType = getVehichleType();
+        }catch(IllegalArgumentException ie){
+            logger.error("Error parsing user input for type of vehicle", ie);
+            return;
+        }
+        try{
+            String vehicleRegNumber = getVehichleRegNumber();
+            processIncomingVehicle(parkingType, vehicleRegNumber);
+        }catch(AdmissionRejectedException are){
+            printBusy(are);
         }catch(Exception e){
             logger.error("Unable to process incoming vehicle",e);
         }
     }
 
+    /**
+     * Reads the plate of a vehicle approaching the entry, so that its context is loaded and a
+     * spot held for it before it reaches the barrier; does nothing without a prefetcher.
+     */
+    public void processApproachingVehicle() {
+        if(vehiclePrefetcher == null){
+            return;
+        }
+        try{
+            ParkingType parkingType = getVehichleType();
+            vehiclePrefetcher.plateSighted(getVehichleRegNumber(), parkingType);
+        }catch(IllegalArgumentException ie){
+            logger.error("Error parsing user input for type of vehicle", ie);
+        }catch(Exception e){
+            logger.error("Unable to process approaching vehicle",e);
+        }
+    }
+
+    /**
+     * @throws AdmissionRejectedException if the system is saturated, the entry can be retried later
+     */
+    public Ticket processIncomingVehicle(ParkingType parkingType, String plate) {
+        //a plate read by a camera or typed in lower case is the plate of the same vehicle
+        String vehicleRegNumber = PlateKey.normalize(plate);
+        try{
+            //a repeated trigger of the gate is dropped before any query
+            return recordGateOperation(GateEvent.ENTRY, vehicleRegNumber, parkingType,
+                    () -> gateEventDeduplicator.deduplicate(GateEvent.ENTRY, vehicleRegNumber,
+                    () -> plateLocks.execute(vehicleRegNumber,
+                    () -> admissionController.execute(GateEvent.ENTRY, () -> {
+                        VehicleContext context = takeVehicleContext(vehicleRegNumber);
+                        //an entry retried once the original one is done finds its ticket already open
+                        Ticket openTicket = getCachedOpenTicket(vehicleRegNumber);
+                        if(openTicket == null && context != null){
+                            openTicket = getOpenTicket(vehicleRegNumber, context.getTicket());
+                        }
+                        if(openTicket != null){
+                            if(context != null){
+                                getHeldSpot(context, null, vehicleRegNumber);
+                            }
+                            return openTicket;
+                        }
+                        if(context != null){
+                            ParkingSpot heldSpot = getHeldSpot(context, parkingType, vehicleRegNumber);
+                            if(heldSpot != null){
+                                return parkVehicle(heldSpot, true, vehicleRegNumber, context.getNbTickets());
+                            }
+                        }
+                        //the cache only holds the tickets of this node, a vehicle parked through another one is found
+                        //in the database: the ticket lookup, the visit count and the spot lookup run at the same time
+                        CompletableFuture<Ticket> latestTicket = (context != null) ? context.getTicket()
+                                : asyncParkingDAO.getTicket(vehicleRegNumber);
+                        CompletableFuture<Integer> nbTickets = (context != null) ? context.getNbTickets()
+                                : asyncParkingDAO.getNumberTicket(vehicleRegNumber);
+                        ParkingSpot parkingSpot = getNextParkingNumberIfAvailable(parkingType);
+                        if(context == null){
+                            openTicket = getOpenTicket(vehicleRegNumber, latestTicket);
+                            if(openTicket != null){
+                                return openTicket;
+                            }
+                        }
+                        return (parkingSpot != null) ? parkVehicle(parkingSpot, false, vehicleRegNumber, nbTickets) : null;
+                    }))));
+        }catch(AdmissionRejectedException are){
+            throw are;
+        }catch(Exception e){
+            logger.error("Unable to process incoming vehicle",e);
+            return null;
+        }
+    }
+
+    private Ticket parkVehicle(ParkingSpot parkingSpot, boolean held, String vehicleRegNumber, CompletableFuture<Integer> nbTickets) {
+        Ticket ticket = new Ticket();
+        //the rate is set by the occupancy the vehicle finds when entering
+        ticket.setRateMultiplier(getRateMultiplier(parkingSpot.getParkingType()));
+
+        parkingSpot.setAvailable(false);
+        if(!held){
+            parkingSpot = claimParkingSpot(parkingSpot, vehicleRegNumber);//allot this parking space and mark it's availability as false
+        }
+        if(parkingSpot == null){
+            System.out.println("Unable to allot a parking spot. Parking slots might be full");
+            return null;
+        }
+
+        Date inTime = new Date(clock.millis());
+
+        if ( nbTickets.join() > 0 ) {
+            System.out.println("Heureux de vous revoir ! En tant qu’utilisateur régulier de notre parking, vous allez obtenir une remise de 5%");
+        }
+
+        //ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME)
+        //ticket.setId(ticketID);
+        ticket.setParkingSpot(parkingSpot);
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setPrice(0);
+        ticket.setInTime(inTime);
+        ticket.setOutTime(null);
+        if(!ticketDAO.saveTicket(ticket)){
+            //the spot is given back at once instead of staying held until the reconciliation
+            parkingSpotDAO.releaseParking(parkingSpot, vehicleRegNumber);
+            System.out.println("Unable to save ticket information. Error occurred");
+            return null;
+        }
+        System.out.println("Generated Ticket and saved in DB");
+        System.out.println("Please park your vehicle in spot number:"+parkingSpot.getId());
+        System.out.println("Recorded in-time for vehicle number:"+vehicleRegNumber+" is:"+inTime);
+        return ticket;
+    }
+
+    //another gate may take the spot first: the claim is then retried on other available spots
+    private ParkingSpot claimParkingSpot(ParkingSpot parkingSpot, String vehicleRegNumber) {
+        ParkingType parkingType = parkingSpot.getParkingType();
+        for(int attempt = 1; attempt <= MAX_CLAIM_ATTEMPTS; attempt++){
+            if(parkingSpotDAO.claimParking(parkingSpot, vehicleRegNumber)){
+                return parkingSpot;
+            }
+            Metrics.increment("parking.claim.conflict");
+            List<Integer> candidates = parkingSpotDAO.getAvailableSlots(parkingType, CLAIM_CANDIDATES);
+            if(candidates.isEmpty()){
+                return null;
+            }
+            //gates racing for the same lowest numbers spread over the candidates
+            int parkingNumber = candidates.get(ThreadLocalRandom.current().nextInt(candidates.size()));
+            parkingSpot = new ParkingSpot(parkingNumber, parkingType, false);
+        }
+        logger.error("Unable to claim a {} parking spot after {} attempts", parkingType, MAX_CLAIM_ATTEMPTS);
+        return null;
+    }
+
+    private Ticket getCachedOpenTicket(String vehicleRegNumber) {
+        OpenTicketCache openTicketCache = ticketDAO.openTicketCache;
+        Ticket openTicket = (openTicketCache == null) ? null : openTicketCache.get(vehicleRegNumber);
+        return (openTicket == null) ? null : alreadyParked(vehicleRegNumber, openTicket);
+    }
+
+    //the latest ticket of the vehicle, if it is still open
+    private Ticket getOpenTicket(String vehicleRegNumber, CompletableFuture<Ticket> latestTicket) {
+        Ticket ticket = latestTicket.exceptionally(e -> null).join();
+        return (ticket == null || ticket.getOutTime() != null) ? null : alreadyParked(vehicleRegNumber, ticket);
+    }
+
+    private Ticket alreadyParked(String vehicleRegNumber, Ticket openTicket) {
+        Metrics.increment("parking.entry.already_parked");
+        System.out.println("Vehicle " + vehicleRegNumber + " is already parked in spot number:" + openTicket.getParkingSpot().getId());
+        return openTicket;
+    }
+
+    private VehicleContext takeVehicleContext(String vehicleRegNumber) {
+        return (vehiclePrefetcher == null) ? null : vehiclePrefetcher.take(vehicleRegNumber);
+    }
+
+    //a spot held for a vehicle of another type than the one entering is given back
+    private ParkingSpot getHeldSpot(VehicleContext context, ParkingType parkingType, String vehicleRegNumber) {
+        ParkingSpot heldSpot = context.getHeldSpot().exceptionally(e -> null).join();
+        if(heldSpot != null && heldSpot.getParkingType() != parkingType){
+            parkingSpotDAO.releaseParking(heldSpot, vehicleRegNumber);
+            return null;
+        }
+        return heldSpot;
+    }
+
+    private double getRateMultiplier(ParkingType parkingType) {
+        SpotAvailabilityCache spotAvailabilityCache = parkingSpotDAO.spotAvailabilityCache;
+        if (spotAvailabilityCache == null || !spotAvailabilityCache.isLoaded()) {
+            return 1.0;
+        }
+        return fareCalculatorService.getRateMultiplier(spotAvailabilityCache.getOccupancyPercent(parkingType));
+    }
+
     private String getVehichleRegNumber() throws Exception {
         System.out.println("Please type the vehicle registration number and press enter key");
         return inputReaderUtil.readVehicleRegistrationNumber();
     }
 
     public ParkingSpot getNextParkingNumberIfAvailable(){
+        try{
+            ParkingType parkingType = getVehichleType();
+            return getNextParkingNumberIfAvailable(parkingType);
+        }catch(IllegalArgumentException ie){
+            logger.error("Error parsing user input for type of vehicle", ie);
+        }
+        return null;
+    }
+
+    public ParkingSpot getNextParkingNumberIfAvailable(ParkingType parkingType){
         int parkingNumber=0;
         ParkingSpot parkingSpot = null;
         try{
-            ParkingType parkingType = getVehichleType();
             parkingNumber = parkingSpotDAO.getNextAvailableSlot(parkingType);
             if(parkingNumber > 0){
                 parkingSpot = new ParkingSpot(parkingNumber,parkingType, true);
             }else{
                 throw new Exception("Error fetching parking number from DB. Parking slots might be full");
             }
-        }catch(IllegalArgumentException ie){
-            logger.error("Error parsing user input for type of vehicle", ie);
         }catch(Exception e){
             logger.error("Error fetching next available parking slot", e);
         }
@@ -105,27 +330,129 @@ public class ParkingService {
     public void processExitingVehicle() {
         try{
             String vehicleRegNumber = getVehichleRegNumber();
-            Ticket ticket = ticketDAO.getTicket( vehicleRegNumber );
-            Date outTime = new Date();
-            ticket.setOutTime( outTime );
-
-            setDiscountForRecurringUser(ticket, vehicleRegNumber);
-
-            fareCalculatorService.calculateFare( ticket );
-            if(ticketDAO.updateTicket( ticket )) {
-                ParkingSpot parkingSpot = ticket.getParkingSpot();
-                parkingSpot.setAvailable( true );
-                parkingSpotDAO.updateParking( parkingSpot );
-                System.out.println("Please pay the parking fare:" + ticket.getPrice());
-                System.out.println("Recorded out-time for vehicle number:" + ticket.getVehicleRegNumber() + " is:" + outTime);
-            }else{
-                System.out.println("Unable to update ticket information. Error occurred");
-            }
+            processExitingVehicle(vehicleRegNumber);
+        }catch(AdmissionRejectedException are){
+            printBusy(are);
         }catch(Exception e){
             logger.error("Unable to process exiting vehicle",e);
         }
     }
 
+    /**
+     * @throws AdmissionRejectedException if the system is saturated, the exit can be retried later
+     */
+    public Ticket processExitingVehicle(String plate) {
+        String vehicleRegNumber = PlateKey.normalize(plate);
+        try{
+            return recordGateOperation(GateEvent.EXIT, vehicleRegNumber, null,
+                    () -> gateEventDeduplicator.deduplicate(GateEvent.EXIT, vehicleRegNumber,
+                            () -> plateLocks.execute(vehicleRegNumber, () -> {
+                                //a batched exit waits for its group without an admission slot, the batcher uses one connection for all
+                                if(exitBatcher != null){
+                                    return exitVehicleInGroup(vehicleRegNumber);
+                                }
+                                return admissionController.execute(GateEvent.EXIT, () -> exitVehicle(vehicleRegNumber));
+                            })));
+        }catch(AdmissionRejectedException are){
+            throw are;
+        }catch(Exception e){
+            logger.error("Unable to process exiting vehicle",e);
+            return null;
+        }
+    }
+
+    private Ticket exitVehicle(String vehicleRegNumber) {
+        VehicleContext context = takeVehicleContext( vehicleRegNumber );
+        Ticket ticket = null;
+        CompletableFuture<Integer> nbTickets;
+        if(context != null){
+            //a leaving vehicle needs no spot
+            getHeldSpot(context, null, vehicleRegNumber);
+            nbTickets = context.getNbTickets();
+            ticket = context.getTicket().exceptionally(e -> null).join();
+        }else{
+            //the visit count and the ticket lookup are independent, they run at the same time
+            nbTickets = asyncParkingDAO.getNumberTicket( vehicleRegNumber );
+        }
+        if(ticket == null || ticket.getOutTime() != null){
+            ticket = ticketDAO.getTicket( vehicleRegNumber );
+        }
+        //a repeated exit finds the ticket already closed
+        if(ticket == null || ticket.getOutTime() != null){
+            System.out.println("No parked vehicle found with number:" + vehicleRegNumber);
+            return null;
+        }
+        Date outTime = new Date(clock.millis());
+        ticket.setOutTime( outTime );
+
+        ticket.setDiscount( nbTickets.join() > 0 );
+
+        fareCalculatorService.calculateFare( ticket );
+        //another node or the exit batcher may have closed the ticket since it was read: it is not priced nor freed twice
+        if(ticketDAO.updateTicket( ticket )) {
+            ParkingSpot parkingSpot = ticket.getParkingSpot();
+            parkingSpot.setAvailable( true );
+            if(!parkingSpotDAO.releaseParking( parkingSpot, ticket.getVehicleRegNumber() )){
+                logger.warn("Parking spot {} was not held by vehicle {}, left as is", parkingSpot.getId(), ticket.getVehicleRegNumber());
+            }
+            System.out.println("Please pay the parking fare:" + ticket.getPrice());
+            System.out.println("Recorded out-time for vehicle number:" + ticket.getVehicleRegNumber() + " is:" + outTime);
+            return ticket;
+        }else{
+            ticket.setOutTime( null );
+            ticket.setPrice( 0 );
+            System.out.println("No parked vehicle found with number:" + vehicleRegNumber);
+            return null;
+        }
+    }
+
+    private Ticket exitVehicleInGroup(String vehicleRegNumber) {
+        VehicleContext context = takeVehicleContext( vehicleRegNumber );
+        if(context != null){
+            getHeldSpot(context, null, vehicleRegNumber);
+        }
+        Ticket ticket;
+        try{
+            ticket = exitBatcher.exit( vehicleRegNumber );
+        }catch(CompletionException e){
+            logger.error("Unable to close the ticket of vehicle " + vehicleRegNumber, e.getCause());
+            System.out.println("Unable to update ticket information. Error occurred");
+            return null;
+        }
+        if(ticket == null){
+            System.out.println("No parked vehicle found with number:" + vehicleRegNumber);
+            return null;
+        }
+        System.out.println("Please pay the parking fare:" + ticket.getPrice());
+        System.out.println("Recorded out-time for vehicle number:" + ticket.getVehicleRegNumber() + " is:" + ticket.getOutTime());
+        return ticket;
+    }
+
+    //the parking type of an exit is the one of its ticket
+    private Ticket recordGateOperation(GateEvent gateEvent, String vehicleRegNumber, ParkingType parkingType, Supplier<Ticket> operation) {
+        GateOperationEvent event = GateOperationEvent.start(gateEvent);
+        String outcome = GateOperationEvent.FAILED;
+        try{
+            Ticket ticket = operation.get();
+            if(ticket != null){
+                outcome = (gateEvent == GateEvent.ENTRY) ? GateOperationEvent.PARKED : GateOperationEvent.EXITED;
+                parkingType = ticket.getParkingSpot().getParkingType();
+            }else if(gateEvent == GateEvent.ENTRY){
+                outcome = GateOperationEvent.NO_SPOT;
+            }
+            return ticket;
+        }catch(AdmissionRejectedException are){
+            outcome = GateOperationEvent.REJECTED;
+            throw are;
+        }finally{
+            event.finish(vehicleRegNumber, parkingType, outcome);
+        }
+    }
+
+    private void printBusy(AdmissionRejectedException are) {
+        System.out.println("The parking system is busy, please try again in " + are.getRetryAfterMillis() + " ms");
+    }
+
     public void setDiscountForRecurringUser(Ticket ticket, String vehicleRegNumber) {
         if ( ticketDAO.getNumberTicket( vehicleRegNumber ) > 0 ) {
             ticket.setDiscount( true );
@@ -0,0 +1,129 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.cache.PassIndex;
+import com.parkit.parkingsystem.dao.PassDAO;
+import com.parkit.parkingsystem.metrics.Metrics;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Clock;
+import java.util.Date;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the pass index up to date: the valid passes are streamed once, then only the passes
+ * updated since the previous refresh are read and merged into a new index. A pass deleted from
+ * the table is not seen by a refresh, so all the passes are reloaded every hour; a pass is
+ * revoked at once by moving its end of validity to the past instead.
+ */
+public class PassRefreshService {
+
+    private static final Logger logger = LogManager.getLogger("PassRefreshService");
+
+    public static final long DEFAULT_PERIOD_SECONDS = 60;
+
+    //passes updated shortly before the last update read are read again, for the transactions committed late
+    private static final long CATCH_UP_MARGIN_MILLIS = 60 * 1000;
+    //an exit priced late, e.g. after a batch or an outage, still finds the passes valid when the vehicle left
+    public static final long EXPIRED_PASS_RETENTION_MILLIS = TimeUnit.DAYS.toMillis(7);
+    public static final long FULL_RELOAD_PERIOD_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private final PassDAO passDAO;
+    private final PassIndex passIndex;
+
+    //highest UPDATED_TIME read, in the time of the database: the clock of the app may be skewed or simulated
+    private long lastUpdatedMillis;
+    private long reloadedAt;
+    private Clock clock = Clock.systemDefaultZone();
+    private ScheduledExecutorService scheduler;
+
+    public PassRefreshService(PassDAO passDAO, PassIndex passIndex) {
+        this.passDAO = passDAO;
+        this.passIndex = passIndex;
+    }
+
+    /**
+     * Clock the validity of the passes and the time of the full reloads are read from.
+     */
+    public void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Refreshes the index periodically, the first time after one period: {@link #reload()} loads it at startup.
+     */
+    public synchronized void start(long periodSeconds) {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "pass-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::refresh, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Loads all the passes valid or expired for less than {@link #EXPIRED_PASS_RETENTION_MILLIS}
+     * into a new index. Returns the number of passes read, -1 when the load failed and the index
+     * was left as is.
+     */
+    public synchronized int reload() {
+        long now = clock.millis();
+        Date expiredBefore = new Date(now - EXPIRED_PASS_RETENTION_MILLIS);
+        int nbPasses = load(new PassIndex.Builder(), new Date(0), expiredBefore, now, 0);
+        if (nbPasses >= 0) {
+            reloadedAt = now;
+        }
+        return nbPasses;
+    }
+
+    /**
+     * Merges the passes updated since the last update read, revoked ones included, into a new
+     * index; the first refresh and the ones due for a full reload load them all. Returns the
+     * number of passes read, -1 on failure.
+     */
+    public synchronized int refresh() {
+        long now = clock.millis();
+        if (reloadedAt == 0 || now - reloadedAt >= FULL_RELOAD_PERIOD_MILLIS) {
+            return reload();
+        }
+        Date updatedSince = new Date(Math.max(0, lastUpdatedMillis - CATCH_UP_MARGIN_MILLIS));
+        return load(passIndex.toBuilder(), updatedSince, new Date(0), now, lastUpdatedMillis);
+    }
+
+    private int load(PassIndex.Builder builder, Date updatedSince, Date validAt, long now, long updatedMillis) {
+        long start = System.nanoTime();
+        long[] lastUpdated = {updatedMillis};
+        int nbPasses = passDAO.getPasses(updatedSince, validAt, pass -> {
+            if (pass.getUpdatedTime() != null) {
+                lastUpdated[0] = Math.max(lastUpdated[0], pass.getUpdatedTime().getTime());
+            }
+            try {
+                builder.add(pass);
+            } catch (IllegalArgumentException e) {
+                logger.warn("Pass {} ignored: {}", pass.getId(), e.getMessage());
+            }
+        });
+        if (nbPasses < 0) {
+            return -1;
+        }
+        passIndex.publish(builder, now - EXPIRED_PASS_RETENTION_MILLIS);
+        lastUpdatedMillis = lastUpdated[0];
+        Metrics.add("pass.refresh.passes", nbPasses);
+        Metrics.recordNanos("pass.refresh", System.nanoTime() - start);
+        logger.info("Read {} passes, {} valid passes indexed in {} ms", nbPasses, passIndex.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return nbPasses;
+    }
+}
@@ -0,0 +1,92 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.metrics.Metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Runs the gate operations of a vehicle one at a time: an entry retried while the original one
+ * is still running, or an exit racing an entry, waits for it instead of creating a second
+ * ticket or closing the same one twice.
+ * Plates are spread over a fixed number of locks; unrelated plates only wait for each other
+ * when they share a stripe.
+ */
+public class PlateLocks {
+
+    public static final int DEFAULT_STRIPES = 1024;
+    public static final long DEFAULT_MAX_WAIT_MILLIS = 5000;
+
+    private final ReentrantLock[] locks;
+    private final int mask;
+    private final long maxWaitNanos;
+
+    public PlateLocks() {
+        this(DEFAULT_STRIPES, DEFAULT_MAX_WAIT_MILLIS);
+    }
+
+    /**
+     * The number of stripes is rounded up to a power of two.
+     */
+    public PlateLocks(int stripes, long maxWaitMillis) {
+        int size = (stripes <= 1) ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        locks = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        mask = size - 1;
+        maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+    }
+
+    /**
+     * @throws AdmissionRejectedException if another operation of the plate's stripe held the
+     * lock for longer than the maximum wait
+     */
+    public <T> T execute(String vehicleRegNumber, Supplier<T> action) {
+        if (vehicleRegNumber == null) {
+            return action.get();
+        }
+        ReentrantLock lock = locks[stripe(vehicleRegNumber)];
+        if (!lock.tryLock()) {
+            Metrics.increment("plate.lock.contended");
+            long start = System.nanoTime();
+            boolean locked;
+            try {
+                locked = lock.tryLock(maxWaitNanos, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                locked = false;
+            }
+            Metrics.recordNanos("plate.lock.wait", System.nanoTime() - start);
+            if (!locked) {
+                Metrics.increment("plate.lock.timeout");
+                throw new AdmissionRejectedException("Another operation is running for vehicle " + vehicleRegNumber,
+                        TimeUnit.NANOSECONDS.toMillis(maxWaitNanos));
+            }
+        }
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getStripes() {
+        return locks.length;
+    }
+
+    public int getQueueLength() {
+        int queueLength = 0;
+        for (ReentrantLock lock : locks) {
+            queueLength += lock.getQueueLength();
+        }
+        return queueLength;
+    }
+
+    private int stripe(String vehicleRegNumber) {
+        int h = vehicleRegNumber.hashCode();
+        //the high bits of the hash take part in the stripe too
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
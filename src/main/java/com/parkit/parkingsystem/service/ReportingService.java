@@ -0,0 +1,147 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.dao.ReportDAO;
+import com.parkit.parkingsystem.dao.TicketArchiveDAO;
+import com.parkit.parkingsystem.model.ParkingReport;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+/**
+ * Daily revenue and occupancy reports. The tickets entered during a day are read in ID ranges
+ * that are aggregated in parallel, each into its own report, then merged with the stays carried
+ * over from the previous days. Past days cannot change
+ * anymore and are computed once, only the current day is recomputed on each request.
+ */
+public class ReportingService {
+
+    private static final Logger logger = LogManager.getLogger("ReportingService");
+
+    public static final int DEFAULT_PARALLELISM = 4;
+    public static final int DEFAULT_CHUNK_SIZE = 10000;
+
+    private static final String TICKET_TABLE = "ticket";
+
+    private final ReportDAO reportDAO;
+    private final ForkJoinPool forkJoinPool;
+    private final int chunkSize;
+    private final ConcurrentHashMap<LocalDate, ParkingReport> closedDays = new ConcurrentHashMap<>();
+    private Clock clock = Clock.systemDefaultZone();
+
+    public ReportingService(ReportDAO reportDAO) {
+        this(reportDAO, DEFAULT_PARALLELISM, DEFAULT_CHUNK_SIZE);
+    }
+
+    public ReportingService(ReportDAO reportDAO, int parallelism, int chunkSize) {
+        this.reportDAO = reportDAO;
+        this.forkJoinPool = new ForkJoinPool(parallelism);
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Clock the current day and the time zone of the days are read from.
+     */
+    public void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    public ParkingReport getReport(LocalDate from, LocalDate to) {
+        return ParkingReport.summarize(getDailyReports(from, to));
+    }
+
+    public List<ParkingReport> getDailyReports(LocalDate from, LocalDate to) {
+        LocalDate today = LocalDate.now(clock);
+        List<ParkingReport> reports = new ArrayList<>();
+        Set<String> historyTables = null;
+        for (LocalDate day = from; !day.isAfter(to) && !day.isAfter(today); day = day.plusDays(1)) {
+            ParkingReport report = closedDays.get(day);
+            if (report == null) {
+                if (historyTables == null) {
+                    historyTables = reportDAO.getTicketHistoryTables();
+                }
+                report = computeDay(day, today, historyTables);
+                if (report != null && day.isBefore(today)) {
+                    closedDays.put(day, report);
+                }
+            }
+            if (report != null) {
+                reports.add(report);
+            }
+        }
+        return reports;
+    }
+
+    public void clearCache() {
+        closedDays.clear();
+    }
+
+    private ParkingReport computeDay(LocalDate day, LocalDate today, Set<String> historyTables) {
+        ZoneId zone = clock.getZone();
+        long dayStart = day.atStartOfDay(zone).toInstant().toEpochMilli();
+        long dayEnd = day.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+
+        List<String> tables = new ArrayList<>();
+        tables.add(TICKET_TABLE);
+        //archived tickets are in the table of the month they were closed, the day's month or any later one
+        for (YearMonth closingMonth = YearMonth.from(day); !closingMonth.isAfter(YearMonth.from(today)); closingMonth = closingMonth.plusMonths(1)) {
+            String historyTable = TicketArchiveDAO.historyTable(closingMonth);
+            if (historyTables.contains(historyTable)) {
+                tables.add(historyTable);
+            }
+        }
+
+        ParkingReport report = new ParkingReport(day, dayStart, dayEnd);
+        AtomicBoolean complete = new AtomicBoolean(true);
+        long start = System.nanoTime();
+        for (String table : tables) {
+            //the stays carried over from the previous days are read apart from the ID range of the tickets entered during the day
+            if (!reportDAO.aggregateCarriedOver(table, report, dayStart)) {
+                complete.set(false);
+            }
+            int[] idRange = reportDAO.getIdRange(table, dayStart, dayEnd);
+            if (idRange == null) {
+                continue;
+            }
+            int minId = idRange[0];
+            int nbChunks = (int) (((long) idRange[1] - minId) / chunkSize + 1);
+            try {
+                report.merge(forkJoinPool.submit(() -> IntStream.range(0, nbChunks).parallel()
+                        .mapToObj(chunk -> {
+                            int fromId = minId + chunk * chunkSize;
+                            int toId = (int) Math.min((long) fromId + chunkSize - 1, idRange[1]);
+                            ParkingReport chunkReport = new ParkingReport(day, dayStart, dayEnd);
+                            if (!reportDAO.aggregateChunk(table, fromId, toId, chunkReport, dayStart, dayEnd)) {
+                                complete.set(false);
+                            }
+                            return chunkReport;
+                        })
+                        .reduce(ParkingReport::merge)
+                        .orElseGet(() -> new ParkingReport(day, dayStart, dayEnd))).get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (Exception e) {
+                logger.error("Unable to compute report of " + day, e);
+                return null;
+            }
+        }
+        logger.info("Computed report of {} in {} ms", day, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        if (!complete.get()) {
+            logger.error("Report of {} is incomplete, some ticket chunks could not be read", day);
+            return null;
+        }
+        return report;
+    }
+}
@@ -0,0 +1,151 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.cache.LotStateSnapshot;
+import com.parkit.parkingsystem.cache.OpenTicketCache;
+import com.parkit.parkingsystem.cache.SpotAvailabilityCache;
+import com.parkit.parkingsystem.cache.VisitCountCache;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.Ticket;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically saves the in-process lot state to a local file, and restores it on startup:
+ * the latest snapshot is loaded, then only the tickets created or closed since it was taken
+ * are read from the database. The spot totals are always read from the parking table, spots
+ * may have been added or retyped since the snapshot; only the occupancy comes from it.
+ */
+public class SnapshotService {
+
+    private static final Logger logger = LogManager.getLogger("SnapshotService");
+
+    public static final long DEFAULT_PERIOD_SECONDS = 60;
+
+    //tickets closed shortly before the snapshot are read again, only those still open in it are released
+    private static final long CATCH_UP_MARGIN_MILLIS = 60 * 1000;
+
+    private final Path file;
+    private final ParkingSpotDAO parkingSpotDAO;
+    private final TicketDAO ticketDAO;
+
+    private ScheduledExecutorService scheduler;
+
+    public SnapshotService(Path file, ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO) {
+        this.file = file;
+        this.parkingSpotDAO = parkingSpotDAO;
+        this.ticketDAO = ticketDAO;
+    }
+
+    public synchronized void start(long periodSeconds) {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "lot-state-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::takeSnapshot, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+            takeSnapshot();
+        }
+    }
+
+    public boolean takeSnapshot() {
+        SpotAvailabilityCache spotAvailabilityCache = parkingSpotDAO.spotAvailabilityCache;
+        if (!spotAvailabilityCache.isLoaded()) {
+            return false;
+        }
+        //the watermark is read first: whatever happens after it is caught up on restore
+        int maxTicketId = ticketDAO.getMaxTicketId();
+        if (maxTicketId < 0) {
+            return false;
+        }
+        long takenAt = System.currentTimeMillis();
+        Map<String, Integer> visitCounts = new HashMap<>();
+        ticketDAO.visitCountCache.forEach(visitCounts::put);
+        LotStateSnapshot snapshot = new LotStateSnapshot(takenAt, maxTicketId, spotAvailabilityCache.getTotals(),
+                spotAvailabilityCache.getFrees(), ticketDAO.openTicketCache.getTickets(), visitCounts);
+        try {
+            snapshot.writeTo(file);
+            logger.info("Saved lot state snapshot up to ticket {}", maxTicketId);
+            return true;
+        } catch (Exception e) {
+            logger.error("Unable to save lot state snapshot to " + file, e);
+            return false;
+        }
+    }
+
+    public boolean restore() {
+        if (!Files.exists(file)) {
+            return false;
+        }
+        long start = System.nanoTime();
+        LotStateSnapshot snapshot;
+        try {
+            snapshot = LotStateSnapshot.readFrom(file);
+        } catch (Exception e) {
+            logger.error("Unable to read lot state snapshot " + file, e);
+            return false;
+        }
+        List<Ticket> createdTickets = ticketDAO.getTicketsAfter(snapshot.getMaxTicketId());
+        List<Ticket> closedTickets = ticketDAO.getTicketsClosedSince(snapshot.getMaxTicketId(),
+                new Date(snapshot.getTakenAt() - CATCH_UP_MARGIN_MILLIS));
+        int[] totals = parkingSpotDAO.getParkingTotals();
+        if (createdTickets == null || closedTickets == null || totals == null) {
+            return false;
+        }
+
+        int capacity = 0;
+        for (int total : totals) {
+            capacity += total;
+        }
+        OpenTicketCache openTicketCache = ticketDAO.openTicketCache;
+        openTicketCache.clear();
+        openTicketCache.setCapacity(capacity);
+        openTicketCache.load(snapshot.getOpenTickets());
+        VisitCountCache visitCountCache = ticketDAO.visitCountCache;
+        visitCountCache.clear();
+        snapshot.getVisitCounts().forEach(visitCountCache::put);
+
+        for (Ticket ticket : closedTickets) {
+            openTicketCache.remove(ticket);
+        }
+        for (Ticket ticket : createdTickets) {
+            visitCountCache.increment(ticket.getVehicleRegNumber());
+            if (ticket.getOutTime() == null) {
+                openTicketCache.put(ticket);
+            }
+        }
+
+        //a spot is taken for each open ticket
+        int[] frees = totals.clone();
+        for (Ticket ticket : openTicketCache.getTickets()) {
+            ParkingType parkingType = ticket.getParkingSpot().getParkingType();
+            frees[parkingType.ordinal()] = Math.max(0, frees[parkingType.ordinal()] - 1);
+        }
+        parkingSpotDAO.spotAvailabilityCache.load(totals, frees);
+
+        logger.info("Restored lot state snapshot up to ticket {} and caught up {} new and {} closed tickets in {} ms",
+                snapshot.getMaxTicketId(), createdTickets.size(), closedTickets.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return true;
+    }
+}
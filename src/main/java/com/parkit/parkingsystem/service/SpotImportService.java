@@ -0,0 +1,161 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.SpotImportResult;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Provisions parking spots from a definition file, one spot per line:
+ * {@code PARKING_NUMBER,TYPE,LEVEL[,ATTRIBUTES]}, blank lines and lines starting with # being ignored.
+ * Spots are inserted by chunks, each in its own transaction. The last committed line is kept
+ * in a {@code .progress} file next to the definition file so that an interrupted import resumes
+ * where it stopped; spots that already exist are skipped.
+ */
+public class SpotImportService {
+
+    private static final Logger logger = LogManager.getLogger("SpotImportService");
+
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+    public static final int MAX_ATTRIBUTES_LENGTH = 100;
+    public static final String PROGRESS_SUFFIX = ".progress";
+
+    private final ParkingSpotDAO parkingSpotDAO;
+    private final TicketDAO ticketDAO;
+    private final int chunkSize;
+
+    public SpotImportService(ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO) {
+        this(parkingSpotDAO, ticketDAO, DEFAULT_CHUNK_SIZE);
+    }
+
+    public SpotImportService(ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO, int chunkSize) {
+        this.parkingSpotDAO = parkingSpotDAO;
+        this.ticketDAO = ticketDAO;
+        this.chunkSize = chunkSize;
+    }
+
+    public SpotImportResult importSpots(Path file) throws IOException {
+        SpotImportResult result = new SpotImportResult();
+        Path progressFile = file.resolveSibling(file.getFileName() + PROGRESS_SUFFIX);
+        int committedLine = readProgress(progressFile);
+        result.setResumedFromLine(committedLine);
+        if (committedLine > 0) {
+            logger.info("Resuming import of {} after line {}", file, committedLine);
+        }
+
+        List<ParkingSpot> chunk = new ArrayList<>(chunkSize);
+        int lineNumber = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (lineNumber <= committedLine) {
+                    continue;
+                }
+                ParkingSpot parkingSpot = parseLine(line, lineNumber, result);
+                if (parkingSpot != null) {
+                    chunk.add(parkingSpot);
+                }
+                if (chunk.size() >= chunkSize) {
+                    if (!importChunk(chunk, result)) {
+                        result.setLinesRead(lineNumber);
+                        return result;
+                    }
+                    writeProgress(progressFile, lineNumber);
+                    chunk.clear();
+                }
+            }
+        }
+        if (!chunk.isEmpty() && !importChunk(chunk, result)) {
+            result.setLinesRead(lineNumber);
+            return result;
+        }
+        result.setLinesRead(lineNumber);
+        result.setCompleted(true);
+        Files.deleteIfExists(progressFile);
+        //the registry is rebuilt once rather than copied for every chunk
+        if (result.getSpotsAdded() > 0 && ticketDAO.spotRegistry.isLoaded()) {
+            ticketDAO.warmUpSpotRegistry();
+        }
+        logger.info("Imported {} spots from {}, {} already existing, {} invalid lines",
+                result.getSpotsAdded(), file, result.getSpotsSkipped(), result.getInvalidLines().size());
+        return result;
+    }
+
+    private boolean importChunk(List<ParkingSpot> chunk, SpotImportResult result) {
+        int[] added = parkingSpotDAO.importParkingSpots(chunk);
+        if (added == null) {
+            logger.error("Import stopped, it can be resumed from the last committed chunk");
+            return false;
+        }
+        //the chunk is committed: its spots can be handed out right away
+        int nbAdded = 0;
+        for (ParkingType parkingType : ParkingType.values()) {
+            int count = added[parkingType.ordinal()];
+            if (count > 0) {
+                parkingSpotDAO.spotAvailabilityCache.addSpots(parkingType, count);
+                nbAdded += count;
+            }
+        }
+        ticketDAO.openTicketCache.addCapacity(nbAdded);
+        result.addSpots(nbAdded, chunk.size() - nbAdded);
+        return true;
+    }
+
+    private ParkingSpot parseLine(String line, int lineNumber, SpotImportResult result) {
+        String trimmed = line.trim();
+        if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+            return null;
+        }
+        String[] fields = trimmed.split(",", 4);
+        try {
+            if (fields.length < 3) {
+                throw new IllegalArgumentException("expected PARKING_NUMBER,TYPE,LEVEL[,ATTRIBUTES]");
+            }
+            int number = Integer.parseInt(fields[0].trim());
+            if (number <= 0) {
+                throw new IllegalArgumentException("parking number must be positive");
+            }
+            ParkingSpot parkingSpot = new ParkingSpot(number, ParkingType.valueOf(fields[1].trim().toUpperCase()), true);
+            parkingSpot.setLevel(Integer.parseInt(fields[2].trim()));
+            if (fields.length > 3 && !fields[3].trim().isEmpty()) {
+                String attributes = fields[3].trim();
+                if (attributes.length() > MAX_ATTRIBUTES_LENGTH) {
+                    throw new IllegalArgumentException("attributes longer than " + MAX_ATTRIBUTES_LENGTH + " characters");
+                }
+                parkingSpot.setAttributes(attributes);
+            }
+            return parkingSpot;
+        } catch (IllegalArgumentException e) {
+            String invalidLine = "line " + lineNumber + ": " + e.getMessage();
+            logger.warn("Invalid spot definition, {}", invalidLine);
+            result.addInvalidLine(invalidLine);
+            return null;
+        }
+    }
+
+    private static int readProgress(Path progressFile) throws IOException {
+        if (!Files.exists(progressFile)) {
+            return 0;
+        }
+        return Integer.parseInt(new String(Files.readAllBytes(progressFile), StandardCharsets.UTF_8).trim());
+    }
+
+    private static void writeProgress(Path progressFile, int lineNumber) throws IOException {
+        Path tmp = progressFile.resolveSibling(progressFile.getFileName() + ".tmp");
+        Files.write(tmp, String.valueOf(lineNumber).getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp, progressFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,98 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.model.SpotReconciliationResult;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Repairs the drift between the spot availability and the open tickets left by a gate that
+ * stopped between claiming a spot and saving its ticket, or between closing a ticket and
+ * freeing its spot. Each range of parking numbers is fixed by two set-based updates joining
+ * the spots to their open ticket; the availability counters are reloaded when a spot changed.
+ */
+public class SpotReconciliationService {
+
+    private static final Logger logger = LogManager.getLogger("SpotReconciliationService");
+
+    public static final int DEFAULT_RANGE_SIZE = 10000;
+    //longer than an entry takes to save its ticket and than a prefetched spot is held
+    public static final int DEFAULT_GRACE_SECONDS = 5 * 60;
+    public static final long DEFAULT_PERIOD_MINUTES = 15;
+
+    private final ParkingSpotDAO parkingSpotDAO;
+    private final int rangeSize;
+    private final int graceSeconds;
+
+    private ScheduledExecutorService scheduler;
+
+    public SpotReconciliationService(ParkingSpotDAO parkingSpotDAO) {
+        this(parkingSpotDAO, DEFAULT_RANGE_SIZE, DEFAULT_GRACE_SECONDS);
+    }
+
+    public SpotReconciliationService(ParkingSpotDAO parkingSpotDAO, int rangeSize, int graceSeconds) {
+        this.parkingSpotDAO = parkingSpotDAO;
+        this.rangeSize = rangeSize;
+        this.graceSeconds = graceSeconds;
+    }
+
+    public synchronized void start(long periodMinutes) {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "spot-reconciliation");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::reconcile, periodMinutes, periodMinutes, TimeUnit.MINUTES);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    public SpotReconciliationResult reconcile() {
+        long start = System.nanoTime();
+        SpotReconciliationResult result = new SpotReconciliationResult();
+        int[] range = parkingSpotDAO.getParkingNumberRange();
+        if (range != null) {
+            for (long from = range[0]; from <= range[1]; from += rangeSize) {
+                int to = (int) Math.min(range[1], from + rangeSize - 1);
+                int[] fixed = parkingSpotDAO.reconcileParkingSpots((int) from, to, graceSeconds);
+                if (fixed == null) {
+                    result.addFailedRange();
+                } else {
+                    result.addSpots(fixed[0], fixed[1]);
+                }
+            }
+        }
+        result.setDoubleBookedSpots(parkingSpotDAO.countDoubleBookedSpots());
+        if (result.hasFixes() && parkingSpotDAO.spotAvailabilityCache.isLoaded()) {
+            parkingSpotDAO.loadAvailability();
+        }
+        result.setDurationMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+        Metrics.add("reconciliation.freed", result.getSpotsFreed());
+        Metrics.add("reconciliation.taken", result.getSpotsTaken());
+        Metrics.recordNanos("reconciliation", System.nanoTime() - start);
+        if (result.hasFixes() || result.getFailedRanges() > 0) {
+            logger.warn("Spot reconciliation freed {} spots without open ticket and took {} spots with an open ticket in {} ms ({} ranges failed)",
+                    result.getSpotsFreed(), result.getSpotsTaken(), result.getDurationMillis(), result.getFailedRanges());
+        } else {
+            logger.info("Spot reconciliation found no drift in {} ms", result.getDurationMillis());
+        }
+        if (result.getDoubleBookedSpots() > 0) {
+            logger.warn("{} spots have more than one open ticket", result.getDoubleBookedSpots());
+        }
+        return result;
+    }
+}
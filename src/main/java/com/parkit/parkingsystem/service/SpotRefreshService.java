@@ -0,0 +1,86 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.metrics.Metrics;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Makes the spots provisioned by another process, such as {@code --import-spots}, usable by
+ * the gates of this one. Spots are only ever added, so the number of spots of each type is the
+ * version of the parking table: when it differs from the cached totals, the availability
+ * counters and the spot registry are reloaded and the open ticket cache grows by the new spots.
+ */
+public class SpotRefreshService {
+
+    private static final Logger logger = LogManager.getLogger("SpotRefreshService");
+
+    public static final long DEFAULT_PERIOD_SECONDS = 60;
+
+    private final ParkingSpotDAO parkingSpotDAO;
+    private final TicketDAO ticketDAO;
+
+    //totals seen by the previous refresh, when the availability counters are not loaded
+    private int[] knownTotals;
+    private ScheduledExecutorService scheduler;
+
+    public SpotRefreshService(ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO) {
+        this.parkingSpotDAO = parkingSpotDAO;
+        this.ticketDAO = ticketDAO;
+    }
+
+    public synchronized void start(long periodSeconds) {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "spot-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::refresh, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Returns the number of spots added since the previous refresh, 0 if the parking table did
+     * not change or could not be read.
+     */
+    public synchronized int refresh() {
+        int[] totals = parkingSpotDAO.getParkingTotals();
+        if (totals == null) {
+            return 0;
+        }
+        boolean availabilityLoaded = parkingSpotDAO.spotAvailabilityCache.isLoaded();
+        int[] previousTotals = availabilityLoaded ? parkingSpotDAO.spotAvailabilityCache.getTotals() : knownTotals;
+        knownTotals = totals;
+        if (previousTotals == null || Arrays.equals(previousTotals, totals)) {
+            return 0;
+        }
+        int added = Arrays.stream(totals).sum() - Arrays.stream(previousTotals).sum();
+        if (availabilityLoaded) {
+            parkingSpotDAO.loadAvailability();
+        }
+        if (ticketDAO.spotRegistry.isLoaded()) {
+            ticketDAO.warmUpSpotRegistry();
+        }
+        if (added > 0) {
+            ticketDAO.openTicketCache.addCapacity(added);
+        }
+        Metrics.add("spots.refreshed", Math.max(0, added));
+        logger.info("Parking table changed, {} spots added, {} spots by type", added, Arrays.toString(totals));
+        return added;
+    }
+}
@@ -0,0 +1,98 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.dao.TicketArchiveDAO;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Clock;
+import java.util.Date;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background job keeping the ticket table small: tickets closed for longer than the
+ * retention window are moved to monthly history tables, a throttled batch at a time.
+ */
+public class TicketArchiveService {
+
+    private static final Logger logger = LogManager.getLogger("TicketArchiveService");
+
+    public static final int DEFAULT_RETENTION_DAYS = 90;
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    public static final long DEFAULT_BATCH_PAUSE_MILLIS = 200;
+    public static final long DEFAULT_PERIOD_MINUTES = 60;
+
+    private final TicketArchiveDAO ticketArchiveDAO;
+    private final int retentionDays;
+    private final int batchSize;
+    private final long batchPauseMillis;
+
+    private Clock clock = Clock.systemDefaultZone();
+    private ScheduledExecutorService scheduler;
+    private volatile boolean stopped;
+
+    public TicketArchiveService(TicketArchiveDAO ticketArchiveDAO) {
+        this(ticketArchiveDAO, DEFAULT_RETENTION_DAYS, DEFAULT_BATCH_SIZE, DEFAULT_BATCH_PAUSE_MILLIS);
+    }
+
+    public TicketArchiveService(TicketArchiveDAO ticketArchiveDAO, int retentionDays, int batchSize, long batchPauseMillis) {
+        this.ticketArchiveDAO = ticketArchiveDAO;
+        this.retentionDays = retentionDays;
+        this.batchSize = batchSize;
+        this.batchPauseMillis = batchPauseMillis;
+    }
+
+    /**
+     * Clock the retention window is counted back from.
+     */
+    public void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    public synchronized void start(long periodMinutes) {
+        if (scheduler != null) {
+            return;
+        }
+        stopped = false;
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ticket-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::archiveClosedTickets, periodMinutes, periodMinutes, TimeUnit.MINUTES);
+        logger.info("Ticket archiving scheduled every {} minutes, retention {} days", periodMinutes, retentionDays);
+    }
+
+    public synchronized void stop() {
+        stopped = true;
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    public int archiveClosedTickets() {
+        Date cutoff = new Date(clock.millis() - TimeUnit.DAYS.toMillis(retentionDays));
+        int archived = 0;
+        try {
+            int nbTickets;
+            do {
+                nbTickets = ticketArchiveDAO.archiveBatch(cutoff, batchSize);
+                if (nbTickets > 0) {
+                    archived += nbTickets;
+                    //leave room to the gates between two batches
+                    Thread.sleep(batchPauseMillis);
+                }
+            } while (nbTickets == batchSize && !stopped);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.error("Unable to archive closed tickets", e);
+        }
+        if (archived > 0) {
+            logger.info("Archived {} tickets closed before {}", archived, cutoff);
+        }
+        return archived;
+    }
+}
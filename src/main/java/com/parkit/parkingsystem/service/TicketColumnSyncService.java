@@ -0,0 +1,107 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.analytics.TicketColumnStore;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.model.Ticket;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Feeds the analytics ticket store from the database: the tickets created after the last
+ * stored ID are appended by chunks, then the tickets closed since the previous sync are
+ * updated. The gate database only serves these incremental reads.
+ */
+public class TicketColumnSyncService {
+
+    private static final Logger logger = LogManager.getLogger("TicketColumnSyncService");
+
+    public static final long DEFAULT_PERIOD_SECONDS = 5 * 60;
+    public static final int DEFAULT_CHUNK_SIZE = 10000;
+
+    //tickets closed shortly before the previous sync are read again
+    private static final long CATCH_UP_MARGIN_MILLIS = 60 * 1000;
+
+    private final TicketDAO ticketDAO;
+    private final TicketColumnStore ticketColumnStore;
+    private final int chunkSize;
+
+    private ScheduledExecutorService scheduler;
+
+    public TicketColumnSyncService(TicketDAO ticketDAO, TicketColumnStore ticketColumnStore) {
+        this(ticketDAO, ticketColumnStore, DEFAULT_CHUNK_SIZE);
+    }
+
+    public TicketColumnSyncService(TicketDAO ticketDAO, TicketColumnStore ticketColumnStore, int chunkSize) {
+        this.ticketDAO = ticketDAO;
+        this.ticketColumnStore = ticketColumnStore;
+        this.chunkSize = chunkSize;
+    }
+
+    public synchronized void start(long periodSeconds) {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ticket-column-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::sync, 0, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Returns the number of tickets appended or updated, -1 when the sync failed; the chunks
+     * committed before the failure are kept.
+     */
+    public synchronized int sync() {
+        long start = System.nanoTime();
+        //the watermark is read first: tickets closed during the sync are read again next time
+        long syncedAt = System.currentTimeMillis();
+        long closedSince = ticketColumnStore.getClosedSyncMillis();
+        int lastStoredId = ticketColumnStore.getMaxTicketId();
+        int synced = 0;
+        try {
+            List<Ticket> tickets;
+            do {
+                tickets = ticketDAO.getTicketsAfter(ticketColumnStore.getMaxTicketId(), chunkSize);
+                if (tickets == null) {
+                    return -1;
+                }
+                synced += ticketColumnStore.append(tickets);
+                ticketColumnStore.commit(closedSince);
+            } while (tickets.size() == chunkSize);
+
+            //tickets appended by this sync were read with their current out-time
+            if (closedSince > 0 && lastStoredId > 0) {
+                List<Ticket> closedTickets = ticketDAO.getTicketsClosedSince(lastStoredId, new Date(closedSince - CATCH_UP_MARGIN_MILLIS));
+                if (closedTickets == null) {
+                    return -1;
+                }
+                synced += ticketColumnStore.update(closedTickets);
+            }
+            ticketColumnStore.commit(syncedAt);
+            Metrics.add("analytics.sync.tickets", synced);
+            Metrics.recordNanos("analytics.sync", System.nanoTime() - start);
+            logger.info("Synced {} tickets to the analytics store in {} ms", synced,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return synced;
+        } catch (Exception e) {
+            logger.error("Unable to sync the analytics ticket store", e);
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.AsyncParkingDAO;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.util.PlateKey;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads the context of a vehicle as soon as a camera reads its plate, before it reaches the
+ * barrier: its latest ticket, its visit count and, when it is not parked yet, a spot held for
+ * it in the database. The entry or exit that follows is then served from memory.
+ * Contexts expire after a few seconds; the spot of an expired context is released.
+ */
+public class VehiclePrefetcher {
+
+    private static final Logger logger = LogManager.getLogger("VehiclePrefetcher");
+
+    public static final long DEFAULT_TTL_MILLIS = 30 * 1000;
+    public static final int DEFAULT_MAX_CONTEXTS = 1000;
+
+    private final AsyncParkingDAO asyncParkingDAO;
+    private final ParkingSpotDAO parkingSpotDAO;
+    private final long ttlMillis;
+    private final int maxContexts;
+    private final ConcurrentHashMap<String, VehicleContext> contexts = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService scheduler;
+
+    public VehiclePrefetcher(AsyncParkingDAO asyncParkingDAO, ParkingSpotDAO parkingSpotDAO) {
+        this(asyncParkingDAO, parkingSpotDAO, DEFAULT_TTL_MILLIS, DEFAULT_MAX_CONTEXTS);
+    }
+
+    public VehiclePrefetcher(AsyncParkingDAO asyncParkingDAO, ParkingSpotDAO parkingSpotDAO, long ttlMillis, int maxContexts) {
+        this.asyncParkingDAO = asyncParkingDAO;
+        this.parkingSpotDAO = parkingSpotDAO;
+        this.ttlMillis = ttlMillis;
+        this.maxContexts = maxContexts;
+    }
+
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "vehicle-prefetch-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(100, ttlMillis / 10);
+        scheduler.scheduleWithFixedDelay(this::expireContexts, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Releases every held spot.
+     */
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        for (String vehicleRegNumber : contexts.keySet()) {
+            VehicleContext context = contexts.remove(vehicleRegNumber);
+            if (context != null) {
+                release(vehicleRegNumber, context);
+            }
+        }
+    }
+
+    /**
+     * Starts loading the context of the vehicle whose plate was read. The parking type, when
+     * known, is the one of the spot to hold for an entering vehicle.
+     */
+    public void plateSighted(String plate, ParkingType parkingType) {
+        String vehicleRegNumber = PlateKey.normalize(plate);
+        if (vehicleRegNumber == null || contexts.containsKey(vehicleRegNumber)) {
+            return;
+        }
+        if (contexts.size() >= maxContexts) {
+            Metrics.increment("prefetch.rejected");
+            return;
+        }
+        VehicleContext context = new VehicleContext(System.currentTimeMillis() + ttlMillis);
+        if (contexts.putIfAbsent(vehicleRegNumber, context) != null) {
+            return;
+        }
+        forward(asyncParkingDAO.getNumberTicket(vehicleRegNumber), context.nbTickets);
+        CompletableFuture<Ticket> ticket = asyncParkingDAO.getTicket(vehicleRegNumber);
+        forward(ticket, context.ticket);
+        forward(ticket.thenCompose(latestTicket -> {
+            //a parked vehicle is leaving, there is no spot to hold
+            if (parkingType == null || (latestTicket != null && latestTicket.getOutTime() == null)) {
+                return CompletableFuture.completedFuture(null);
+            }
+            return holdSpot(vehicleRegNumber, parkingType);
+        }), context.heldSpot);
+        Metrics.increment("prefetch.sighted");
+    }
+
+    /**
+     * Returns the loaded context of the vehicle and forgets it, null if there is none.
+     */
+    public VehicleContext take(String plate) {
+        String vehicleRegNumber = PlateKey.normalize(plate);
+        VehicleContext context = (vehicleRegNumber == null) ? null : contexts.remove(vehicleRegNumber);
+        if (context == null) {
+            Metrics.increment("prefetch.miss");
+            return null;
+        }
+        if (context.expiresAt < System.currentTimeMillis()) {
+            release(vehicleRegNumber, context);
+            Metrics.increment("prefetch.miss");
+            return null;
+        }
+        Metrics.increment("prefetch.hit");
+        return context;
+    }
+
+    public int size() {
+        return contexts.size();
+    }
+
+    void expireContexts() {
+        long now = System.currentTimeMillis();
+        contexts.forEach((vehicleRegNumber, context) -> {
+            if (context.expiresAt < now && contexts.remove(vehicleRegNumber, context)) {
+                Metrics.increment("prefetch.expired");
+                release(vehicleRegNumber, context);
+            }
+        });
+    }
+
+    private CompletableFuture<ParkingSpot> holdSpot(String vehicleRegNumber, ParkingType parkingType) {
+        return asyncParkingDAO.getNextAvailableSlot(parkingType).thenCompose(parkingNumber -> {
+            if (parkingNumber <= 0) {
+                return CompletableFuture.completedFuture(null);
+            }
+            ParkingSpot parkingSpot = new ParkingSpot(parkingNumber, parkingType, true);
+            //no retry on conflict: the entry then looks for a spot itself
+            return asyncParkingDAO.claimParking(parkingSpot, vehicleRegNumber)
+                    .thenApply(claimed -> claimed ? parkingSpot : null);
+        });
+    }
+
+    private static <T> void forward(CompletableFuture<T> source, CompletableFuture<T> target) {
+        source.whenComplete((value, throwable) -> {
+            if (throwable != null) {
+                target.completeExceptionally(throwable);
+            } else {
+                target.complete(value);
+            }
+        });
+    }
+
+    private void release(String vehicleRegNumber, VehicleContext context) {
+        context.heldSpot.thenAccept(parkingSpot -> {
+            if (parkingSpot != null && parkingSpotDAO.releaseParking(parkingSpot, vehicleRegNumber)) {
+                logger.info("Released spot {} held for vehicle {}", parkingSpot.getId(), vehicleRegNumber);
+            }
+        });
+    }
+
+    /**
+     * What is known of a vehicle before it reaches the barrier.
+     */
+    public static class VehicleContext {
+        private final long expiresAt;
+        //completed by the lookups started once the context is published
+        private final CompletableFuture<Ticket> ticket = new CompletableFuture<>();
+        private final CompletableFuture<Integer> nbTickets = new CompletableFuture<>();
+        private final CompletableFuture<ParkingSpot> heldSpot = new CompletableFuture<>();
+
+        private VehicleContext(long expiresAt) {
+            this.expiresAt = expiresAt;
+        }
+
+        public CompletableFuture<Ticket> getTicket() {
+            return ticket;
+        }
+
+        public CompletableFuture<Integer> getNbTickets() {
+            return nbTickets;
+        }
+
+        public CompletableFuture<ParkingSpot> getHeldSpot() {
+            return heldSpot;
+        }
+    }
+}
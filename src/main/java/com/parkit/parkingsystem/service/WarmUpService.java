@@ -0,0 +1,112 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pays the cold start costs (driver loading, first connection, cache loading and fare
+ * calculation JIT) before the first vehicle shows up at the gate.
+ * Statements are not prepared ahead: the driver prepares them on the client side, on
+ * connections that are not kept, so there is nothing to warm on the database.
+ */
+public class WarmUpService {
+
+    private static final Logger logger = LogManager.getLogger("WarmUpService");
+
+    private static final int FARE_ITERATIONS = 20000;
+    private static final int CONNECTION_VALIDATION_TIMEOUT_SECONDS = 5;
+
+    private final ParkingSpotDAO parkingSpotDAO;
+    private final TicketDAO ticketDAO;
+    private final SnapshotService snapshotService;
+    private final FareCalculatorService fareCalculatorService = new FareCalculatorService();
+
+    public WarmUpService(ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO) {
+        this(parkingSpotDAO, ticketDAO, null);
+    }
+
+    public WarmUpService(ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO, SnapshotService snapshotService) {
+        this.parkingSpotDAO = parkingSpotDAO;
+        this.ticketDAO = ticketDAO;
+        this.snapshotService = snapshotService;
+    }
+
+    public long warmUp() {
+        long start = System.nanoTime();
+        boolean dataBaseReady = step("startup.warmup.database", this::connectDataBase);
+        if (dataBaseReady) {
+            step("startup.warmup.caches", this::loadCaches);
+        }
+        step("startup.warmup.fare", this::exerciseFareCalculator);
+        long elapsed = System.nanoTime() - start;
+        Metrics.recordNanos("startup.warmup", elapsed);
+        logger.info("Warm-up done in {} ms", TimeUnit.NANOSECONDS.toMillis(elapsed));
+        return elapsed;
+    }
+
+    private boolean step(String name, WarmUpStep warmUpStep) {
+        long start = System.nanoTime();
+        boolean done = false;
+        try {
+            done = warmUpStep.run();
+        } catch (Exception e) {
+            logger.error("Warm-up step " + name + " failed", e);
+        }
+        Metrics.recordNanos(name, System.nanoTime() - start);
+        return done;
+    }
+
+    private boolean connectDataBase() throws Exception {
+        DataBaseConfig dataBaseConfig = parkingSpotDAO.dataBaseConfig;
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            if (!con.isValid(CONNECTION_VALIDATION_TIMEOUT_SECONDS)) {
+                logger.error("Database connection is not valid");
+                return false;
+            }
+            return true;
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    private boolean loadCaches() {
+        ticketDAO.warmUpSpotRegistry();
+        if (snapshotService != null && snapshotService.restore()) {
+            return true;
+        }
+        int capacity = parkingSpotDAO.getParkingCapacity();
+        ticketDAO.warmUpOpenTicketCache(capacity);
+        return parkingSpotDAO.loadAvailability();
+    }
+
+    private boolean exerciseFareCalculator() {
+        long now = System.currentTimeMillis();
+        ParkingType[] parkingTypes = ParkingType.values();
+        Ticket ticket = new Ticket();
+        for (int i = 0; i < FARE_ITERATIONS; i++) {
+            ticket.setParkingSpot(new ParkingSpot(1, parkingTypes[i % parkingTypes.length], false));
+            ticket.setInTime(new Date(now - TimeUnit.MINUTES.toMillis(i % 180)));
+            ticket.setOutTime(new Date(now));
+            ticket.setDiscount((i & 1) == 0);
+            fareCalculatorService.calculateFare(ticket);
+        }
+        return true;
+    }
+
+    private interface WarmUpStep {
+        boolean run() throws Exception;
+    }
+}
@@ -27,7 +27,7 @@ public class InputReaderUtil {
             if(vehicleRegNumber == null || vehicleRegNumber.trim().length()==0) {
                 throw new IllegalArgumentException("Invalid input provided");
             }
-            return vehicleRegNumber;
+            return PlateKey.normalize(vehicleRegNumber);
         }catch(Exception e){
             logger.error("Error while reading user input from Shell", e);
             System.out.println("Error reading input. Please enter a valid string for vehicle registration number");
@@ -0,0 +1,159 @@
+package com.parkit.parkingsystem.util;
+
+/**
+ * Map of long keys to int values without boxing: open addressing with linear probing over two
+ * parallel arrays, kept at most half full; a removal shifts the following entries back instead
+ * of leaving a tombstone. Key 0 is reserved for free slots.
+ * Not thread safe.
+ */
+public class LongIntHashMap {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    public LongIntHashMap() {
+        this(MIN_CAPACITY / 2);
+    }
+
+    public LongIntHashMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    public int get(long key, int missingValue) {
+        int slot = find(key);
+        return (keys[slot] == 0) ? missingValue : values[slot];
+    }
+
+    public boolean containsKey(long key) {
+        return key != 0 && keys[find(key)] != 0;
+    }
+
+    /**
+     * @throws IllegalArgumentException for key 0
+     */
+    public void put(long key, int value) {
+        if (key == 0) {
+            throw new IllegalArgumentException("Key 0 is reserved");
+        }
+        int slot = find(key);
+        if (keys[slot] == 0) {
+            if ((size + 1) * 2 > keys.length) {
+                resize(keys.length * 2);
+                slot = find(key);
+            }
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = value;
+    }
+
+    /**
+     * Returns whether the key was there.
+     */
+    public boolean remove(long key) {
+        int slot = find(key);
+        if (keys[slot] == 0) {
+            return false;
+        }
+        removeAt(slot);
+        return true;
+    }
+
+    /**
+     * Returns the key found first from the slot of the given one, an entry picked about at
+     * random for a well spread key; 0 if the map is empty.
+     */
+    public long anyKey(long near) {
+        if (size == 0) {
+            return 0;
+        }
+        int slot = (int) PlateKey.hash(near) & mask;
+        while (keys[slot] == 0) {
+            slot = (slot + 1) & mask;
+        }
+        return keys[slot];
+    }
+
+    public void forEach(LongIntConsumer action) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != 0) {
+                action.accept(keys[slot], values[slot]);
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        allocate(MIN_CAPACITY);
+        size = 0;
+    }
+
+    //slot of the key, or the free slot where it would go
+    private int find(long key) {
+        int slot = (int) PlateKey.hash(key) & mask;
+        while (keys[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    //moves back the following entries that would not be found anymore past the freed slot
+    private void removeAt(int slot) {
+        int gap = slot;
+        int i = slot;
+        while (true) {
+            i = (i + 1) & mask;
+            long key = keys[i];
+            if (key == 0) {
+                break;
+            }
+            int home = (int) PlateKey.hash(key) & mask;
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                keys[gap] = key;
+                values[gap] = values[i];
+                gap = i;
+            }
+        }
+        keys[gap] = 0;
+        values[gap] = 0;
+        size--;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    static int capacityFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2L) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    public interface LongIntConsumer {
+        void accept(long key, int value);
+    }
+}
@@ -0,0 +1,152 @@
+package com.parkit.parkingsystem.util;
+
+import java.util.function.Consumer;
+
+/**
+ * Map of long keys to objects without boxing the keys: open addressing with linear probing,
+ * kept at most half full; a removal shifts the following entries back instead of leaving a
+ * tombstone. Key 0 is reserved for free slots.
+ * Not thread safe.
+ */
+public class LongObjectHashMap<V> {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+
+    public LongObjectHashMap() {
+        this(MIN_CAPACITY / 2);
+    }
+
+    public LongObjectHashMap(int expectedSize) {
+        allocate(LongIntHashMap.capacityFor(expectedSize));
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        return (V) values[find(key)];
+    }
+
+    public boolean containsKey(long key) {
+        return key != 0 && keys[find(key)] != 0;
+    }
+
+    /**
+     * Returns the previous value of the key, null if there was none.
+     * @throws IllegalArgumentException for key 0 or a null value
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (key == 0 || value == null) {
+            throw new IllegalArgumentException("Key 0 and null values are reserved");
+        }
+        int slot = find(key);
+        if (keys[slot] == 0) {
+            if ((size + 1) * 2 > keys.length) {
+                resize(keys.length * 2);
+                slot = find(key);
+            }
+            keys[slot] = key;
+            size++;
+        }
+        V previous = (V) values[slot];
+        values[slot] = value;
+        return previous;
+    }
+
+    /**
+     * Returns the removed value, null if there was none.
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int slot = find(key);
+        if (keys[slot] == 0) {
+            return null;
+        }
+        V removed = (V) values[slot];
+        removeAt(slot);
+        return removed;
+    }
+
+    /**
+     * Removes the entry only if the key is mapped to this very value.
+     */
+    public boolean remove(long key, V value) {
+        int slot = find(key);
+        if (keys[slot] == 0 || values[slot] != value) {
+            return false;
+        }
+        removeAt(slot);
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEachValue(Consumer<V> action) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != 0) {
+                action.accept((V) values[slot]);
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        allocate(MIN_CAPACITY);
+        size = 0;
+    }
+
+    private int find(long key) {
+        int slot = (int) PlateKey.hash(key) & mask;
+        while (keys[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    //moves back the following entries that would not be found anymore past the freed slot
+    private void removeAt(int slot) {
+        int gap = slot;
+        int i = slot;
+        while (true) {
+            i = (i + 1) & mask;
+            long key = keys[i];
+            if (key == 0) {
+                break;
+            }
+            int home = (int) PlateKey.hash(key) & mask;
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                keys[gap] = key;
+                values[gap] = values[i];
+                gap = i;
+            }
+        }
+        keys[gap] = 0;
+        values[gap] = null;
+        size--;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+    }
+}
@@ -0,0 +1,83 @@
+package com.parkit.parkingsystem.util;
+
+import java.util.Locale;
+
+/**
+ * Packs a vehicle registration number into a long: up to 10 characters of 6 bits each, for
+ * the digits, the upper case letters, '-' and ' '. The key of a packable plate is never
+ * {@link #NO_KEY} and two plates have the same key only if they are equal.
+ */
+public final class PlateKey {
+
+    public static final long NO_KEY = 0;
+    public static final int MAX_LENGTH = 10;
+
+    private static final int BITS = 6;
+    private static final int MASK = (1 << BITS) - 1;
+    //code 0 is the padding, so that plates of different lengths never share a key
+    private static final String ALPHABET = "\u00000123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ- ";
+
+    private PlateKey() {
+    }
+
+    /**
+     * Returns the plate as stored and looked up: without surrounding blanks and in upper case.
+     */
+    public static String normalize(String vehicleRegNumber) {
+        return (vehicleRegNumber == null) ? null : vehicleRegNumber.trim().toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns {@link #NO_KEY} for a plate that is null, empty, longer than 10 characters or
+     * holding other characters, lower case letters included.
+     */
+    public static long pack(String vehicleRegNumber) {
+        if (vehicleRegNumber == null || vehicleRegNumber.isEmpty() || vehicleRegNumber.length() > MAX_LENGTH) {
+            return NO_KEY;
+        }
+        long key = 0;
+        for (int i = 0; i < vehicleRegNumber.length(); i++) {
+            int code = code(vehicleRegNumber.charAt(i));
+            if (code == 0) {
+                return NO_KEY;
+            }
+            key = (key << BITS) | code;
+        }
+        return key;
+    }
+
+    public static String unpack(long key) {
+        char[] chars = new char[MAX_LENGTH];
+        int start = MAX_LENGTH;
+        for (long rest = key; rest != 0; rest >>>= BITS) {
+            chars[--start] = ALPHABET.charAt((int) (rest & MASK));
+        }
+        return new String(chars, start, MAX_LENGTH - start);
+    }
+
+    /**
+     * Spreads the bits of a key, the characters of a plate being packed in its low bits.
+     */
+    public static long hash(long key) {
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static int code(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0' + 1;
+        }
+        if (c >= 'A' && c <= 'Z') {
+            return c - 'A' + 11;
+        }
+        if (c == '-') {
+            return 37;
+        }
+        return (c == ' ') ? 38 : 0;
+    }
+}
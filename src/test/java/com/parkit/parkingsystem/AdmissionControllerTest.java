@@ -0,0 +1,56 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.GateEvent;
+import com.parkit.parkingsystem.service.AdmissionController;
+import com.parkit.parkingsystem.service.AdmissionRejectedException;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdmissionControllerTest {
+
+    @Test
+    public void givenLimitReached_whenExecute_thenRejectedWithRetryHint() throws InterruptedException {
+        // GIVEN
+        AdmissionController admissionController = new AdmissionController(1, 1, 0, 100, 250);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        Thread thread = new Thread(() -> admissionController.execute(GateEvent.ENTRY, () -> {
+            running.countDown();
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }));
+        thread.start();
+        running.await();
+
+        // WHEN
+        AdmissionRejectedException rejection = assertThrows(AdmissionRejectedException.class,
+                () -> admissionController.execute(GateEvent.EXIT, () -> "exit"));
+
+        // THEN
+        assertTrue(rejection.getRetryAfterMillis() > 0);
+        done.countDown();
+        thread.join();
+        assertEquals(0, admissionController.getInFlight());
+    }
+
+    @Test
+    public void givenFastOperations_whenExecute_thenLimitIncreases() {
+        // GIVEN
+        AdmissionController admissionController = new AdmissionController(2, 10, 10, 100, 1000);
+
+        // WHEN
+        for (int i = 0; i < 50; i++) {
+            assertEquals("entry", admissionController.execute(GateEvent.ENTRY, () -> "entry"));
+        }
+
+        // THEN
+        assertTrue(admissionController.getLimit() > 2);
+    }
+}
@@ -0,0 +1,55 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.AsyncParkingDAO;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+public class AsyncParkingDAOTest {
+
+    //both queries only complete if they run at the same time
+    private final CountDownLatch bothRunning = new CountDownLatch(2);
+
+    @Mock
+    private TicketDAO ticketDAO;
+    @Mock
+    private ParkingSpotDAO parkingSpotDAO;
+
+    private boolean awaitOtherQuery() {
+        bothRunning.countDown();
+        try {
+            return bothRunning.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @Test
+    public void givenIndependentQueries_whenRunAsync_thenTheyRunConcurrently() {
+        // GIVEN
+        when(ticketDAO.getNumberTicket("ABCDEF")).thenAnswer(invocation -> awaitOtherQuery() ? 2 : -1);
+        when(parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR)).thenAnswer(invocation -> awaitOtherQuery() ? 1 : -1);
+        AsyncParkingDAO asyncParkingDAO = new AsyncParkingDAO(ticketDAO, parkingSpotDAO, AsyncParkingDAO.newExecutor(2, 2));
+
+        // WHEN
+        CompletableFuture<Integer> nbTickets = asyncParkingDAO.getNumberTicket("ABCDEF");
+        CompletableFuture<Integer> parkingNumber = asyncParkingDAO.getNextAvailableSlot(ParkingType.CAR);
+
+        // THEN
+        assertEquals(2, nbTickets.join().intValue());
+        assertEquals(1, parkingNumber.join().intValue());
+    }
+}
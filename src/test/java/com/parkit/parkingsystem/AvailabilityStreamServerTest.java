@@ -0,0 +1,86 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.cache.SpotAvailabilityCache;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.service.AvailabilityStreamServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AvailabilityStreamServerTest {
+
+    private SpotAvailabilityCache spotAvailabilityCache;
+    private AvailabilityStreamServer availabilityStreamServer;
+
+    @BeforeEach
+    public void setUpPerTest() throws IOException {
+        spotAvailabilityCache = new SpotAvailabilityCache();
+        spotAvailabilityCache.load(new int[]{3, 2}, new int[]{3, 2});
+        availabilityStreamServer = new AvailabilityStreamServer(spotAvailabilityCache, 0, 200, 10);
+        availabilityStreamServer.start();
+    }
+
+    @AfterEach
+    public void tearDownPerTest() {
+        availabilityStreamServer.stop();
+    }
+
+    private static String nextData(BufferedReader reader) throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.startsWith("data: ")) {
+                return line.substring("data: ".length());
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void givenSubscriber_whenSpotsClaimedQuickly_thenOneCoalescedUpdate() throws IOException {
+        try (Socket socket = new Socket("localhost", availabilityStreamServer.getPort())) {
+            // GIVEN
+            socket.setSoTimeout(5000);
+            OutputStream out = socket.getOutputStream();
+            out.write("GET /availability HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            assertEquals("HTTP/1.1 200 OK", reader.readLine());
+            assertEquals("{\"CAR\":{\"free\":3,\"total\":3},\"BIKE\":{\"free\":2,\"total\":2}}", nextData(reader));
+
+            // WHEN
+            spotAvailabilityCache.claim(ParkingType.CAR);
+            spotAvailabilityCache.claim(ParkingType.CAR);
+            spotAvailabilityCache.claim(ParkingType.CAR);
+
+            // THEN
+            int nbUpdates = 0;
+            String data;
+            do {
+                data = nextData(reader);
+                nbUpdates++;
+            } while (!data.contains("\"free\":0"));
+            assertEquals("{\"CAR\":{\"free\":0,\"total\":3}}", data);
+            //a flush could fall in between the claims, but never one update per claim
+            assertTrue(nbUpdates < 3);
+        }
+    }
+
+    @Test
+    public void givenNonGetRequest_whenConnecting_thenBadRequest() throws IOException {
+        try (Socket socket = new Socket("localhost", availabilityStreamServer.getPort())) {
+            socket.setSoTimeout(5000);
+            socket.getOutputStream().write("POST / HTTP/1.1\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            assertEquals("HTTP/1.1 400 Bad Request", reader.readLine());
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.ExitBatcher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.Mockito.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ExitBatcherTest {
+
+    private final Map<String, Ticket> openTickets = new HashMap<>();
+    @Mock
+    private TicketDAO ticketDAO;
+    @Mock
+    private ParkingSpotDAO parkingSpotDAO;
+    private ExitBatcher exitBatcher;
+
+    @BeforeEach
+    public void setUpPerTest() {
+        openTickets.clear();
+        addOpenTicket(1, "AAA", 1, ParkingType.CAR);
+        addOpenTicket(2, "BBB", 2, ParkingType.CAR);
+        addOpenTicket(3, "CCC", 3, ParkingType.BIKE);
+        when(ticketDAO.getTickets(anyCollection())).thenAnswer(invocation -> {
+            Collection<String> vehicleRegNumbers = invocation.getArgument(0);
+            Map<String, Ticket> tickets = new HashMap<>();
+            for (String vehicleRegNumber : vehicleRegNumbers) {
+                if (openTickets.containsKey(vehicleRegNumber)) {
+                    tickets.put(vehicleRegNumber, openTickets.get(vehicleRegNumber));
+                }
+            }
+            return tickets;
+        });
+        when(ticketDAO.getNumberTickets(anyList())).thenAnswer(invocation -> {
+            int[] counts = new int[invocation.<List<String>>getArgument(0).size()];
+            Arrays.fill(counts, 1);
+            return counts;
+        });
+        when(ticketDAO.closeTickets(anyList())).thenAnswer(invocation -> {
+            int[] released = new int[invocation.<List<Ticket>>getArgument(0).size()];
+            Arrays.fill(released, 1);
+            return released;
+        });
+        exitBatcher = new ExitBatcher(ticketDAO, parkingSpotDAO, 50, ExitBatcher.DEFAULT_MAX_BATCH);
+    }
+
+    @AfterEach
+    public void tearDownPerTest() {
+        exitBatcher.stop();
+    }
+
+    private void addOpenTicket(int id, String vehicleRegNumber, int parkingNumber, ParkingType parkingType) {
+        Ticket ticket = new Ticket();
+        ticket.setId(id);
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setParkingSpot(new ParkingSpot(parkingNumber, parkingType, false));
+        ticket.setInTime(new Date(System.currentTimeMillis() - 60 * 60 * 1000));
+        ticket.setRateMultiplier(1.0);
+        openTickets.put(vehicleRegNumber, ticket);
+    }
+
+    @Test
+    public void givenExitsWithinWindow_whenSubmit_thenClosedInOneGroup() {
+        // GIVEN
+        exitBatcher.start();
+
+        // WHEN
+        CompletableFuture<Ticket> first = exitBatcher.submit("AAA");
+        CompletableFuture<Ticket> second = exitBatcher.submit("BBB");
+        CompletableFuture<Ticket> third = exitBatcher.submit("CCC");
+
+        // THEN
+        assertEquals("AAA", first.join().getVehicleRegNumber());
+        assertEquals("BBB", second.join().getVehicleRegNumber());
+        assertEquals("CCC", third.join().getVehicleRegNumber());
+        verify(ticketDAO, times(1)).closeTickets(argThat(tickets -> tickets.size() == 3));
+        assertNotNull(first.join().getOutTime());
+        assertTrue(first.join().isDiscount());
+        assertTrue(first.join().getPrice() > 0);
+        assertTrue(first.join().getParkingSpot().isAvailable());
+    }
+
+    @Test
+    public void givenUnknownAndRepeatedPlates_whenSubmit_thenNoTicketForThem() {
+        // GIVEN
+        exitBatcher.start();
+
+        // WHEN
+        CompletableFuture<Ticket> unknown = exitBatcher.submit("ZZZ");
+        CompletableFuture<Ticket> first = exitBatcher.submit("AAA");
+        CompletableFuture<Ticket> repeated = exitBatcher.submit("AAA");
+
+        // THEN
+        assertNull(unknown.join());
+        assertNotNull(first.join());
+        assertNull(repeated.join());
+        verify(ticketDAO, times(1)).closeTickets(argThat(tickets -> tickets.size() == 1));
+    }
+
+    @Test
+    public void givenBatcherNotStarted_whenExit_thenClosedRightAway() {
+        // WHEN
+        Ticket ticket = exitBatcher.exit("BBB");
+
+        // THEN
+        assertNotNull(ticket);
+        verify(ticketDAO, times(1)).closeTickets(argThat(tickets -> tickets.size() == 1));
+    }
+
+    @Test
+    public void givenPlateTypedInLowerCase_whenSubmit_thenTicketOfThePlateClosed() {
+        // WHEN
+        Ticket ticket = exitBatcher.exit(" aaa ");
+
+        // THEN
+        assertNotNull(ticket);
+        assertEquals("AAA", ticket.getVehicleRegNumber());
+    }
+}
@@ -184,5 +184,29 @@ public class FareCalculatorServiceTest {
         assertEquals( Math.round(0.75 * Fare.CAR_RATE_PER_HOUR * 0.95*100.0)/100.0, ticket.getPrice() );
     }
 
+    @Test
+    public void calculateFareCarWithSurgeRate() {
+        Date inTime = new Date();
+        inTime.setTime( System.currentTimeMillis() - (  60 * 60 * 1000) );
+        Date outTime = new Date();
+        ParkingSpot parkingSpot = new ParkingSpot(1, ParkingType.CAR,false);
+
+        ticket.setInTime(inTime);
+        ticket.setOutTime(outTime);
+        ticket.setParkingSpot(parkingSpot);
+        ticket.setRateMultiplier(1.5);
 
+        fareCalculatorService.calculateFare(ticket);
+        assertEquals( 1.5 * Fare.CAR_RATE_PER_HOUR, ticket.getPrice() );
+    }
+
+    @Test
+    public void getRateMultiplierByOccupancy() {
+        assertEquals( 1.0, fareCalculatorService.getRateMultiplier(0) );
+        assertEquals( 1.0, fareCalculatorService.getRateMultiplier(Fare.SURGE_OCCUPANCY_PERCENT - 1) );
+        assertEquals( Fare.SURGE_RATE_MULTIPLIER, fareCalculatorService.getRateMultiplier(Fare.SURGE_OCCUPANCY_PERCENT) );
+        assertEquals( Fare.SURGE_RATE_MULTIPLIER, fareCalculatorService.getRateMultiplier(Fare.PEAK_SURGE_OCCUPANCY_PERCENT - 1) );
+        assertEquals( Fare.PEAK_SURGE_RATE_MULTIPLIER, fareCalculatorService.getRateMultiplier(Fare.PEAK_SURGE_OCCUPANCY_PERCENT) );
+        assertEquals( Fare.PEAK_SURGE_RATE_MULTIPLIER, fareCalculatorService.getRateMultiplier(100) );
+    }
 }
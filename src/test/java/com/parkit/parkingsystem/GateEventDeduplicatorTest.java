@@ -0,0 +1,74 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.GateEvent;
+import com.parkit.parkingsystem.service.GateEventDeduplicator;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GateEventDeduplicatorTest {
+
+    private final AtomicInteger nbRuns = new AtomicInteger();
+
+    private String run() {
+        return "result" + nbRuns.incrementAndGet();
+    }
+
+    @Test
+    public void givenSameEventTwiceInWindow_whenDeduplicate_thenOriginalResultIsReturned() {
+        // GIVEN
+        GateEventDeduplicator gateEventDeduplicator = new GateEventDeduplicator(60000, 100);
+
+        // WHEN
+        String first = gateEventDeduplicator.deduplicate(GateEvent.ENTRY, "ABCDEF", this::run);
+        String second = gateEventDeduplicator.deduplicate(GateEvent.ENTRY, "ABCDEF", this::run);
+
+        // THEN
+        assertEquals("result1", first);
+        assertEquals("result1", second);
+        assertEquals(1, nbRuns.get());
+    }
+
+    @Test
+    public void givenFailedEvent_whenDeduplicate_thenEventIsRunAgain() {
+        // GIVEN
+        GateEventDeduplicator gateEventDeduplicator = new GateEventDeduplicator(60000, 100);
+        gateEventDeduplicator.deduplicate(GateEvent.EXIT, "ABCDEF", () -> null);
+
+        // WHEN
+        String result = gateEventDeduplicator.deduplicate(GateEvent.EXIT, "ABCDEF", this::run);
+
+        // THEN
+        assertEquals("result1", result);
+    }
+
+    @Test
+    public void givenExitAfterEntry_whenEntryAgain_thenEntryIsRunAgain() {
+        // GIVEN
+        GateEventDeduplicator gateEventDeduplicator = new GateEventDeduplicator(60000, 100);
+        gateEventDeduplicator.deduplicate(GateEvent.ENTRY, "ABCDEF", this::run);
+        gateEventDeduplicator.deduplicate(GateEvent.EXIT, "ABCDEF", this::run);
+
+        // WHEN
+        String result = gateEventDeduplicator.deduplicate(GateEvent.ENTRY, "ABCDEF", this::run);
+
+        // THEN
+        assertEquals("result3", result);
+    }
+
+    @Test
+    public void givenWindowElapsed_whenDeduplicate_thenEventIsRunAgain() throws InterruptedException {
+        // GIVEN
+        GateEventDeduplicator gateEventDeduplicator = new GateEventDeduplicator(20, 100);
+        gateEventDeduplicator.deduplicate(GateEvent.ENTRY, "ABCDEF", this::run);
+        Thread.sleep(50);
+
+        // WHEN
+        String result = gateEventDeduplicator.deduplicate(GateEvent.ENTRY, "ABCDEF", this::run);
+
+        // THEN
+        assertEquals("result2", result);
+    }
+}
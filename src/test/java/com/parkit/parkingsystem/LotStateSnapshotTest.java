@@ -0,0 +1,121 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.cache.LotStateSnapshot;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.SnapshotService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LotStateSnapshotTest {
+
+    private Path file;
+
+    @BeforeEach
+    public void setUpPerTest() throws IOException {
+        file = Files.createTempFile("lot-state", ".snapshot");
+    }
+
+    @AfterEach
+    public void tearDownPerTest() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    private LotStateSnapshot snapshot() {
+        Ticket ticket = new Ticket();
+        ticket.setId(42);
+        ticket.setParkingSpot(new ParkingSpot(4, ParkingType.BIKE, false));
+        ticket.setVehicleRegNumber("ABCDEF");
+        ticket.setInTime(new Date(1700000000000L));
+        ticket.setRateMultiplier(1.25);
+        Map<String, Integer> visitCounts = new HashMap<>();
+        visitCounts.put("ABCDEF", 3);
+        return new LotStateSnapshot(1700000060000L, 42, new int[]{3, 2}, new int[]{3, 1},
+                Collections.singletonList(ticket), visitCounts);
+    }
+
+    @Test
+    public void givenSnapshot_whenWrittenAndRead_thenSameState() throws IOException {
+        // WHEN
+        snapshot().writeTo(file);
+        LotStateSnapshot restored = LotStateSnapshot.readFrom(file);
+
+        // THEN
+        assertEquals(1700000060000L, restored.getTakenAt());
+        assertEquals(42, restored.getMaxTicketId());
+        assertArrayEquals(new int[]{3, 2}, restored.getTotals());
+        assertArrayEquals(new int[]{3, 1}, restored.getFrees());
+        Ticket ticket = restored.getOpenTickets().get(0);
+        assertEquals(42, ticket.getId());
+        assertEquals(4, ticket.getParkingSpot().getId());
+        assertEquals(ParkingType.BIKE, ticket.getParkingSpot().getParkingType());
+        assertEquals("ABCDEF", ticket.getVehicleRegNumber());
+        assertEquals(1700000000000L, ticket.getInTime().getTime());
+        assertEquals(1.25, ticket.getRateMultiplier());
+        assertEquals(Integer.valueOf(3), restored.getVisitCounts().get("ABCDEF"));
+    }
+
+    @Test
+    public void givenCorruptedSnapshot_whenRead_thenRejected() throws IOException {
+        // GIVEN
+        snapshot().writeTo(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0x7F}), 20);
+        }
+
+        // THEN
+        assertThrows(IOException.class, () -> LotStateSnapshot.readFrom(file));
+    }
+
+    @Test
+    public void givenSpotsAddedSinceSnapshot_whenRestore_thenTotalsReadFromParkingTable() throws IOException {
+        // GIVEN
+        snapshot().writeTo(file);
+        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO() {
+            @Override
+            public int[] getParkingTotals() {
+                return new int[]{10, 4};
+            }
+        };
+        TicketDAO ticketDAO = new TicketDAO() {
+            @Override
+            public List<Ticket> getTicketsAfter(int ticketId) {
+                return Collections.emptyList();
+            }
+
+            @Override
+            public List<Ticket> getTicketsClosedSince(int maxTicketId, Date since) {
+                return Collections.emptyList();
+            }
+        };
+        SnapshotService snapshotService = new SnapshotService(file, parkingSpotDAO, ticketDAO);
+
+        // WHEN
+        boolean restored = snapshotService.restore();
+
+        // THEN
+        assertTrue(restored);
+        assertArrayEquals(new int[]{10, 4}, parkingSpotDAO.spotAvailabilityCache.getTotals());
+        assertArrayEquals(new int[]{10, 3}, parkingSpotDAO.spotAvailabilityCache.getFrees());
+        assertEquals(14, ticketDAO.openTicketCache.getCapacity());
+        assertEquals(3, ticketDAO.visitCountCache.get("ABCDEF"));
+    }
+}
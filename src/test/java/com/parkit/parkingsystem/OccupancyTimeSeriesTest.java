@@ -0,0 +1,98 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.cache.SpotAvailabilityCache;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.metrics.OccupancyTimeSeries;
+import com.parkit.parkingsystem.metrics.OccupancyTimeSeries.Points;
+import com.parkit.parkingsystem.metrics.OccupancyTimeSeries.Resolution;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OccupancyTimeSeriesTest {
+
+    private static final long HOUR = 60 * 60 * 1000;
+
+    private Path file;
+    private long start;
+
+    @BeforeEach
+    public void setUpPerTest() throws IOException {
+        file = Files.createTempFile("occupancy", ".bin");
+        //an hour boundary ahead of now, so that the recorded times are never in the past of the series
+        start = (System.currentTimeMillis() / HOUR + 1) * HOUR;
+    }
+
+    @AfterEach
+    public void tearDownPerTest() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    private OccupancyTimeSeries recordChanges() {
+        OccupancyTimeSeries occupancyTimeSeries = new OccupancyTimeSeries(new SpotAvailabilityCache(), file);
+        occupancyTimeSeries.record(ParkingType.CAR, start, 10);
+        occupancyTimeSeries.record(ParkingType.CAR, start + 2500, 20);
+        occupancyTimeSeries.record(ParkingType.CAR, start + 5000, 0);
+        occupancyTimeSeries.record(ParkingType.CAR, start + 3 * 60 * 1000 + 500, 5);
+        return occupancyTimeSeries;
+    }
+
+    @Test
+    public void givenChanges_whenQuerySeconds_thenCountHeldEachSecond() {
+        // GIVEN
+        OccupancyTimeSeries occupancyTimeSeries = recordChanges();
+
+        // WHEN
+        Points points = occupancyTimeSeries.query(ParkingType.CAR, Resolution.SECOND, start, start + 5000);
+
+        // THEN
+        assertEquals(5, points.size());
+        assertEquals(start, points.getTime(0));
+        assertEquals(10, points.getMean(0));
+        assertEquals(10, points.getMin(2));
+        assertEquals(20, points.getMax(2));
+        assertEquals(15, points.getMean(2));
+        assertEquals(20, points.getMean(4));
+        assertEquals(0, occupancyTimeSeries.query(ParkingType.BIKE, Resolution.SECOND, start, start + 5000).size());
+    }
+
+    @Test
+    public void givenChanges_whenQueryMinutes_thenSecondsRolledUp() {
+        // GIVEN
+        OccupancyTimeSeries occupancyTimeSeries = recordChanges();
+
+        // WHEN
+        Points points = occupancyTimeSeries.query(ParkingType.CAR, Resolution.MINUTE, start, start + 3 * 60 * 1000);
+
+        // THEN
+        assertEquals(3, points.size());
+        assertEquals(0, points.getMin(0));
+        assertEquals(20, points.getMax(0));
+        assertEquals(1.25, points.getMean(0), 0.0001);
+        assertEquals(0, points.getMax(1));
+        assertEquals(start + 2 * 60 * 1000, points.getTime(2));
+        assertEquals(0, points.getMean(2), 0.0001);
+    }
+
+    @Test
+    public void givenSavedHistory_whenStart_thenHistoryRestored() {
+        // GIVEN
+        assertTrue(recordChanges().save());
+        OccupancyTimeSeries occupancyTimeSeries = new OccupancyTimeSeries(new SpotAvailabilityCache(), file);
+
+        // WHEN
+        occupancyTimeSeries.start(OccupancyTimeSeries.DEFAULT_PERIOD_SECONDS);
+        Points points = occupancyTimeSeries.query(ParkingType.CAR, Resolution.MINUTE, start, start + 60 * 1000);
+        occupancyTimeSeries.stop();
+
+        // THEN
+        assertEquals(1, points.size());
+        assertEquals(1.25, points.getMean(0), 0.0001);
+    }
+}
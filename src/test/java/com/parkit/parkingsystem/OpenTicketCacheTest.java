@@ -0,0 +1,92 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.cache.OpenTicketCache;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OpenTicketCacheTest {
+
+    private OpenTicketCache openTicketCache;
+
+    @BeforeEach
+    public void setUpPerTest() {
+        openTicketCache = new OpenTicketCache(2);
+    }
+
+    private Ticket openTicket(int id, String vehicleRegNumber) {
+        Ticket ticket = new Ticket();
+        ticket.setId(id);
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setParkingSpot(new ParkingSpot(id, ParkingType.CAR, false));
+        ticket.setInTime(new Date());
+        return ticket;
+    }
+
+    @Test
+    public void givenSavedTicket_whenGet_thenReturnCopy() {
+        // GIVEN
+        Ticket ticket = openTicket(1, "ABCDEF");
+        openTicketCache.put(ticket);
+
+        // WHEN
+        Ticket cached = openTicketCache.get("ABCDEF");
+        cached.setOutTime(new Date());
+
+        // THEN
+        assertNotSame(ticket, cached);
+        assertEquals(1, cached.getId());
+        assertEquals(ParkingType.CAR, cached.getParkingSpot().getParkingType());
+        assertNull(openTicketCache.get("ABCDEF").getOutTime());
+    }
+
+    @Test
+    public void givenClosedOrUnsavedTicket_whenPut_thenNotCached() {
+        // GIVEN
+        Ticket closed = openTicket(1, "ABCDEF");
+        closed.setOutTime(new Date());
+        Ticket unsaved = openTicket(0, "GHIJKL");
+
+        // WHEN
+        openTicketCache.put(closed);
+        openTicketCache.put(unsaved);
+
+        // THEN
+        assertEquals(0, openTicketCache.size());
+    }
+
+    @Test
+    public void givenFullCache_whenPut_thenRejected() {
+        // GIVEN
+        openTicketCache.load(Arrays.asList(openTicket(1, "AAA"), openTicket(2, "BBB")));
+
+        // WHEN
+        boolean cached = openTicketCache.put(openTicket(3, "CCC"));
+
+        // THEN
+        assertFalse(cached);
+        assertNull(openTicketCache.get("CCC"));
+        assertTrue(openTicketCache.put(openTicket(4, "AAA")));
+    }
+
+    @Test
+    public void givenNewerTicket_whenRemoveOlderOne_thenNewerKept() {
+        // GIVEN
+        Ticket older = openTicket(1, "ABCDEF");
+        openTicketCache.put(older);
+        openTicketCache.put(openTicket(2, "ABCDEF"));
+
+        // WHEN
+        openTicketCache.remove(older);
+
+        // THEN
+        assertEquals(2, openTicketCache.get("ABCDEF").getId());
+    }
+}
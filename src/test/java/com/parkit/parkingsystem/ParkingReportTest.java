@@ -0,0 +1,102 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingReport;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParkingReportTest {
+
+    private static final long HOUR = 60 * 60 * 1000;
+    private static final long DAY_START = 1000 * HOUR;
+    private static final long DAY_END = DAY_START + 24 * HOUR;
+
+    private ParkingReport report;
+
+    @BeforeEach
+    public void setUpPerTest() {
+        report = newReport();
+    }
+
+    private ParkingReport newReport() {
+        return new ParkingReport(LocalDate.of(2024, 1, 1), DAY_START, DAY_END);
+    }
+
+    @Test
+    public void givenClosedTicket_whenAdd_thenRevenueAccountedOnExitHour() {
+        // WHEN
+        report.add(ParkingType.CAR, DAY_START + 8 * HOUR, DAY_START + 10 * HOUR, 3.0, true);
+
+        // THEN
+        assertEquals(3.0, report.getRevenue(ParkingType.CAR, 10));
+        assertEquals(120.0, report.getAverageStayMinutes(ParkingType.CAR));
+        assertEquals(1.0, report.getDiscountShare(ParkingType.CAR));
+        assertEquals(1, report.getPeakOccupancy(ParkingType.CAR, 8));
+        assertEquals(1, report.getPeakOccupancy(ParkingType.CAR, 9));
+        assertEquals(0, report.getPeakOccupancy(ParkingType.CAR, 10));
+        assertEquals(0, report.getClosedTickets(ParkingType.BIKE));
+    }
+
+    @Test
+    public void givenTicketFromPreviousDayStillOpen_whenAdd_thenOnlyOccupancyAccounted() {
+        // WHEN
+        report.add(ParkingType.BIKE, DAY_START - 5 * HOUR, 0, 0, false);
+
+        // THEN
+        assertEquals(0.0, report.getRevenue(ParkingType.BIKE));
+        assertEquals(1, report.getPeakOccupancy(ParkingType.BIKE, 0));
+        assertEquals(1, report.getPeakOccupancy(ParkingType.BIKE, 23));
+    }
+
+    @Test
+    public void givenStaysOneAfterTheOtherInTheHour_whenAdd_thenPeakIsOne() {
+        // WHEN
+        report.add(ParkingType.CAR, DAY_START + 8 * HOUR, DAY_START + 8 * HOUR + 20 * 60 * 1000, 0, false);
+        report.add(ParkingType.CAR, DAY_START + 8 * HOUR + 30 * 60 * 1000, DAY_START + 9 * HOUR + 10 * 60 * 1000, 1.5, false);
+        report.add(ParkingType.CAR, DAY_START - 50 * HOUR, DAY_START + 8 * HOUR + 40 * 60 * 1000, 90.0, false);
+
+        // THEN
+        assertEquals(1, report.getPeakOccupancy(ParkingType.CAR, 7));
+        assertEquals(2, report.getPeakOccupancy(ParkingType.CAR, 8));
+        assertEquals(1, report.getPeakOccupancy(ParkingType.CAR, 9));
+        assertEquals(0, report.getPeakOccupancy(ParkingType.CAR, 10));
+        assertEquals(91.5, report.getRevenue(ParkingType.CAR));
+    }
+
+    @Test
+    public void givenChunkReports_whenMerge_thenSummed() {
+        // GIVEN
+        ParkingReport other = newReport();
+        report.add(ParkingType.CAR, DAY_START + HOUR, DAY_START + 2 * HOUR, 1.5, false);
+        other.add(ParkingType.CAR, DAY_START + HOUR, DAY_START + 3 * HOUR, 3.0, true);
+
+        // WHEN
+        report.merge(other);
+
+        // THEN
+        assertEquals(4.5, report.getRevenue(ParkingType.CAR));
+        assertEquals(2, report.getClosedTickets(ParkingType.CAR));
+        assertEquals(0.5, report.getDiscountShare(ParkingType.CAR));
+        assertEquals(2, report.getPeakOccupancy(ParkingType.CAR));
+    }
+
+    @Test
+    public void givenDailyReports_whenSummarize_thenPeakOccupancyKept() {
+        // GIVEN
+        ParkingReport otherDay = newReport();
+        report.add(ParkingType.CAR, DAY_START + HOUR, DAY_START + 2 * HOUR, 1.5, false);
+        otherDay.add(ParkingType.CAR, DAY_START + HOUR, DAY_START + 2 * HOUR, 1.5, false);
+
+        // WHEN
+        ParkingReport summary = ParkingReport.summarize(Arrays.asList(report, otherDay));
+
+        // THEN
+        assertEquals(3.0, summary.getRevenue(ParkingType.CAR));
+        assertEquals(1, summary.getPeakOccupancy(ParkingType.CAR));
+    }
+}
@@ -1,11 +1,13 @@
 package com.parkit.parkingsystem;
 
 import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.AsyncParkingDAO;
 import com.parkit.parkingsystem.dao.ParkingSpotDAO;
 import com.parkit.parkingsystem.dao.TicketDAO;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
 import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.service.VehiclePrefetcher;
 import com.parkit.parkingsystem.util.InputReaderUtil;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -15,6 +17,7 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.Collections;
 import java.util.Date;
 
 import static org.mockito.Mockito.*;
@@ -54,7 +57,7 @@ public class ParkingServiceTest {
     public void givenAvailableParkingSpot_whenProcessIncomingCar_thenSaveTicket() {
         // GIVEN
         when(parkingSpotDAO.getNextAvailableSlot(any(ParkingType.class))).thenReturn(1);
-        when(parkingSpotDAO.updateParking(any(ParkingSpot.class))).thenReturn(true);
+        when(parkingSpotDAO.claimParking(any(ParkingSpot.class), any())).thenReturn(true);
         when(inputReaderUtil.readSelection()).thenReturn(1); // Suppose a CAR is selected
         when(ticketDAO.saveTicket(any(Ticket.class))).thenReturn(true);
 
@@ -69,7 +72,7 @@ public class ParkingServiceTest {
     public void givenAvailableParkingSpot_whenProcessIncomingBike_thenSaveTicket() {
         // GIVEN
         when(parkingSpotDAO.getNextAvailableSlot(any(ParkingType.class))).thenReturn(1);
-        when(parkingSpotDAO.updateParking(any(ParkingSpot.class))).thenReturn(true);
+        when(parkingSpotDAO.claimParking(any(ParkingSpot.class), any())).thenReturn(true);
         when(inputReaderUtil.readSelection()).thenReturn(2); // Suppose a BIKE is selected
         when(ticketDAO.saveTicket(any(Ticket.class))).thenReturn(true);
 
@@ -93,6 +96,95 @@ public class ParkingServiceTest {
         verify(ticketDAO, times(0)).saveTicket(any(Ticket.class));
     }
 
+    @Test
+    public void givenRepeatedGateTrigger_whenProcessIncomingVehicle_thenNoSecondSpotLookup() throws Exception {
+        // GIVEN
+        when(parkingSpotDAO.getNextAvailableSlot(any(ParkingType.class))).thenReturn(1);
+        when(parkingSpotDAO.claimParking(any(ParkingSpot.class), any())).thenReturn(true);
+        when(inputReaderUtil.readSelection()).thenReturn(1); // Suppose a CAR is selected
+        when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn("ABCDEF");
+        when(ticketDAO.saveTicket(any(Ticket.class))).thenReturn(true);
+
+        // WHEN
+        parkingService.processIncomingVehicle();
+        parkingService.processIncomingVehicle();
+
+        // THEN
+        verify(parkingSpotDAO, times(1)).getNextAvailableSlot(any(ParkingType.class));
+        verify(ticketDAO, times(1)).saveTicket(any(Ticket.class));
+    }
+
+    @Test
+    public void givenSpotHeldForApproachingVehicle_whenProcessIncomingCar_thenHeldSpotIsUsed() throws Exception {
+        // GIVEN
+        when(parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR)).thenReturn(3);
+        when(parkingSpotDAO.claimParking(any(ParkingSpot.class), eq("ABCDEF"))).thenReturn(true);
+        when(inputReaderUtil.readSelection()).thenReturn(1); // Suppose a CAR is selected
+        when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn("ABCDEF");
+        when(ticketDAO.saveTicket(any(Ticket.class))).thenReturn(true);
+        //the lookups run on the calling thread
+        parkingService.setVehiclePrefetcher(new VehiclePrefetcher(new AsyncParkingDAO(ticketDAO, parkingSpotDAO, Runnable::run), parkingSpotDAO));
+        parkingService.processApproachingVehicle();
+
+        // WHEN
+        Ticket savedTicket = parkingService.processIncomingVehicle(ParkingType.CAR, "ABCDEF");
+
+        // THEN
+        assertNotNull(savedTicket);
+        assertEquals(3, savedTicket.getParkingSpot().getId());
+        verify(parkingSpotDAO, times(1)).getNextAvailableSlot(any(ParkingType.class));
+        verify(parkingSpotDAO, times(1)).claimParking(any(ParkingSpot.class), any());
+        verify(parkingSpotDAO, never()).releaseParking(any(ParkingSpot.class), any());
+        verify(ticketDAO, times(1)).saveTicket(any(Ticket.class));
+    }
+
+    @Test
+    public void givenVehicleParkedThroughAnotherNode_whenProcessIncomingCar_thenNoSecondTicket() {
+        // GIVEN
+        when(ticketDAO.getTicket("ABCDEF")).thenReturn(ticket);
+
+        // WHEN
+        Ticket openTicket = parkingService.processIncomingVehicle(ParkingType.CAR, "ABCDEF");
+
+        // THEN
+        assertSame(ticket, openTicket);
+        //the spot lookup ran alongside the ticket lookup, no spot is claimed
+        verify(parkingSpotDAO, never()).claimParking(any(ParkingSpot.class), any());
+        verify(ticketDAO, never()).saveTicket(any(Ticket.class));
+    }
+
+    @Test
+    public void givenTicketNotSaved_whenProcessIncomingCar_thenSpotReleased() {
+        // GIVEN
+        when(parkingSpotDAO.getNextAvailableSlot(any(ParkingType.class))).thenReturn(1);
+        when(parkingSpotDAO.claimParking(any(ParkingSpot.class), any())).thenReturn(true);
+        when(ticketDAO.saveTicket(any(Ticket.class))).thenReturn(false);
+
+        // WHEN
+        Ticket savedTicket = parkingService.processIncomingVehicle(ParkingType.CAR, "ABCDEF");
+
+        // THEN
+        assertNull(savedTicket);
+        verify(parkingSpotDAO, times(1)).releaseParking(argThat(releasedSpot -> releasedSpot.getId() == 1), eq("ABCDEF"));
+    }
+
+    @Test
+    public void givenSpotTakenByAnotherGate_whenProcessIncomingCar_thenClaimAnotherSpot() {
+        // GIVEN
+        when(parkingSpotDAO.getNextAvailableSlot(any(ParkingType.class))).thenReturn(1);
+        when(parkingSpotDAO.claimParking(any(ParkingSpot.class), any())).thenReturn(false, true);
+        when(parkingSpotDAO.getAvailableSlots(eq(ParkingType.CAR), anyInt())).thenReturn(Collections.singletonList(2));
+        when(inputReaderUtil.readSelection()).thenReturn(1); // Suppose a CAR is selected
+        when(ticketDAO.saveTicket(any(Ticket.class))).thenReturn(true);
+
+        // WHEN
+        parkingService.processIncomingVehicle();
+
+        // THEN
+        verify(parkingSpotDAO, times(2)).claimParking(any(ParkingSpot.class), any());
+        verify(ticketDAO, times(1)).saveTicket(argThat(savedTicket -> savedTicket.getParkingSpot().getId() == 2));
+    }
+
     @Test
     public void whenProcessExitingVehicle_thenUpdateOutTime() throws Exception {
         // GIVEN
@@ -113,30 +205,31 @@ public class ParkingServiceTest {
         // GIVEN
         when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn("ABCDEF");
         when(ticketDAO.getTicket(anyString())).thenReturn(ticket);
-        when(parkingSpotDAO.updateParking(any(ParkingSpot.class))).thenReturn(true);
+        when(parkingSpotDAO.releaseParking(any(ParkingSpot.class), anyString())).thenReturn(true);
         when(ticketDAO.updateTicket(any(Ticket.class))).thenReturn(true);
 
         // WHEN
         parkingService.processExitingVehicle();
 
         // THEN
-        verify( parkingSpotDAO, times(1)).updateParking(any(ParkingSpot.class) );
+        verify( parkingSpotDAO, times(1)).releaseParking(any(ParkingSpot.class), eq("ABCDEF") );
         assertTrue( parkingSpot.isAvailable() );
     }
 
     @Test
-    public void givenUpdateTicketFalse_whenProcessExitingVehicle_thenUnableUpdate() throws Exception {
+    public void givenTicketClosedByAnotherNode_whenProcessExitingVehicle_thenNotPricedTwice() throws Exception {
         // GIVEN
-        when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn("ABCDEF");
         when(ticketDAO.getTicket(anyString())).thenReturn(ticket);
         when(ticketDAO.updateTicket(any(Ticket.class))).thenReturn(false);
 
         // WHEN
-        parkingService.processExitingVehicle();
+        Ticket closedTicket = parkingService.processExitingVehicle("ABCDEF");
 
         // THEN
+        assertNull(closedTicket);
+        assertNull(ticket.getOutTime());
         verify(ticketDAO, times(1)).updateTicket(any(Ticket.class));
-        verify(parkingSpotDAO, times(0)).updateParking(any(ParkingSpot.class));
+        verify(parkingSpotDAO, times(0)).releaseParking(any(ParkingSpot.class), anyString());
     }
 
     @Test
@@ -0,0 +1,270 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.cache.PassIndex;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.PassDAO;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Pass;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.service.PassRefreshService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.mockito.Mockito.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+public class PassIndexTest {
+
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000;
+
+    @Mock
+    private PassDAO passDAO;
+
+    private static Pass pass(int id, String vehicleRegNumber, long validFrom, long validTo, int discountPercent) {
+        Pass pass = new Pass();
+        pass.setId(id);
+        pass.setVehicleRegNumber(vehicleRegNumber);
+        pass.setValidFrom(new Date(validFrom));
+        pass.setValidTo(new Date(validTo));
+        pass.setDiscountPercent(discountPercent);
+        return pass;
+    }
+
+    @Test
+    public void givenPassesOfVehicle_whenGetDiscount_thenBestOneValidAtExit() {
+        // GIVEN
+        PassIndex passIndex = new PassIndex();
+        PassIndex.Builder builder = new PassIndex.Builder()
+                .add(pass(1, "AB-123-CD", 0, 10 * DAY_MILLIS, 50))
+                .add(pass(2, "ab-123-cd", 5 * DAY_MILLIS, 20 * DAY_MILLIS, 100))
+                .add(pass(3, "EF-456-GH", 0, 20 * DAY_MILLIS, 30))
+                .add(pass(4, "permit#7", 0, 20 * DAY_MILLIS, 100));
+
+        // WHEN
+        passIndex.publish(builder, 0);
+
+        // THEN
+        assertEquals(4, passIndex.size());
+        assertEquals(50, passIndex.getDiscountPercent("AB-123-CD", 2 * DAY_MILLIS));
+        //pass 2 bought during the stay
+        assertEquals(100, passIndex.getDiscountPercent("AB-123-CD", 6 * DAY_MILLIS));
+        assertEquals(0, passIndex.getDiscountPercent("AB-123-CD", 22 * DAY_MILLIS));
+        //pass 3 expired during the stay
+        assertEquals(0, passIndex.getDiscountPercent("EF-456-GH", 20 * DAY_MILLIS + 1));
+        assertEquals(100, passIndex.getDiscountPercent("PERMIT#7", 2 * DAY_MILLIS));
+        assertEquals(0, passIndex.getDiscountPercent("XY-000-ZZ", 2 * DAY_MILLIS));
+    }
+
+    @Test
+    public void givenUpdatedPasses_whenRefresh_thenMergedAndRevokedNoLongerDiscounted() {
+        // GIVEN
+        long now = System.currentTimeMillis();
+        List<Pass> updates = new ArrayList<>();
+        updates.add(pass(1, "AAA", now - DAY_MILLIS, now + DAY_MILLIS, 100));
+        updates.add(pass(2, "BBB", now - DAY_MILLIS, now + DAY_MILLIS, 100));
+        when(passDAO.getPasses(any(Date.class), any(Date.class), any())).thenAnswer(invocation -> {
+            Consumer<Pass> consumer = invocation.getArgument(2);
+            updates.forEach(consumer);
+            int nbPasses = updates.size();
+            updates.clear();
+            return nbPasses;
+        });
+        PassIndex passIndex = new PassIndex();
+        PassRefreshService passRefreshService = new PassRefreshService(passDAO, passIndex);
+        assertEquals(2, passRefreshService.refresh());
+        //pass 1 revoked, pass 3 sold
+        updates.add(pass(1, "AAA", now - DAY_MILLIS, now - 1000, 100));
+        updates.add(pass(3, "CCC", now - DAY_MILLIS, now + DAY_MILLIS, 100));
+
+        // WHEN
+        int nbPasses = passRefreshService.refresh();
+
+        // THEN
+        assertEquals(2, nbPasses);
+        assertEquals(3, passIndex.size());
+        assertEquals(0, passIndex.getDiscountPercent("AAA", now));
+        //an exit priced late still gets the discount of the revoked pass
+        assertEquals(100, passIndex.getDiscountPercent("AAA", now - 2000));
+        assertEquals(100, passIndex.getDiscountPercent("BBB", now));
+        assertEquals(100, passIndex.getDiscountPercent("CCC", now));
+    }
+
+    @Test
+    public void givenPassDeletedFromTable_whenFullReloadDue_thenDropped() {
+        // GIVEN
+        long start = System.currentTimeMillis();
+        List<Pass> table = new ArrayList<>();
+        table.add(pass(1, "AAA", start - DAY_MILLIS, start + DAY_MILLIS, 100));
+        table.add(pass(2, "BBB", start - DAY_MILLIS, start + DAY_MILLIS, 100));
+        table.forEach(pass -> pass.setUpdatedTime(new Date(start - DAY_MILLIS)));
+        stubTable(table);
+        PassIndex passIndex = new PassIndex();
+        PassRefreshService passRefreshService = new PassRefreshService(passDAO, passIndex);
+        MutableClock clock = new MutableClock(start);
+        passRefreshService.setClock(clock);
+        assertEquals(2, passRefreshService.reload());
+        table.remove(0);
+        clock.millis = start + 60 * 1000;
+        //the incremental refresh does not see the deleted row
+        passRefreshService.refresh();
+        assertEquals(2, passIndex.size());
+        clock.millis = start + PassRefreshService.FULL_RELOAD_PERIOD_MILLIS;
+
+        // WHEN
+        int nbPasses = passRefreshService.refresh();
+
+        // THEN
+        assertEquals(1, nbPasses);
+        assertEquals(1, passIndex.size());
+        assertEquals(0, passIndex.getDiscountPercent("AAA", clock.millis));
+        List<Date> updatedSince = captureUpdatedSince(3);
+        assertTrue(updatedSince.get(1).getTime() > 0);
+        assertEquals(0, updatedSince.get(2).getTime());
+    }
+
+    @Test
+    public void givenAppClockAheadOfDatabase_whenRefresh_thenRevocationReadSinceLastUpdate() {
+        // GIVEN
+        long start = System.currentTimeMillis();
+        //the database is two hours behind the app
+        long databaseNow = start - 2 * 60 * 60 * 1000;
+        List<Pass> table = new ArrayList<>();
+        table.add(pass(1, "AAA", start - DAY_MILLIS, start + DAY_MILLIS, 100));
+        table.get(0).setUpdatedTime(new Date(databaseNow - DAY_MILLIS));
+        stubTable(table);
+        PassIndex passIndex = new PassIndex();
+        PassRefreshService passRefreshService = new PassRefreshService(passDAO, passIndex);
+        MutableClock clock = new MutableClock(start);
+        passRefreshService.setClock(clock);
+        passRefreshService.reload();
+        Pass revoked = pass(1, "AAA", start - DAY_MILLIS, start - 1000, 100);
+        revoked.setUpdatedTime(new Date(databaseNow));
+        table.set(0, revoked);
+        clock.millis = start + 60 * 1000;
+
+        // WHEN
+        int nbPasses = passRefreshService.refresh();
+
+        // THEN
+        assertEquals(1, nbPasses);
+        assertEquals(databaseNow - DAY_MILLIS - 60 * 1000, captureUpdatedSince(2).get(1).getTime());
+        assertEquals(0, passIndex.getDiscountPercent("AAA", clock.millis));
+    }
+
+    @Test
+    public void givenPassExpiredRecently_whenReload_thenKeptForLateExits() {
+        // GIVEN
+        long now = System.currentTimeMillis();
+        when(passDAO.getPasses(any(Date.class), any(Date.class), any())).thenAnswer(invocation -> {
+            Consumer<Pass> consumer = invocation.getArgument(2);
+            consumer.accept(pass(1, "AAA", now - 30 * DAY_MILLIS, now - DAY_MILLIS, 100));
+            consumer.accept(pass(2, "BBB", now - 30 * DAY_MILLIS, now - 10 * DAY_MILLIS, 100));
+            return 2;
+        });
+        PassIndex passIndex = new PassIndex();
+        PassRefreshService passRefreshService = new PassRefreshService(passDAO, passIndex);
+        passRefreshService.setClock(new MutableClock(now));
+
+        // WHEN
+        passRefreshService.reload();
+
+        // THEN
+        verify(passDAO, times(1)).getPasses(eq(new Date(0)),
+                eq(new Date(now - PassRefreshService.EXPIRED_PASS_RETENTION_MILLIS)), any());
+        assertEquals(1, passIndex.size());
+        assertEquals(100, passIndex.getDiscountPercent("AAA", now - 2 * DAY_MILLIS));
+    }
+
+    @Test
+    public void givenFreePass_whenCalculateFare_thenNoFare() {
+        // GIVEN
+        PassIndex passIndex = new PassIndex();
+        passIndex.publish(new PassIndex.Builder()
+                .add(pass(1, "AAA", 0, Long.MAX_VALUE, 100))
+                .add(pass(2, "BBB", 0, Long.MAX_VALUE, 50)), 0);
+        FareCalculatorService fareCalculatorService = new FareCalculatorService(passIndex);
+        Date inTime = new Date(System.currentTimeMillis() - 60 * 60 * 1000);
+        Ticket freeTicket = new Ticket();
+        freeTicket.setVehicleRegNumber("AAA");
+        freeTicket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        freeTicket.setInTime(inTime);
+        freeTicket.setOutTime(new Date(inTime.getTime() + 60 * 60 * 1000));
+        Ticket halfPriceTicket = new Ticket();
+        halfPriceTicket.setVehicleRegNumber("BBB");
+        halfPriceTicket.setParkingSpot(new ParkingSpot(2, ParkingType.CAR, false));
+        halfPriceTicket.setInTime(inTime);
+        halfPriceTicket.setOutTime(new Date(inTime.getTime() + 60 * 60 * 1000));
+
+        // WHEN
+        fareCalculatorService.calculateFare(freeTicket);
+        fareCalculatorService.calculateFare(halfPriceTicket);
+
+        // THEN
+        assertEquals(0, freeTicket.getPrice());
+        assertEquals(0.75, halfPriceTicket.getPrice());
+    }
+
+    //the DAO answers with the passes of the table updated since the given time
+    private void stubTable(List<Pass> table) {
+        when(passDAO.getPasses(any(Date.class), any(Date.class), any())).thenAnswer(invocation -> {
+            Date since = invocation.getArgument(0);
+            Consumer<Pass> consumer = invocation.getArgument(2);
+            int nbPasses = 0;
+            for (Pass pass : table) {
+                if (!pass.getUpdatedTime().before(since)) {
+                    consumer.accept(pass);
+                    nbPasses++;
+                }
+            }
+            return nbPasses;
+        });
+    }
+
+    private List<Date> captureUpdatedSince(int nbLoads) {
+        ArgumentCaptor<Date> updatedSince = ArgumentCaptor.forClass(Date.class);
+        verify(passDAO, times(nbLoads)).getPasses(updatedSince.capture(), any(Date.class), any());
+        return updatedSince.getAllValues();
+    }
+
+    private static class MutableClock extends Clock {
+        private long millis;
+
+        private MutableClock(long millis) {
+            this.millis = millis;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+    }
+}
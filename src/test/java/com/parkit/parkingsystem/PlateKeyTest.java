@@ -0,0 +1,93 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.cache.VisitCountCache;
+import com.parkit.parkingsystem.util.LongObjectHashMap;
+import com.parkit.parkingsystem.util.PlateKey;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PlateKeyTest {
+
+    @Test
+    public void givenPackablePlates_whenPack_thenUnpackGivesThemBack() {
+        // GIVEN
+        String[] plates = {"A", "0", "AB-123-CD", "ZZ 999 ZZ", "0000000000", "1234567890"};
+
+        for (String plate : plates) {
+            // WHEN
+            long key = PlateKey.pack(plate);
+
+            // THEN
+            assertNotEquals(PlateKey.NO_KEY, key);
+            assertEquals(plate, PlateKey.unpack(key));
+        }
+        assertNotEquals(PlateKey.pack("0"), PlateKey.pack("00"));
+    }
+
+    @Test
+    public void givenUnpackablePlates_whenPack_thenNoKey() {
+        // GIVEN
+        String[] plates = {null, "", "ab-123-cd", "AB_123", "ÉTÉ", "ABCDEFGHIJK"};
+
+        for (String plate : plates) {
+            // WHEN
+            long key = PlateKey.pack(plate);
+
+            // THEN
+            assertEquals(PlateKey.NO_KEY, key);
+        }
+        assertEquals("AB-123-CD", PlateKey.normalize("  ab-123-Cd "));
+    }
+
+    @Test
+    public void givenUnpackablePlate_whenCountVisits_thenKeptApart() {
+        // GIVEN
+        VisitCountCache visitCountCache = new VisitCountCache();
+        visitCountCache.put("AB-123-CD", 2);
+        visitCountCache.put("ab-123-cd", 5);
+
+        // WHEN
+        visitCountCache.increment("AB-123-CD");
+        Map<String, Integer> visits = new HashMap<>();
+        visitCountCache.forEach(visits::put);
+
+        // THEN
+        assertEquals(3, visitCountCache.get("AB-123-CD"));
+        assertEquals(5, visitCountCache.get("ab-123-cd"));
+        assertEquals(2, visitCountCache.size());
+        assertEquals(3, visits.get("AB-123-CD").intValue());
+    }
+
+    @Test
+    public void givenRandomOperations_whenMapped_thenSameAsHashMap() {
+        // GIVEN
+        Random random = new Random(48);
+        LongObjectHashMap<Long> map = new LongObjectHashMap<>();
+        Map<Long, Long> expected = new HashMap<>();
+
+        // WHEN
+        for (int i = 0; i < 100000; i++) {
+            //few distinct keys so that removals often hit probed runs
+            long key = PlateKey.pack(Integer.toString(random.nextInt(2000)));
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                Long value = random.nextLong();
+                assertEquals(expected.put(key, value), map.put(key, value));
+            }
+        }
+
+        // THEN
+        assertEquals(expected.size(), map.size());
+        for (int i = 0; i < 2000; i++) {
+            long key = PlateKey.pack(Integer.toString(i));
+            assertEquals(expected.get(key), map.get(key));
+            assertEquals(expected.containsKey(key), map.containsKey(key));
+        }
+    }
+}
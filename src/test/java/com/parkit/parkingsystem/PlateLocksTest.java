@@ -0,0 +1,97 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.service.AdmissionRejectedException;
+import com.parkit.parkingsystem.service.PlateLocks;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PlateLocksTest {
+
+    private Thread holdLock(PlateLocks plateLocks, String vehicleRegNumber, CountDownLatch running, CountDownLatch done) {
+        Thread thread = new Thread(() -> plateLocks.execute(vehicleRegNumber, () -> {
+            running.countDown();
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }));
+        thread.start();
+        return thread;
+    }
+
+    @Test
+    public void givenOperationRunningForPlate_whenExecuteOtherPlate_thenRunsWithoutWaiting() throws InterruptedException {
+        // GIVEN
+        PlateLocks plateLocks = new PlateLocks(1024, 100);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        Thread thread = holdLock(plateLocks, "ABCDEF", running, done);
+        running.await();
+        long contended = Metrics.getCount("plate.lock.contended");
+
+        // WHEN
+        String result = plateLocks.execute("ABCDEG", () -> "entry");
+
+        // THEN
+        assertEquals("entry", result);
+        assertEquals(contended, Metrics.getCount("plate.lock.contended"));
+        done.countDown();
+        thread.join();
+    }
+
+    @Test
+    public void givenOperationRunningForPlate_whenExecuteSamePlate_thenWaitsForIt() throws InterruptedException {
+        // GIVEN
+        PlateLocks plateLocks = new PlateLocks(1024, 5000);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        Thread thread = holdLock(plateLocks, "ABCDEF", running, done);
+        running.await();
+        long contended = Metrics.getCount("plate.lock.contended");
+        new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            done.countDown();
+        }).start();
+
+        // WHEN
+        long start = System.nanoTime();
+        String result = plateLocks.execute("ABCDEF", () -> "retry");
+
+        // THEN
+        assertEquals("retry", result);
+        assertEquals(0, done.getCount());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 40);
+        assertEquals(contended + 1, Metrics.getCount("plate.lock.contended"));
+        thread.join();
+    }
+
+    @Test
+    public void givenOperationStuckForPlate_whenExecuteSamePlate_thenRejected() throws InterruptedException {
+        // GIVEN
+        PlateLocks plateLocks = new PlateLocks(1024, 50);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        Thread thread = holdLock(plateLocks, "ABCDEF", running, done);
+        running.await();
+
+        // WHEN
+        AdmissionRejectedException rejection = assertThrows(AdmissionRejectedException.class,
+                () -> plateLocks.execute("ABCDEF", () -> "retry"));
+
+        // THEN
+        assertEquals(50, rejection.getRetryAfterMillis());
+        done.countDown();
+        thread.join();
+    }
+}
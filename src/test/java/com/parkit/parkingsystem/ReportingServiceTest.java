@@ -0,0 +1,117 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ReportDAO;
+import com.parkit.parkingsystem.dao.TicketArchiveDAO;
+import com.parkit.parkingsystem.model.ParkingReport;
+import com.parkit.parkingsystem.service.ReportingService;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReportingServiceTest {
+
+    private static final long HOUR = 60 * 60 * 1000;
+
+    //ID, in time, out time (0 if open), price
+    private final Map<String, List<long[]>> tables = new HashMap<>();
+    private int nbChunks;
+
+    private final ReportDAO reportDAO = new ReportDAO() {
+        @Override
+        public Set<String> getTicketHistoryTables() {
+            return tables.keySet();
+        }
+
+        @Override
+        public int[] getIdRange(String table, long fromMillis, long toMillis) {
+            int[] range = null;
+            for (long[] ticket : tables.getOrDefault(table, new ArrayList<>())) {
+                if (ticket[1] >= fromMillis && ticket[1] < toMillis) {
+                    range = (range == null) ? new int[]{(int) ticket[0], (int) ticket[0]}
+                            : new int[]{Math.min(range[0], (int) ticket[0]), Math.max(range[1], (int) ticket[0])};
+                }
+            }
+            return range;
+        }
+
+        @Override
+        public boolean aggregateChunk(String table, int fromId, int toId, ParkingReport report, long dayStartMillis, long dayEndMillis) {
+            nbChunks++;
+            for (long[] ticket : tables.get(table)) {
+                if (ticket[0] >= fromId && ticket[0] <= toId && ticket[1] >= dayStartMillis && ticket[1] < dayEndMillis) {
+                    report.add(ParkingType.CAR, ticket[1], ticket[2], ticket[3] / 100.0, false);
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public boolean aggregateCarriedOver(String table, ParkingReport report, long dayStartMillis) {
+            for (long[] ticket : tables.getOrDefault(table, new ArrayList<>())) {
+                if (ticket[1] < dayStartMillis && (ticket[2] == 0 || ticket[2] >= dayStartMillis)) {
+                    report.add(ParkingType.CAR, ticket[1], ticket[2], ticket[3] / 100.0, false);
+                }
+            }
+            return true;
+        }
+    };
+
+    private void addTicket(String table, long id, long inMillis, long outMillis, long priceCents) {
+        tables.computeIfAbsent(table, name -> new ArrayList<>()).add(new long[]{id, inMillis, outMillis, priceCents});
+    }
+
+    @Test
+    public void givenLongStayArchivedMonthsLater_whenGetReport_thenCountedOnTheDaysItCrosses() {
+        // GIVEN
+        LocalDate day = LocalDate.now().minusMonths(3).withDayOfMonth(10);
+        long dayStart = day.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        long exitMillis = day.plusDays(40).atTime(12, 0).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        addTicket("ticket", 1, dayStart - 5 * HOUR, dayStart - 4 * HOUR, 150);
+        //entered 3 days before the report day, left 40 days after it
+        addTicket(TicketArchiveDAO.historyTable(YearMonth.from(day.plusDays(40))), 2, dayStart - 72 * HOUR, exitMillis, 99900);
+        addTicket("ticket", 3, dayStart + 2 * HOUR, dayStart + 3 * HOUR, 150);
+        ReportingService reportingService = new ReportingService(reportDAO, 2, 1);
+
+        // WHEN
+        ParkingReport report = reportingService.getReport(day, day);
+        ParkingReport exitDayReport = reportingService.getReport(day.plusDays(40), day.plusDays(40));
+
+        // THEN
+        assertEquals(2, report.getPeakOccupancy(ParkingType.CAR, 2));
+        assertEquals(1, report.getPeakOccupancy(ParkingType.CAR, 23));
+        assertEquals(1.5, report.getRevenue(ParkingType.CAR));
+        assertEquals(999.0, exitDayReport.getRevenue(ParkingType.CAR));
+        assertEquals(1, exitDayReport.getPeakOccupancy(ParkingType.CAR, 11));
+        assertEquals(0, exitDayReport.getPeakOccupancy(ParkingType.CAR, 12));
+    }
+
+    @Test
+    public void givenVehicleParkedForWeeks_whenGetReport_thenOnlyTicketsOfTheDayReadByChunk() {
+        // GIVEN
+        LocalDate day = LocalDate.now().minusDays(1);
+        long dayStart = day.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        addTicket("ticket", 1, dayStart - 21 * 24 * HOUR, 0, 0);
+        addTicket("ticket", 1000, dayStart + HOUR, dayStart + 2 * HOUR, 150);
+        addTicket("ticket", 1001, dayStart + 3 * HOUR, dayStart + 4 * HOUR, 150);
+        ReportingService reportingService = new ReportingService(reportDAO, 2, 1);
+
+        // WHEN
+        ParkingReport report = reportingService.getReport(day, day);
+
+        // THEN
+        assertEquals(2, nbChunks);
+        assertEquals(3.0, report.getRevenue(ParkingType.CAR));
+        assertEquals(2, report.getPeakOccupancy(ParkingType.CAR, 1));
+        assertEquals(1, report.getPeakOccupancy(ParkingType.CAR, 23));
+    }
+}
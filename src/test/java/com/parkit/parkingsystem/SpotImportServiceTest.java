@@ -0,0 +1,120 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.SpotImportResult;
+import com.parkit.parkingsystem.service.SpotImportService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SpotImportServiceTest {
+
+    private Path file;
+    private Path progressFile;
+    private FakeParkingSpotDAO parkingSpotDAO;
+
+    @BeforeEach
+    public void setUpPerTest() throws IOException {
+        file = Files.createTempFile("spots", ".csv");
+        progressFile = file.resolveSibling(file.getFileName() + SpotImportService.PROGRESS_SUFFIX);
+        Files.write(file, Arrays.asList("1,CAR,0", "2,CAR,0,EV|COVERED", "not a spot", "3,BIKE,-1", "4,CAR,x"));
+        parkingSpotDAO = new FakeParkingSpotDAO();
+        parkingSpotDAO.spotAvailabilityCache.load(new int[]{0, 0}, new int[]{0, 0});
+    }
+
+    @AfterEach
+    public void tearDownPerTest() throws IOException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(progressFile);
+    }
+
+    @Test
+    public void givenSpotDefinitionFile_whenImportSpots_thenValidSpotsAreAddedAndAvailable() throws IOException {
+        // GIVEN
+        SpotImportService spotImportService = new SpotImportService(parkingSpotDAO, new TicketDAO(), 2);
+
+        // WHEN
+        SpotImportResult result = spotImportService.importSpots(file);
+
+        // THEN
+        assertTrue(result.isCompleted());
+        assertEquals(3, result.getSpotsAdded());
+        assertEquals(2, result.getInvalidLines().size());
+        assertEquals("EV|COVERED", parkingSpotDAO.imported.get(1).getAttributes());
+        assertEquals(-1, parkingSpotDAO.imported.get(2).getLevel());
+        assertEquals(2, parkingSpotDAO.spotAvailabilityCache.getFree(ParkingType.CAR));
+        assertEquals(1, parkingSpotDAO.spotAvailabilityCache.getTotal(ParkingType.BIKE));
+        assertFalse(Files.exists(progressFile));
+    }
+
+    @Test
+    public void givenFailedChunk_whenImportSpotsAgain_thenImportResumes() throws IOException {
+        // GIVEN
+        SpotImportService spotImportService = new SpotImportService(parkingSpotDAO, new TicketDAO(), 2);
+        parkingSpotDAO.failAfterChunks = 1;
+        SpotImportResult interrupted = spotImportService.importSpots(file);
+
+        // WHEN
+        parkingSpotDAO.failAfterChunks = Integer.MAX_VALUE;
+        SpotImportResult result = spotImportService.importSpots(file);
+
+        // THEN
+        assertFalse(interrupted.isCompleted());
+        assertEquals(2, result.getResumedFromLine());
+        assertTrue(result.isCompleted());
+        assertEquals(3, parkingSpotDAO.imported.size());
+    }
+
+    @Test
+    public void givenLoadedSpotRegistry_whenImportSpotsByChunks_thenRegistryReloadedOnce() throws IOException {
+        // GIVEN
+        int[] nbRegistryLoads = new int[1];
+        TicketDAO ticketDAO = new TicketDAO() {
+            @Override
+            public int warmUpSpotRegistry() {
+                nbRegistryLoads[0]++;
+                return 0;
+            }
+        };
+        ticketDAO.spotRegistry.load(new ArrayList<>());
+        SpotImportService spotImportService = new SpotImportService(parkingSpotDAO, ticketDAO, 1);
+
+        // WHEN
+        SpotImportResult result = spotImportService.importSpots(file);
+
+        // THEN
+        assertTrue(result.isCompleted());
+        assertEquals(1, nbRegistryLoads[0]);
+    }
+
+    private static class FakeParkingSpotDAO extends ParkingSpotDAO {
+        private final List<ParkingSpot> imported = new ArrayList<>();
+        private int failAfterChunks = Integer.MAX_VALUE;
+        private int nbChunks;
+
+        @Override
+        public int[] importParkingSpots(List<ParkingSpot> parkingSpots) {
+            if (nbChunks++ >= failAfterChunks) {
+                return null;
+            }
+            int[] added = new int[ParkingType.values().length];
+            for (ParkingSpot parkingSpot : parkingSpots) {
+                imported.add(parkingSpot);
+                added[parkingSpot.getParkingType().ordinal()]++;
+            }
+            return added;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.service.SpotRefreshService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SpotRefreshServiceTest {
+
+    private FakeParkingSpotDAO parkingSpotDAO;
+    private FakeTicketDAO ticketDAO;
+    private SpotRefreshService spotRefreshService;
+
+    @BeforeEach
+    public void setUpPerTest() {
+        parkingSpotDAO = new FakeParkingSpotDAO();
+        parkingSpotDAO.totals = new int[]{3, 2};
+        parkingSpotDAO.frees = new int[]{1, 2};
+        parkingSpotDAO.loadAvailability();
+        ticketDAO = new FakeTicketDAO();
+        ticketDAO.spotRegistry.load(Collections.singletonList(new ParkingSpot(1, ParkingType.CAR, true)));
+        ticketDAO.openTicketCache.setCapacity(5);
+        spotRefreshService = new SpotRefreshService(parkingSpotDAO, ticketDAO);
+    }
+
+    @Test
+    public void givenUnchangedParkingTable_whenRefresh_thenNothingIsReloaded() {
+        // WHEN
+        int added = spotRefreshService.refresh();
+
+        // THEN
+        assertEquals(0, added);
+        assertEquals(1, parkingSpotDAO.nbLoads);
+        assertEquals(0, ticketDAO.nbRegistryLoads);
+    }
+
+    @Test
+    public void givenSpotsImportedByAnotherProcess_whenRefresh_thenCachesLearnThem() {
+        // GIVEN
+        parkingSpotDAO.totals = new int[]{5, 3};
+        parkingSpotDAO.frees = new int[]{3, 3};
+
+        // WHEN
+        int added = spotRefreshService.refresh();
+
+        // THEN
+        assertEquals(3, added);
+        assertEquals(5, parkingSpotDAO.spotAvailabilityCache.getTotal(ParkingType.CAR));
+        assertEquals(3, parkingSpotDAO.spotAvailabilityCache.getFree(ParkingType.CAR));
+        assertEquals(1, ticketDAO.nbRegistryLoads);
+        assertEquals(8, ticketDAO.openTicketCache.getCapacity());
+        assertEquals(0, spotRefreshService.refresh());
+    }
+
+    @Test
+    public void givenUnreadableParkingTable_whenRefresh_thenCachesAreLeftAsIs() {
+        // GIVEN
+        parkingSpotDAO.totals = null;
+
+        // WHEN
+        int added = spotRefreshService.refresh();
+
+        // THEN
+        assertEquals(0, added);
+        assertEquals(3, parkingSpotDAO.spotAvailabilityCache.getTotal(ParkingType.CAR));
+        assertEquals(5, ticketDAO.openTicketCache.getCapacity());
+    }
+
+    private static class FakeParkingSpotDAO extends ParkingSpotDAO {
+        private int[] totals;
+        private int[] frees;
+        private int nbLoads;
+
+        @Override
+        public int[] getParkingTotals() {
+            return (totals == null) ? null : totals.clone();
+        }
+
+        @Override
+        public boolean loadAvailability() {
+            nbLoads++;
+            spotAvailabilityCache.load(totals.clone(), frees.clone());
+            return true;
+        }
+    }
+
+    private static class FakeTicketDAO extends TicketDAO {
+        private int nbRegistryLoads;
+
+        @Override
+        public int warmUpSpotRegistry() {
+            nbRegistryLoads++;
+            return 0;
+        }
+    }
+}
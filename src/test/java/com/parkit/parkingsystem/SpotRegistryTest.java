@@ -0,0 +1,134 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.cache.SpotRegistry;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SpotRegistryTest {
+
+    private static ParkingSpot spot(int number, ParkingType parkingType, int level, String attributes) {
+        ParkingSpot parkingSpot = new ParkingSpot(number, parkingType, true);
+        parkingSpot.setLevel(level);
+        parkingSpot.setAttributes(attributes);
+        return parkingSpot;
+    }
+
+    @Test
+    public void givenLoadedSpots_whenNewParkingSpot_thenFilledFromRegistry() {
+        // GIVEN
+        SpotRegistry spotRegistry = new SpotRegistry();
+        spotRegistry.load(Arrays.asList(spot(10, ParkingType.CAR, 1, "EV"), spot(12, ParkingType.BIKE, -1, null)));
+
+        // WHEN
+        ParkingSpot parkingSpot = spotRegistry.newParkingSpot(10);
+
+        // THEN
+        assertTrue(spotRegistry.isLoaded());
+        assertEquals(2, spotRegistry.size());
+        assertEquals(ParkingType.CAR, parkingSpot.getParkingType());
+        assertEquals(1, parkingSpot.getLevel());
+        assertEquals("EV", parkingSpot.getAttributes());
+        assertFalse(parkingSpot.isAvailable());
+        assertEquals(ParkingType.BIKE, spotRegistry.getParkingType(12));
+        assertNull(spotRegistry.getParkingType(11));
+        assertNull(spotRegistry.getParkingType(9));
+        assertNull(spotRegistry.newParkingSpot(100).getParkingType());
+        assertNotSame(parkingSpot, spotRegistry.newParkingSpot(10));
+    }
+
+    @Test
+    public void givenRegistry_whenAddSpotsOutsideRange_thenAllSpotsKnown() {
+        // GIVEN
+        SpotRegistry spotRegistry = new SpotRegistry();
+        spotRegistry.load(Collections.singletonList(spot(10, ParkingType.CAR, 0, "EV")));
+
+        // WHEN
+        spotRegistry.add(Arrays.asList(spot(3, ParkingType.BIKE, 0, new String("EV")), spot(10, ParkingType.BIKE, 0, null)));
+
+        // THEN
+        assertEquals(2, spotRegistry.size());
+        assertEquals(ParkingType.BIKE, spotRegistry.getParkingType(3));
+        assertEquals(ParkingType.BIKE, spotRegistry.getParkingType(10));
+        assertNull(spotRegistry.newParkingSpot(10).getAttributes());
+    }
+
+    @Test
+    public void givenSameAttributes_whenLoad_thenAttributesShared() {
+        // GIVEN
+        SpotRegistry spotRegistry = new SpotRegistry();
+
+        // WHEN
+        spotRegistry.load(Arrays.asList(spot(1, ParkingType.CAR, 0, new String("EV|COVERED")), spot(2, ParkingType.CAR, 0, new String("EV|COVERED"))));
+
+        // THEN
+        assertSame(spotRegistry.newParkingSpot(1).getAttributes(), spotRegistry.newParkingSpot(2).getAttributes());
+    }
+
+    @Test
+    public void givenSpreadOutNumbers_whenLoad_thenSpotsKnown() {
+        // GIVEN
+        SpotRegistry spotRegistry = new SpotRegistry();
+
+        // WHEN
+        spotRegistry.load(Arrays.asList(spot(1, ParkingType.CAR, 0, null), spot(Integer.MAX_VALUE, ParkingType.BIKE, 2, "EV"),
+                spot(1 << 24, ParkingType.CAR, 1, null)));
+        spotRegistry.add(Collections.singletonList(spot(5000, ParkingType.BIKE, 0, null)));
+
+        // THEN
+        assertTrue(spotRegistry.isLoaded());
+        assertEquals(4, spotRegistry.size());
+        assertEquals(ParkingType.CAR, spotRegistry.getParkingType(1));
+        assertEquals(ParkingType.BIKE, spotRegistry.getParkingType(5000));
+        assertEquals(1, spotRegistry.newParkingSpot(1 << 24).getLevel());
+        assertEquals("EV", spotRegistry.newParkingSpot(Integer.MAX_VALUE).getAttributes());
+        assertNull(spotRegistry.getParkingType(2));
+        assertNull(spotRegistry.getParkingType(Integer.MAX_VALUE - 1));
+    }
+
+    @Test
+    public void givenRandomSpots_whenAddedByChunks_thenSameAsLoadedAtOnce() {
+        // GIVEN
+        Random random = new Random(45);
+        Map<Integer, ParkingSpot> expected = new HashMap<>();
+        SpotRegistry chunked = new SpotRegistry();
+        for (int chunk = 0; chunk < 20; chunk++) {
+            List<ParkingSpot> parkingSpots = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                //dense then sparse numbers, some defined again
+                int number = 1 + random.nextInt((chunk < 10) ? 2000 : 1 << 20);
+                ParkingSpot parkingSpot = spot(number, ParkingType.values()[random.nextInt(2)], random.nextInt(5), null);
+                parkingSpots.add(parkingSpot);
+                expected.put(number, parkingSpot);
+            }
+
+            // WHEN
+            chunked.add(parkingSpots);
+        }
+        SpotRegistry loaded = new SpotRegistry();
+        loaded.load(expected.values());
+
+        // THEN
+        assertEquals(expected.size(), chunked.size());
+        assertEquals(expected.size(), loaded.size());
+        for (int number = 0; number <= 1 << 20; number++) {
+            ParkingSpot parkingSpot = expected.get(number);
+            ParkingType parkingType = (parkingSpot == null) ? null : parkingSpot.getParkingType();
+            assertEquals(parkingType, chunked.getParkingType(number));
+            assertEquals(parkingType, loaded.getParkingType(number));
+            if (parkingSpot != null) {
+                assertEquals(parkingSpot.getLevel(), chunked.newParkingSpot(number).getLevel());
+            }
+        }
+    }
+}
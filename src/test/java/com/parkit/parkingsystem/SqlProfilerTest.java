@@ -0,0 +1,141 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.metrics.SqlProfiler;
+import com.parkit.parkingsystem.metrics.SqlStatistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SqlProfilerTest {
+
+    private final List<String> prepared = new CopyOnWriteArrayList<>();
+    private DataBaseConfig dataBaseConfig;
+
+    @BeforeEach
+    public void setUpPerTest() {
+        SqlProfiler.reset();
+        prepared.clear();
+        dataBaseConfig = new DataBaseConfig() {
+            @Override
+            public Connection getConnection() {
+                return SqlProfiler.profile(fakeConnection(), this);
+            }
+        };
+    }
+
+    @AfterEach
+    public void tearDownPerTest() {
+        SqlProfiler.setSlowThresholdMillis(SqlProfiler.DEFAULT_SLOW_MILLIS);
+        SqlProfiler.reset();
+    }
+
+    //every statement returns two rows of one column
+    private Connection fakeConnection() {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("prepareStatement")) {
+                        prepared.add((String) args[0]);
+                        return fakeStatement();
+                    }
+                    return null;
+                });
+    }
+
+    private PreparedStatement fakeStatement() {
+        return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{PreparedStatement.class},
+                (proxy, method, args) -> method.getName().equals("executeQuery") ? fakeResultSet() : null);
+    }
+
+    private ResultSet fakeResultSet() {
+        int[] row = {0};
+        ResultSetMetaData metaData = (ResultSetMetaData) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{ResultSetMetaData.class},
+                (proxy, method, args) -> method.getName().equals("getColumnCount") ? (Object) 1 : "type");
+        return (ResultSet) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "next": return ++row[0] <= 2;
+                        case "getMetaData": return metaData;
+                        case "getString": return "ALL";
+                        default: return null;
+                    }
+                });
+    }
+
+    private void runQuery(String sql, String plate) throws Exception {
+        Connection con = dataBaseConfig.getConnection();
+        PreparedStatement ps = con.prepareStatement(sql);
+        ps.setString(1, plate);
+        ResultSet rs = ps.executeQuery();
+        while (rs.next()) {
+            rs.getString(1);
+        }
+        dataBaseConfig.closeResultSet(rs);
+        dataBaseConfig.closePreparedStatement(ps);
+        dataBaseConfig.closeConnection(con);
+    }
+
+    @Test
+    public void givenFastQuery_whenRun_thenTimedWithoutPlan() throws Exception {
+        // GIVEN
+        SqlProfiler.setSlowThresholdMillis(60000);
+
+        // WHEN
+        runQuery("select ID from ticket where VEHICLE_REG_NUMBER = ?", "ABCDEF");
+        runQuery("select ID from ticket where VEHICLE_REG_NUMBER = ?", "GHIJKL");
+
+        // THEN
+        SqlStatistics sqlStatistics = SqlProfiler.getStatistics("select ID from ticket where VEHICLE_REG_NUMBER = ?");
+        assertEquals(2, sqlStatistics.getExecutions().getCount());
+        assertEquals(4, sqlStatistics.getRows());
+        assertEquals(0, sqlStatistics.getSlowRuns());
+        assertNull(sqlStatistics.getPlan());
+        assertEquals(2, prepared.size());
+    }
+
+    @Test
+    public void givenSlowQuery_whenRun_thenPlanCapturedOnce() throws Exception {
+        // GIVEN
+        SqlProfiler.setSlowThresholdMillis(0);
+
+        // WHEN
+        runQuery("select ID from ticket where VEHICLE_REG_NUMBER = ?", "ABCDEF");
+        runQuery("select ID from ticket where VEHICLE_REG_NUMBER = ?", "GHIJKL");
+
+        // THEN
+        SqlStatistics sqlStatistics = SqlProfiler.getStatistics("select ID from ticket where VEHICLE_REG_NUMBER = ?");
+        long deadline = System.currentTimeMillis() + 5000;
+        while (sqlStatistics.getPlan() == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, sqlStatistics.getSlowRuns());
+        assertTrue(sqlStatistics.getPlan().contains("type=ALL"));
+        assertEquals(1, prepared.stream().filter(sql -> sql.startsWith("explain ")).count());
+        assertEquals(1, SqlProfiler.getStatistics().size());
+    }
+
+    @Test
+    public void givenPlateLists_whenRun_thenOneStatisticsPerStatement() throws Exception {
+        // GIVEN
+        SqlProfiler.setSlowThresholdMillis(60000);
+
+        // WHEN
+        runQuery("select ID from ticket where VEHICLE_REG_NUMBER in (?,?)", "ABCDEF");
+        runQuery("select ID from ticket where VEHICLE_REG_NUMBER in (?,?,?)", "ABCDEF");
+
+        // THEN
+        List<SqlStatistics> statistics = SqlProfiler.getStatistics();
+        assertEquals(1, statistics.size());
+        assertEquals(2, statistics.get(0).getExecutions().getCount());
+    }
+}
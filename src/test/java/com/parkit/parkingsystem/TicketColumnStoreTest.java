@@ -0,0 +1,184 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.analytics.TicketColumnStore;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.TicketColumnSyncService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.mockito.Mockito.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TicketColumnStoreTest {
+
+    private static final long HOUR_MILLIS = 60 * 60 * 1000;
+    //2024-01-01T00:00:00Z
+    private static final long DAY_START = 1704067200000L;
+
+    private Path directory;
+    @Mock
+    private TicketDAO ticketDAO;
+
+    @BeforeEach
+    public void setUpPerTest() throws IOException {
+        directory = Files.createTempDirectory("ticket-store");
+    }
+
+    @AfterEach
+    public void tearDownPerTest() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private static Ticket ticket(int id, String vehicleRegNumber, ParkingType parkingType, long inMillis, long outMillis, double price) {
+        Ticket ticket = new Ticket();
+        ticket.setId(id);
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setParkingSpot(new ParkingSpot(id, parkingType, false));
+        ticket.setInTime(new Date(inMillis));
+        ticket.setOutTime((outMillis == 0) ? null : new Date(outMillis));
+        ticket.setPrice(price);
+        return ticket;
+    }
+
+    @Test
+    public void givenCommittedTickets_whenReopened_thenQueriesScanThem() throws IOException {
+        // GIVEN
+        try (TicketColumnStore store = TicketColumnStore.open(directory)) {
+            store.append(Arrays.asList(
+                    ticket(1, "AAA", ParkingType.CAR, DAY_START + 8 * HOUR_MILLIS, DAY_START + 10 * HOUR_MILLIS, 3.0),
+                    ticket(2, "BBB", ParkingType.BIKE, DAY_START + 8 * HOUR_MILLIS + 1000, DAY_START + 9 * HOUR_MILLIS, 1.0),
+                    ticket(3, "AAA", ParkingType.CAR, DAY_START + 17 * HOUR_MILLIS, 0, 0)));
+            store.commit(DAY_START + 20 * HOUR_MILLIS);
+        }
+
+        // WHEN
+        try (TicketColumnStore store = TicketColumnStore.open(directory)) {
+            int[] stays = store.staysPerHourOfDay(DAY_START, DAY_START + 24 * HOUR_MILLIS, ZoneOffset.UTC);
+            long[] revenueCents = store.revenueCentsByType(DAY_START, DAY_START + 24 * HOUR_MILLIS);
+            int[] vehicles = store.visitDistribution(5);
+
+            // THEN
+            assertEquals(3, store.getRowCount());
+            assertEquals(3, store.getMaxTicketId());
+            assertEquals(DAY_START + 20 * HOUR_MILLIS, store.getClosedSyncMillis());
+            assertEquals(2, stays[8]);
+            assertEquals(1, stays[17]);
+            assertEquals(300, revenueCents[ParkingType.CAR.ordinal()]);
+            assertEquals(100, revenueCents[ParkingType.BIKE.ordinal()]);
+            assertEquals(1, vehicles[1]);
+            assertEquals(1, vehicles[2]);
+        }
+    }
+
+    @Test
+    public void givenStoreAlreadyOpen_whenOpened_thenFailsUntilClosed() throws IOException {
+        // GIVEN
+        TicketColumnStore store = TicketColumnStore.open(directory);
+
+        // WHEN
+        assertThrows(IOException.class, () -> TicketColumnStore.open(directory));
+        store.close();
+
+        // THEN
+        TicketColumnStore.open(directory).close();
+    }
+
+    @Test
+    public void givenPackedAndUnpackedPlates_whenReopened_thenVisitsCountedByPlate() throws IOException {
+        // GIVEN
+        try (TicketColumnStore store = TicketColumnStore.open(directory)) {
+            store.append(Arrays.asList(
+                    ticket(1, "AB123CD", ParkingType.CAR, DAY_START, DAY_START + HOUR_MILLIS, 1.5),
+                    ticket(2, "legacy-plate", ParkingType.CAR, DAY_START, DAY_START + HOUR_MILLIS, 1.5)));
+            store.commit(DAY_START + HOUR_MILLIS);
+        }
+
+        // WHEN
+        try (TicketColumnStore store = TicketColumnStore.open(directory)) {
+            store.append(Arrays.asList(
+                    ticket(3, "AB123CD", ParkingType.CAR, DAY_START + 2 * HOUR_MILLIS, DAY_START + 3 * HOUR_MILLIS, 1.5),
+                    ticket(4, "legacy-plate", ParkingType.BIKE, DAY_START + 2 * HOUR_MILLIS, DAY_START + 3 * HOUR_MILLIS, 1.0),
+                    ticket(5, "EF456GH", ParkingType.BIKE, DAY_START + 2 * HOUR_MILLIS, DAY_START + 3 * HOUR_MILLIS, 1.0)));
+            store.commit(DAY_START + 3 * HOUR_MILLIS);
+
+            // THEN
+            assertArrayEquals(new int[]{0, 1, 2}, store.visitDistribution(2));
+        }
+    }
+
+    @Test
+    public void givenUncommittedTickets_whenReopened_thenDropped() throws IOException {
+        // GIVEN
+        try (TicketColumnStore store = TicketColumnStore.open(directory)) {
+            store.append(Collections.singletonList(ticket(1, "AAA", ParkingType.CAR, DAY_START, 0, 0)));
+            store.commit(0);
+            store.append(Collections.singletonList(ticket(2, "BBB", ParkingType.CAR, DAY_START, 0, 0)));
+        }
+
+        // WHEN
+        try (TicketColumnStore store = TicketColumnStore.open(directory)) {
+
+            // THEN
+            assertEquals(1, store.getRowCount());
+            assertEquals(1, store.getMaxTicketId());
+            assertEquals(1, store.visitDistribution(5)[1]);
+        }
+    }
+
+    @Test
+    public void givenOpenTicketClosedLater_whenSync_thenUpdatedInPlace() throws IOException {
+        // GIVEN
+        List<Ticket> tickets = new ArrayList<>();
+        for (int id = 1; id <= 5; id++) {
+            tickets.add(ticket(id, "P" + id, ParkingType.CAR, DAY_START + id * HOUR_MILLIS, 0, 0));
+        }
+        when(ticketDAO.getTicketsAfter(anyInt(), anyInt())).thenAnswer(invocation -> tickets.stream()
+                .filter(t -> t.getId() > invocation.<Integer>getArgument(0))
+                .limit(invocation.<Integer>getArgument(1))
+                .collect(Collectors.toList()));
+        when(ticketDAO.getTicketsClosedSince(anyInt(), any(Date.class))).thenAnswer(invocation -> tickets.stream()
+                .filter(t -> t.getId() <= invocation.<Integer>getArgument(0) && t.getOutTime() != null)
+                .collect(Collectors.toList()));
+        try (TicketColumnStore store = TicketColumnStore.open(directory)) {
+            TicketColumnSyncService syncService = new TicketColumnSyncService(ticketDAO, store, 2);
+            assertEquals(5, syncService.sync());
+            tickets.get(3).setOutTime(new Date(DAY_START + 6 * HOUR_MILLIS));
+            tickets.get(3).setPrice(2.5);
+
+            // WHEN
+            int synced = syncService.sync();
+
+            // THEN
+            assertEquals(1, synced);
+            assertEquals(5, store.getRowCount());
+            assertEquals(250, store.revenueCentsByType(DAY_START, DAY_START + 24 * HOUR_MILLIS)[ParkingType.CAR.ordinal()]);
+            assertArrayEquals(new int[24], store.staysPerHourOfDay(0, DAY_START, ZoneId.of("Europe/Paris")));
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.AsyncParkingDAO;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.VehiclePrefetcher;
+import com.parkit.parkingsystem.service.VehiclePrefetcher.VehicleContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.mockito.Mockito.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+public class VehiclePrefetcherTest {
+
+    @Mock
+    private TicketDAO ticketDAO;
+    @Mock
+    private ParkingSpotDAO parkingSpotDAO;
+    private AsyncParkingDAO asyncParkingDAO;
+
+    @BeforeEach
+    public void setUpPerTest() {
+        //the lookups run on the calling thread
+        asyncParkingDAO = new AsyncParkingDAO(ticketDAO, parkingSpotDAO, Runnable::run);
+    }
+
+    private void stubFreeSpot() {
+        when(parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR)).thenReturn(3);
+        when(parkingSpotDAO.claimParking(any(ParkingSpot.class), eq("ABCDEF"))).thenReturn(true);
+    }
+
+    @Test
+    public void givenPlateSighted_whenTake_thenContextWithHeldSpot() {
+        // GIVEN
+        when(ticketDAO.getNumberTicket("ABCDEF")).thenReturn(2);
+        stubFreeSpot();
+        VehiclePrefetcher vehiclePrefetcher = new VehiclePrefetcher(asyncParkingDAO, parkingSpotDAO, 60000, 10);
+        vehiclePrefetcher.plateSighted("ABCDEF", ParkingType.CAR);
+
+        // WHEN
+        VehicleContext context = vehiclePrefetcher.take("ABCDEF");
+
+        // THEN
+        assertNotNull(context);
+        assertEquals(2, context.getNbTickets().join().intValue());
+        assertEquals(3, context.getHeldSpot().join().getId());
+        assertNull(vehiclePrefetcher.take("ABCDEF"));
+        verify(parkingSpotDAO, never()).releaseParking(any(ParkingSpot.class), anyString());
+    }
+
+    @Test
+    public void givenPlateReadInLowerCase_whenTake_thenSameContext() {
+        // GIVEN
+        stubFreeSpot();
+        VehiclePrefetcher vehiclePrefetcher = new VehiclePrefetcher(asyncParkingDAO, parkingSpotDAO, 60000, 10);
+        vehiclePrefetcher.plateSighted("abcdef ", ParkingType.CAR);
+        vehiclePrefetcher.plateSighted("ABCDEF", ParkingType.CAR);
+
+        // WHEN
+        VehicleContext context = vehiclePrefetcher.take(" AbcDef");
+
+        // THEN
+        assertNotNull(context);
+        verify(parkingSpotDAO, times(1)).claimParking(any(ParkingSpot.class), eq("ABCDEF"));
+    }
+
+    @Test
+    public void givenParkedVehicleSighted_whenTake_thenNoSpotHeld() {
+        // GIVEN
+        Ticket openTicket = new Ticket();
+        openTicket.setVehicleRegNumber("ABCDEF");
+        when(ticketDAO.getTicket("ABCDEF")).thenReturn(openTicket);
+        VehiclePrefetcher vehiclePrefetcher = new VehiclePrefetcher(asyncParkingDAO, parkingSpotDAO, 60000, 10);
+        vehiclePrefetcher.plateSighted("ABCDEF", ParkingType.CAR);
+
+        // WHEN
+        VehicleContext context = vehiclePrefetcher.take("ABCDEF");
+
+        // THEN
+        assertSame(openTicket, context.getTicket().join());
+        assertNull(context.getHeldSpot().join());
+        verify(parkingSpotDAO, never()).claimParking(any(ParkingSpot.class), anyString());
+    }
+
+    @Test
+    public void givenContextNeverUsed_whenExpired_thenHeldSpotReleased() throws InterruptedException {
+        // GIVEN
+        stubFreeSpot();
+        VehiclePrefetcher vehiclePrefetcher = new VehiclePrefetcher(asyncParkingDAO, parkingSpotDAO, 10, 10);
+        vehiclePrefetcher.plateSighted("ABCDEF", ParkingType.CAR);
+        Thread.sleep(50);
+
+        // WHEN
+        VehicleContext context = vehiclePrefetcher.take("ABCDEF");
+
+        // THEN
+        assertNull(context);
+        verify(parkingSpotDAO, times(1)).releaseParking(argThat(releasedSpot -> releasedSpot.getId() == 3), eq("ABCDEF"));
+    }
+}
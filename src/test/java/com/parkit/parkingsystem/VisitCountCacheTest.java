@@ -0,0 +1,61 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.cache.VisitCountCache;
+import com.parkit.parkingsystem.util.LongIntHashMap;
+import com.parkit.parkingsystem.util.PlateKey;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VisitCountCacheTest {
+
+    @Test
+    public void givenMoreVehiclesThanMaxSize_whenPut_thenOlderOnesEvicted() {
+        // GIVEN
+        VisitCountCache visitCountCache = new VisitCountCache(64);
+
+        // WHEN
+        for (int i = 1; i <= 10000; i++) {
+            visitCountCache.put("V" + i, i);
+        }
+        visitCountCache.increment("V10000");
+
+        // THEN
+        assertTrue(visitCountCache.size() <= 64);
+        assertTrue(visitCountCache.size() >= 16);
+        assertEquals(10001, visitCountCache.get("V10000"));
+    }
+
+    @Test
+    public void givenRandomOperations_whenMapped_thenSameAsHashMap() {
+        // GIVEN
+        Random random = new Random(30);
+        LongIntHashMap map = new LongIntHashMap();
+        Map<Long, Integer> expected = new HashMap<>();
+
+        // WHEN
+        for (int i = 0; i < 100000; i++) {
+            long key = PlateKey.pack(Integer.toString(random.nextInt(2000)));
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key) != null, map.remove(key));
+            } else if (random.nextInt(10) == 0 && map.size() > 0) {
+                assertTrue(expected.containsKey(map.anyKey(random.nextLong())));
+            } else {
+                int value = random.nextInt();
+                expected.put(key, value);
+                map.put(key, value);
+            }
+        }
+
+        // THEN
+        assertEquals(expected.size(), map.size());
+        for (int i = 0; i < 2000; i++) {
+            long key = PlateKey.pack(Integer.toString(i));
+            assertEquals(expected.getOrDefault(key, -1).intValue(), map.get(key, -1));
+        }
+    }
+}
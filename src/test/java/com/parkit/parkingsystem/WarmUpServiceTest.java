@@ -0,0 +1,94 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.service.SnapshotService;
+import com.parkit.parkingsystem.service.WarmUpService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.sql.Connection;
+
+import static org.mockito.Mockito.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+public class WarmUpServiceTest {
+
+    @Mock
+    private ParkingSpotDAO parkingSpotDAO;
+    @Mock
+    private TicketDAO ticketDAO;
+    @Mock
+    private DataBaseConfig dataBaseConfig;
+    @Mock
+    private Connection connection;
+    @Mock
+    private SnapshotService snapshotService;
+
+    @BeforeEach
+    public void setUpPerTest() throws Exception {
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        when(dataBaseConfig.getConnection()).thenReturn(connection);
+    }
+
+    @Test
+    public void givenNoSnapshot_whenWarmUp_thenCachesLoadedFromDataBase() throws Exception {
+        // GIVEN
+        when(connection.isValid(anyInt())).thenReturn(true);
+        when(parkingSpotDAO.getParkingCapacity()).thenReturn(5);
+        WarmUpService warmUpService = new WarmUpService(parkingSpotDAO, ticketDAO);
+
+        // WHEN
+        warmUpService.warmUp();
+
+        // THEN
+        InOrder inOrder = inOrder(dataBaseConfig, ticketDAO, parkingSpotDAO);
+        inOrder.verify(dataBaseConfig).getConnection();
+        inOrder.verify(dataBaseConfig).closeConnection(connection);
+        inOrder.verify(ticketDAO).warmUpSpotRegistry();
+        inOrder.verify(parkingSpotDAO).getParkingCapacity();
+        inOrder.verify(ticketDAO).warmUpOpenTicketCache(5);
+        inOrder.verify(parkingSpotDAO).loadAvailability();
+    }
+
+    @Test
+    public void givenSnapshot_whenWarmUp_thenCachesRestoredFromIt() throws Exception {
+        // GIVEN
+        when(connection.isValid(anyInt())).thenReturn(true);
+        when(snapshotService.restore()).thenReturn(true);
+        WarmUpService warmUpService = new WarmUpService(parkingSpotDAO, ticketDAO, snapshotService);
+
+        // WHEN
+        warmUpService.warmUp();
+
+        // THEN
+        InOrder inOrder = inOrder(dataBaseConfig, ticketDAO, snapshotService);
+        inOrder.verify(dataBaseConfig).getConnection();
+        inOrder.verify(ticketDAO).warmUpSpotRegistry();
+        inOrder.verify(snapshotService).restore();
+        verify(ticketDAO, never()).warmUpOpenTicketCache(anyInt());
+        verify(parkingSpotDAO, never()).loadAvailability();
+    }
+
+    @Test
+    public void givenInvalidConnection_whenWarmUp_thenCachesNotLoaded() throws Exception {
+        // GIVEN
+        when(connection.isValid(anyInt())).thenReturn(false);
+        WarmUpService warmUpService = new WarmUpService(parkingSpotDAO, ticketDAO);
+
+        // WHEN
+        long elapsedNanos = warmUpService.warmUp();
+
+        // THEN
+        verify(dataBaseConfig, times(1)).closeConnection(connection);
+        verifyZeroInteractions(ticketDAO);
+        verify(parkingSpotDAO, never()).loadAvailability();
+        assertTrue(elapsedNanos > 0);
+    }
+}
@@ -1,13 +1,21 @@
 package com.parkit.parkingsystem.integration;
 
+import com.parkit.parkingsystem.constants.ParkingType;
 import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketArchiveDAO;
 import com.parkit.parkingsystem.dao.TicketDAO;
 import com.parkit.parkingsystem.integration.config.DataBaseTestConfig;
 import com.parkit.parkingsystem.integration.service.DataBasePrepareService;
 import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.SpotImportResult;
+import com.parkit.parkingsystem.model.SpotReconciliationResult;
 import com.parkit.parkingsystem.model.Ticket;
 import com.parkit.parkingsystem.service.FareCalculatorService;
 import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.service.SpotImportService;
+import com.parkit.parkingsystem.service.SpotRefreshService;
+import com.parkit.parkingsystem.service.SpotReconciliationService;
+import com.parkit.parkingsystem.service.TicketArchiveService;
 import com.parkit.parkingsystem.util.InputReaderUtil;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
@@ -20,7 +28,11 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.Map;
 
 @ExtendWith(MockitoExtension.class)
 public class ParkingDataBaseIT {
@@ -45,9 +57,9 @@ public class ParkingDataBaseIT {
 
     @BeforeEach
     private void setUpPerTest() throws Exception {
-        when(inputReaderUtil.readSelection()).thenReturn(1);
-        when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn("ABCDEF");
         dataBasePrepareService.clearDataBaseEntries();
+        ticketDAO.openTicketCache.clear();
+        ticketDAO.visitCountCache.clear();
     }
 
     @AfterAll
@@ -55,9 +67,15 @@ public class ParkingDataBaseIT {
 
     }
 
+    private void stubGateInput() throws Exception {
+        when(inputReaderUtil.readSelection()).thenReturn(1);
+        when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn("ABCDEF");
+    }
+
     @Test
-    public void givenParkingSlotAvailable_whenProcessIncomingCar_thenTicketIsSaved() {
+    public void givenParkingSlotAvailable_whenProcessIncomingCar_thenTicketIsSaved() throws Exception {
         // GIVEN
+        stubGateInput();
         ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
 
         // WHEN
@@ -69,8 +87,9 @@ public class ParkingDataBaseIT {
     }
 
     @Test
-    public void givenParkingSlotAvailable_whenProcessIncomingCar_thenParkingAvailabilityIsUpdated() {
+    public void givenParkingSlotAvailable_whenProcessIncomingCar_thenParkingAvailabilityIsUpdated() throws Exception {
         // GIVEN
+        stubGateInput();
         ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
 
         // WHEN
@@ -84,8 +103,9 @@ public class ParkingDataBaseIT {
     }
 
     @Test
-    public void givenEverythingOK_whenProcessExitingVehicle_thenTicketIsUpdated() {
+    public void givenEverythingOK_whenProcessExitingVehicle_thenTicketIsUpdated() throws Exception {
         // GIVEN
+        stubGateInput();
         ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
         parkingService.processIncomingVehicle();
 
@@ -106,8 +126,9 @@ public class ParkingDataBaseIT {
     }
 
     @Test
-    public void givenRecurringUser_whenProcessExitingVehicle_thenApplyDiscount() {
+    public void givenRecurringUser_whenProcessExitingVehicle_thenApplyDiscount() throws Exception {
         // GIVEN
+        stubGateInput();
         // user first visit
         System.out.println("First visit");
         ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
@@ -145,4 +166,140 @@ public class ParkingDataBaseIT {
         assertEquals(Math.round(firstPrice * 0.95*100.0)/100.0, secondPrice, 0.01);
     }
 
+    @Test
+    public void givenOldClosedTicket_whenArchiveClosedTickets_thenVisitIsStillCounted() {
+        // GIVEN
+        Ticket oldTicket = new Ticket();
+        oldTicket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, true));
+        oldTicket.setVehicleRegNumber("ABCDEF");
+        oldTicket.setInTime(new Date(System.currentTimeMillis() - (100L * 24 * 60 * 60 * 1000)));
+        oldTicket.setOutTime(new Date(oldTicket.getInTime().getTime() + (60 * 60 * 1000)));
+        ticketDAO.saveTicket(oldTicket);
+        TicketArchiveDAO ticketArchiveDAO = new TicketArchiveDAO();
+        ticketArchiveDAO.dataBaseConfig = dataBaseTestConfig;
+        TicketArchiveService ticketArchiveService = new TicketArchiveService(ticketArchiveDAO, 30, 10, 0);
+
+        // WHEN
+        int archived = ticketArchiveService.archiveClosedTickets();
+
+        // THEN
+        assertEquals(1, archived);
+        assertNull(ticketDAO.getTicket("ABCDEF"));
+        assertEquals(1, ticketDAO.getNumberTicket("ABCDEF"));
+    }
+
+    @Test
+    public void givenSeveralVehicles_whenGetTicketsAndNumberTickets_thenLatestTicketAndCountPerVehicle() {
+        // GIVEN
+        Ticket firstVisit = new Ticket();
+        firstVisit.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        firstVisit.setVehicleRegNumber("ABCDEF");
+        firstVisit.setInTime(new Date(System.currentTimeMillis() - (2 * 60 * 60 * 1000)));
+        firstVisit.setOutTime(new Date(System.currentTimeMillis() - (60 * 60 * 1000)));
+        ticketDAO.saveTicket(firstVisit);
+        Ticket secondVisit = new Ticket();
+        secondVisit.setParkingSpot(new ParkingSpot(2, ParkingType.CAR, false));
+        secondVisit.setVehicleRegNumber("ABCDEF");
+        secondVisit.setInTime(new Date(System.currentTimeMillis() - (30 * 60 * 1000)));
+        ticketDAO.saveTicket(secondVisit);
+        Ticket otherVehicle = new Ticket();
+        otherVehicle.setParkingSpot(new ParkingSpot(4, ParkingType.BIKE, false));
+        otherVehicle.setVehicleRegNumber("GHIJKL");
+        otherVehicle.setInTime(new Date(System.currentTimeMillis() - (10 * 60 * 1000)));
+        ticketDAO.saveTicket(otherVehicle);
+        ticketDAO.openTicketCache.clear();
+        ticketDAO.visitCountCache.clear();
+
+        // WHEN
+        Map<String, Ticket> tickets = ticketDAO.getTickets(Arrays.asList("ABCDEF", "GHIJKL", "MNOPQR"));
+        int[] numberTickets = ticketDAO.getNumberTickets(Arrays.asList("GHIJKL", "MNOPQR", "ABCDEF"));
+
+        // THEN
+        assertEquals(2, tickets.size());
+        assertEquals(secondVisit.getId(), tickets.get("ABCDEF").getId());
+        assertEquals(ParkingType.BIKE, tickets.get("GHIJKL").getParkingSpot().getParkingType());
+        assertArrayEquals(new int[]{1, 0, 2}, numberTickets);
+    }
+
+    @Test
+    public void givenLegacyLowerCasePlate_whenGetTicketsAndNumberTickets_thenTicketIsFound() {
+        // GIVEN
+        Ticket legacyTicket = new Ticket();
+        legacyTicket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        legacyTicket.setVehicleRegNumber("abcdef");
+        legacyTicket.setInTime(new Date(System.currentTimeMillis() - (60 * 60 * 1000)));
+        ticketDAO.saveTicket(legacyTicket);
+        ticketDAO.openTicketCache.clear();
+        ticketDAO.visitCountCache.clear();
+
+        // WHEN
+        Map<String, Ticket> tickets = ticketDAO.getTickets(Arrays.asList("ABCDEF", "GHIJKL"));
+        int[] numberTickets = ticketDAO.getNumberTickets(Arrays.asList("ABCDEF", "GHIJKL"));
+
+        // THEN
+        assertEquals(1, tickets.size());
+        assertEquals(legacyTicket.getId(), tickets.get("ABCDEF").getId());
+        assertArrayEquals(new int[]{1, 0}, numberTickets);
+    }
+
+    @Test
+    public void givenSpotDefinitionFile_whenImportSpots_thenValidSpotsAreAdded() throws Exception {
+        // GIVEN
+        Path file = Files.createTempFile("spots", ".csv");
+        Files.write(file, Arrays.asList("# number,type,level,attributes", "100,CAR,1,EV", "101,bike,1",
+                "102,TRUCK,1", "3,CAR,0"));
+        parkingSpotDAO.loadAvailability();
+        int totalCars = parkingSpotDAO.spotAvailabilityCache.getTotal(ParkingType.CAR);
+        //the import runs in its own process, with its own caches
+        ParkingSpotDAO importParkingSpotDAO = new ParkingSpotDAO();
+        importParkingSpotDAO.dataBaseConfig = dataBaseTestConfig;
+        SpotImportService spotImportService = new SpotImportService(importParkingSpotDAO, new TicketDAO(), 2);
+        SpotRefreshService spotRefreshService = new SpotRefreshService(parkingSpotDAO, ticketDAO);
+
+        // WHEN
+        SpotImportResult result = spotImportService.importSpots(file);
+        int refreshed = spotRefreshService.refresh();
+
+        // THEN
+        assertTrue(result.isCompleted());
+        assertEquals(2, result.getSpotsAdded());
+        assertEquals(1, result.getSpotsSkipped());
+        assertEquals(1, result.getInvalidLines().size());
+        assertEquals(2, refreshed);
+        assertEquals(totalCars + 1, parkingSpotDAO.spotAvailabilityCache.getTotal(ParkingType.CAR));
+        assertEquals(totalCars + 1, parkingSpotDAO.spotAvailabilityCache.getFree(ParkingType.CAR));
+        assertFalse(Files.exists(file.resolveSibling(file.getFileName() + SpotImportService.PROGRESS_SUFFIX)));
+        Files.delete(file);
+    }
+
+    @Test
+    public void givenSpotsDriftedFromOpenTickets_whenReconcile_thenSpotsAreRepaired() {
+        // GIVEN
+        //spot taken by an entry that never saved its ticket
+        parkingSpotDAO.updateParking(new ParkingSpot(1, ParkingType.CAR, false));
+        //spot just claimed by an entry still saving its ticket
+        parkingSpotDAO.claimParking(new ParkingSpot(2, ParkingType.CAR, true), "GHIJKL");
+        //ticket saved on a spot that was never taken
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(4, ParkingType.BIKE, false));
+        ticket.setVehicleRegNumber("ABCDEF");
+        ticket.setInTime(new Date(System.currentTimeMillis() - (60 * 60 * 1000)));
+        ticketDAO.saveTicket(ticket);
+        parkingSpotDAO.loadAvailability();
+        SpotReconciliationService spotReconciliationService = new SpotReconciliationService(parkingSpotDAO, 2, 60);
+
+        // WHEN
+        SpotReconciliationResult result = spotReconciliationService.reconcile();
+
+        // THEN
+        assertEquals(1, result.getSpotsFreed());
+        assertEquals(1, result.getSpotsTaken());
+        assertEquals(0, result.getDoubleBookedSpots());
+        assertEquals(0, result.getFailedRanges());
+        assertEquals(1, parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR));
+        assertEquals(5, parkingSpotDAO.getNextAvailableSlot(ParkingType.BIKE));
+        assertEquals(2, parkingSpotDAO.spotAvailabilityCache.getFree(ParkingType.CAR));
+        assertEquals(1, parkingSpotDAO.spotAvailabilityCache.getFree(ParkingType.BIKE));
+    }
+
 }
@@ -0,0 +1,121 @@
+package com.parkit.parkingsystem.integration;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.integration.config.DataBaseTestConfig;
+import com.parkit.parkingsystem.integration.service.DataBasePrepareService;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Several gate nodes, each with its own DAOs and connections, parking vehicles at the same time:
+ * every spot must be given to one vehicle only. The throughput per number of nodes is printed.
+ */
+public class ParkingSpotContentionIT {
+
+    private static final int NB_SPOTS = 200;
+    private static final int FIRST_SPOT = 1000;
+
+    private static DataBaseTestConfig dataBaseTestConfig = new DataBaseTestConfig();
+    private static DataBasePrepareService dataBasePrepareService = new DataBasePrepareService();
+
+    private static void provisionSpots() {
+        dataBasePrepareService.clearDataBaseEntries();
+        List<ParkingSpot> parkingSpots = new ArrayList<>();
+        for (int i = 0; i < NB_SPOTS; i++) {
+            parkingSpots.add(new ParkingSpot(FIRST_SPOT + i, ParkingType.CAR, true));
+        }
+        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseTestConfig;
+        parkingSpotDAO.importParkingSpots(parkingSpots);
+    }
+
+    @AfterAll
+    private static void tearDown() {
+        dataBasePrepareService.clearDataBaseEntries();
+    }
+
+    @Test
+    public void givenConcurrentNodes_whenVehiclesEnter_thenEachSpotIsGivenOnce() throws Exception {
+        for (int nbNodes : new int[]{1, 2, 4, 8}) {
+            provisionSpots();
+            Metrics.reset();
+            int nbVehicles = NB_SPOTS;
+
+            long start = System.nanoTime();
+            int parked = parkConcurrently(nbNodes, nbVehicles);
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            System.out.println(String.format("%d nodes: %d vehicles parked in %d ms (%.0f/s), %d claim conflicts",
+                    nbNodes, parked, elapsedMillis, parked * 1000.0 / Math.max(1, elapsedMillis),
+                    Metrics.getCount("parking.claim.conflict")));
+            assertEquals(NB_SPOTS, parked);
+            assertEquals(parked, countRows("select count(*) from ticket"));
+            assertEquals(parked, countRows("select count(distinct PARKING_NUMBER) from ticket"));
+            assertEquals(parked, countRows("select count(*) from parking where AVAILABLE = false"));
+        }
+    }
+
+    private static int parkConcurrently(int nbNodes, int nbVehicles) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(nbNodes);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int node = 0; node < nbNodes; node++) {
+                int firstVehicle = node;
+                results.add(executor.submit(() -> {
+                    ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+                    parkingSpotDAO.dataBaseConfig = dataBaseTestConfig;
+                    TicketDAO ticketDAO = new TicketDAO();
+                    ticketDAO.dataBaseConfig = dataBaseTestConfig;
+                    ParkingService parkingService = new ParkingService(null, parkingSpotDAO, ticketDAO);
+                    int parked = 0;
+                    for (int vehicle = firstVehicle; vehicle < nbVehicles; vehicle += nbNodes) {
+                        if (parkingService.processIncomingVehicle(ParkingType.CAR, "CONT" + vehicle) != null) {
+                            parked++;
+                        }
+                    }
+                    return parked;
+                }));
+            }
+            int parked = 0;
+            for (Future<Integer> result : results) {
+                parked += result.get();
+            }
+            return parked;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static int countRows(String query) throws Exception {
+        Connection con = null;
+        try {
+            con = dataBaseTestConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(query);
+            ResultSet rs = ps.executeQuery();
+            rs.next();
+            int count = rs.getInt(1);
+            dataBaseTestConfig.closeResultSet(rs);
+            dataBaseTestConfig.closePreparedStatement(ps);
+            return count;
+        } finally {
+            dataBaseTestConfig.closeConnection(con);
+        }
+    }
+}
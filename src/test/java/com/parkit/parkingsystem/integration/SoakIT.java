@@ -0,0 +1,317 @@
+package com.parkit.parkingsystem.integration;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.cache.PassIndex;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.PassDAO;
+import com.parkit.parkingsystem.dao.ReportDAO;
+import com.parkit.parkingsystem.dao.TicketArchiveDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.integration.config.DataBaseTestConfig;
+import com.parkit.parkingsystem.integration.service.DataBasePrepareService;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.metrics.SqlProfiler;
+import com.parkit.parkingsystem.metrics.SqlStatistics;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.service.GateEventDeduplicator;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.service.PassRefreshService;
+import com.parkit.parkingsystem.service.ReportingService;
+import com.parkit.parkingsystem.service.TicketArchiveService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Weeks of gate traffic replayed in minutes against the test database: the clock of the gates
+ * jumps from one simulated arrival or departure to the next. After each simulated day, the mean
+ * latency of the gate operations, of the pass refresh, of the report of the day and of every SQL
+ * statement is written against the size of the ticket table, so that a latency growing with the table shows up before production.
+ * Skipped unless the number of days is given, e.g. -Dparkit.soak.days=28; the vehicles per day,
+ * the retention of the archiving job and the report file can be set with parkit.soak.vehicles,
+ * parkit.soak.retention.days and parkit.soak.report.
+ */
+@EnabledIfSystemProperty(named = "parkit.soak.days", matches = "[1-9][0-9]*")
+public class SoakIT {
+
+    private static final int NB_SPOTS = 300;
+    private static final int FIRST_SPOT = 1000;
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final long MIN_STAY_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    private static final long MEAN_STAY_MILLIS = TimeUnit.HOURS.toMillis(2);
+    //2024-01-01T00:00:00Z
+    private static final long START_MILLIS = 1704067200000L;
+    //an operation whose mean latency grew this much between the first and the last day is reported
+    private static final double GROWTH_WARNING_RATIO = 3;
+
+    private static final DataBaseTestConfig dataBaseTestConfig = new ProfiledDataBaseTestConfig();
+    private static final DataBasePrepareService dataBasePrepareService = new DataBasePrepareService();
+
+    @AfterAll
+    private static void tearDown() throws Exception {
+        dataBasePrepareService.clearDataBaseEntries();
+        //the monthly tables created by the archiving job
+        ReportDAO reportDAO = new ReportDAO();
+        reportDAO.dataBaseConfig = dataBaseTestConfig;
+        Connection con = null;
+        try {
+            con = dataBaseTestConfig.getConnection();
+            for (String table : reportDAO.getTicketHistoryTables()) {
+                PreparedStatement ps = con.prepareStatement("drop table " + table);
+                ps.execute();
+                dataBaseTestConfig.closePreparedStatement(ps);
+            }
+        } finally {
+            dataBaseTestConfig.closeConnection(con);
+        }
+    }
+
+    @Test
+    public void givenWeeksOfTraffic_whenReplayed_thenLatencyReportedAgainstTableSize() throws Exception {
+        int days = Integer.getInteger("parkit.soak.days");
+        int vehiclesPerDay = Integer.getInteger("parkit.soak.vehicles", 2000);
+        Integer retentionDays = Integer.getInteger("parkit.soak.retention.days");
+        Path report = Paths.get(System.getProperty("parkit.soak.report", "target/soak-report.csv"));
+
+        provisionSpots();
+        SimulatedClock clock = new SimulatedClock(START_MILLIS);
+        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseTestConfig;
+        TicketDAO ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseTestConfig;
+        //the passes and the reports follow the simulated days too
+        PassIndex passIndex = new PassIndex();
+        PassDAO passDAO = new PassDAO();
+        passDAO.dataBaseConfig = dataBaseTestConfig;
+        PassRefreshService passRefreshService = new PassRefreshService(passDAO, passIndex);
+        passRefreshService.setClock(clock);
+        passRefreshService.reload();
+        ReportDAO reportDAO = new ReportDAO();
+        reportDAO.dataBaseConfig = dataBaseTestConfig;
+        ReportingService reportingService = new ReportingService(reportDAO);
+        reportingService.setClock(clock);
+        ParkingService parkingService = new ParkingService(null, parkingSpotDAO, ticketDAO);
+        parkingService.setFareCalculatorService(new FareCalculatorService(passIndex));
+        parkingService.setClock(clock);
+        //a vehicle can be back within seconds of wall clock time
+        parkingService.setGateEventDeduplicator(new GateEventDeduplicator(0, 0));
+        TicketArchiveService ticketArchiveService = null;
+        if (retentionDays != null) {
+            TicketArchiveDAO ticketArchiveDAO = new TicketArchiveDAO();
+            ticketArchiveDAO.dataBaseConfig = dataBaseTestConfig;
+            ticketArchiveService = new TicketArchiveService(ticketArchiveDAO, retentionDays,
+                    TicketArchiveService.DEFAULT_BATCH_SIZE, 0);
+            ticketArchiveService.setClock(clock);
+        }
+
+        Random random = new Random(50);
+        //regular users come back, so that the history of a plate grows too
+        int population = Math.max(NB_SPOTS, vehiclesPerDay / 2);
+        Set<String> parked = new HashSet<>();
+        PriorityQueue<GateMove> moves = new PriorityQueue<>();
+        Map<String, Metrics.Timer> firstDay = null;
+        Map<String, Metrics.Timer> lastDay = null;
+        int failedExits = 0;
+        PrintStream out = System.out;
+        Files.createDirectories(report.toAbsolutePath().getParent());
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(report, StandardCharsets.UTF_8))) {
+            writer.println("day,ticket_rows,operation,count,mean_ms,max_ms");
+            //the gates print a line per vehicle
+            System.setOut(new PrintStream(new OutputStream() {
+                @Override
+                public void write(int b) {
+                }
+            }));
+            for (int day = 0; day < days; day++) {
+                long dayStart = START_MILLIS + day * DAY_MILLIS;
+                for (int i = 0; i < vehiclesPerDay; i++) {
+                    moves.add(new GateMove(dayStart + (long) (random.nextDouble() * DAY_MILLIS),
+                            "SOAK" + random.nextInt(population), true));
+                }
+                Map<String, Metrics.Timer> timers = new LinkedHashMap<>();
+                timers.put("gate.entry", new Metrics.Timer());
+                timers.put("gate.exit", new Metrics.Timer());
+                SqlProfiler.reset();
+                while (!moves.isEmpty() && moves.peek().atMillis < dayStart + DAY_MILLIS) {
+                    GateMove move = moves.poll();
+                    clock.setMillis(move.atMillis);
+                    long start = System.nanoTime();
+                    if (move.entry) {
+                        if (!parked.add(move.vehicleRegNumber)) {
+                            continue;
+                        }
+                        boolean entered = parkingService.processIncomingVehicle(ParkingType.CAR, move.vehicleRegNumber) != null;
+                        timers.get("gate.entry").record(System.nanoTime() - start);
+                        if (entered) {
+                            long stayMillis = MIN_STAY_MILLIS + (long) (-Math.log(1 - random.nextDouble()) * MEAN_STAY_MILLIS);
+                            moves.add(new GateMove(move.atMillis + stayMillis, move.vehicleRegNumber, false));
+                        } else {
+                            parked.remove(move.vehicleRegNumber);
+                        }
+                    } else {
+                        if (parkingService.processExitingVehicle(move.vehicleRegNumber) == null) {
+                            failedExits++;
+                        }
+                        timers.get("gate.exit").record(System.nanoTime() - start);
+                        parked.remove(move.vehicleRegNumber);
+                    }
+                }
+                clock.setMillis(dayStart + DAY_MILLIS);
+                if (ticketArchiveService != null) {
+                    long start = System.nanoTime();
+                    ticketArchiveService.archiveClosedTickets();
+                    timers.computeIfAbsent("archive", name -> new Metrics.Timer()).record(System.nanoTime() - start);
+                }
+                long refreshStart = System.nanoTime();
+                passRefreshService.refresh();
+                timers.computeIfAbsent("pass.refresh", name -> new Metrics.Timer()).record(System.nanoTime() - refreshStart);
+                long reportStart = System.nanoTime();
+                LocalDate reportDay = LocalDate.now(clock).minusDays(1);
+                reportingService.getDailyReports(reportDay, reportDay);
+                timers.computeIfAbsent("report", name -> new Metrics.Timer()).record(System.nanoTime() - reportStart);
+                for (SqlStatistics sqlStatistics : SqlProfiler.getStatistics()) {
+                    timers.put(sqlStatistics.getSql(), sqlStatistics.getExecutions());
+                }
+
+                int ticketRows = countRows("select count(*) from ticket");
+                for (Map.Entry<String, Metrics.Timer> timer : timers.entrySet()) {
+                    writer.println(String.format("%d,%d,\"%s\",%d,%.3f,%.3f", day + 1, ticketRows,
+                            timer.getKey().replace("\"", "\"\""), timer.getValue().getCount(),
+                            timer.getValue().getMeanMillis(), timer.getValue().getMaxNanos() / 1e6));
+                }
+                writer.flush();
+                out.println(String.format("Day %d: %d tickets, entry %s, exit %s", day + 1, ticketRows,
+                        timers.get("gate.entry"), timers.get("gate.exit")));
+                if (firstDay == null) {
+                    firstDay = timers;
+                }
+                lastDay = timers;
+            }
+        } finally {
+            System.setOut(out);
+        }
+
+        for (Map.Entry<String, Metrics.Timer> timer : lastDay.entrySet()) {
+            Metrics.Timer first = firstDay.get(timer.getKey());
+            if (first != null && first.getCount() > 0 && timer.getValue().getMeanMillis() > GROWTH_WARNING_RATIO * first.getMeanMillis()) {
+                System.out.println(String.format("Latency grew from %.3f ms to %.3f ms: %s", first.getMeanMillis(),
+                        timer.getValue().getMeanMillis(), timer.getKey()));
+            }
+        }
+        System.out.println("Soak report written to " + report.toAbsolutePath());
+        assertEquals(0, failedExits);
+    }
+
+    private static void provisionSpots() {
+        dataBasePrepareService.clearDataBaseEntries();
+        List<ParkingSpot> parkingSpots = new ArrayList<>();
+        for (int i = 0; i < NB_SPOTS; i++) {
+            parkingSpots.add(new ParkingSpot(FIRST_SPOT + i, ParkingType.CAR, true));
+        }
+        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseTestConfig;
+        parkingSpotDAO.importParkingSpots(parkingSpots);
+    }
+
+    private static int countRows(String query) throws Exception {
+        Connection con = null;
+        try {
+            con = dataBaseTestConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(query);
+            ResultSet rs = ps.executeQuery();
+            rs.next();
+            int count = rs.getInt(1);
+            dataBaseTestConfig.closeResultSet(rs);
+            dataBaseTestConfig.closePreparedStatement(ps);
+            return count;
+        } finally {
+            dataBaseTestConfig.closeConnection(con);
+        }
+    }
+
+    private static class GateMove implements Comparable<GateMove> {
+        private final long atMillis;
+        private final String vehicleRegNumber;
+        private final boolean entry;
+
+        private GateMove(long atMillis, String vehicleRegNumber, boolean entry) {
+            this.atMillis = atMillis;
+            this.vehicleRegNumber = vehicleRegNumber;
+            this.entry = entry;
+        }
+
+        @Override
+        public int compareTo(GateMove other) {
+            return Long.compare(atMillis, other.atMillis);
+        }
+    }
+
+    private static class SimulatedClock extends Clock {
+        private volatile long millis;
+
+        private SimulatedClock(long millis) {
+            this.millis = millis;
+        }
+
+        private void setMillis(long millis) {
+            this.millis = millis;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+    }
+
+    //the test configuration opens plain connections, the statements are profiled as in production
+    private static class ProfiledDataBaseTestConfig extends DataBaseTestConfig {
+        @Override
+        public Connection getConnection() throws ClassNotFoundException, SQLException {
+            return SqlProfiler.profile(super.getConnection(), this);
+        }
+    }
+}
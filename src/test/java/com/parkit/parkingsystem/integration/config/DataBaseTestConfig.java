@@ -14,7 +14,7 @@ public class DataBaseTestConfig extends DataBaseConfig {
         logger.info("Create DB connection");
         Class.forName("com.mysql.cj.jdbc.Driver");
         return DriverManager.getConnection(
-                "jdbc:mysql://localhost:3306/test?serverTimezone=UTC","root","rootroot");
+                "jdbc:mysql://localhost:3306/test?serverTimezone=UTC&rewriteBatchedStatements=true","root","rootroot");
     }
 
     public void closeConnection(Connection con){
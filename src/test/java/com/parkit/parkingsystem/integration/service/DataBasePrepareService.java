@@ -14,10 +14,14 @@ public class DataBasePrepareService {
             connection = dataBaseTestConfig.getConnection();
 
             //set parking entries to available
-            connection.prepareStatement("update parking set available = true").execute();
+            connection.prepareStatement("update parking set available = true, OCCUPANT = null, CLAIM_TIME = null").execute();
 
             //clear ticket entries;
             connection.prepareStatement("truncate table ticket").execute();
+            connection.prepareStatement("truncate table ticket_archive_count").execute();
+
+            //remove imported parking entries
+            connection.prepareStatement("delete from parking where PARKING_NUMBER > 5").execute();
 
         }catch(Exception e){
             e.printStackTrace();